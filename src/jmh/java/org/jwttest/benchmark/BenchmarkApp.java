@@ -0,0 +1,56 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.JwtApp;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boots the application for in-process benchmarks: random port, its own in-memory database, no SQL
+ * logging and minimum BCrypt cost so that hashing does not hide the part being measured.
+ */
+final class BenchmarkApp {
+
+    private BenchmarkApp() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... extraArgs) {
+        return startOn(inMemory(databaseName), extraArgs);
+    }
+
+    /**
+     * Like {@link #start}, but on the database at {@code datasourceUrl}.
+     */
+    static ConfigurableApplicationContext startOn(String datasourceUrl, String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--logging.level.org.hibernate.SQL=OFF",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"));
+        args.addAll(Arrays.asList(extraArgs));
+        return run(datasourceUrl, args.toArray(new String[0]));
+    }
+
+    /**
+     * Like {@link #start}, but keeps the logging configured by the active profile.
+     */
+    static ConfigurableApplicationContext startWithLogging(String databaseName, String... extraArgs) {
+        return run(inMemory(databaseName), extraArgs);
+    }
+
+    private static ConfigurableApplicationContext run(String datasourceUrl, String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--spring.datasource.url=" + datasourceUrl,
+                "--password.hashing.bcrypt.strength=4",
+                // the load comes from one address, far above any sensible per-client limit
+                "--rate-limit.enabled=false"));
+        args.addAll(Arrays.asList(extraArgs));
+        return new SpringApplicationBuilder(JwtApp.class).run(args.toArray(new String[0]));
+    }
+
+    private static String inMemory(String databaseName) {
+        return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+}
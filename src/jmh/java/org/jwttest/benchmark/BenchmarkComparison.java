@@ -0,0 +1,114 @@
+package org.jwttest.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, typically the last release's against the current build's, and exits
+ * with status 1 when a benchmark got slower, or allocates more per operation, by more than
+ * {@code threshold} percent. Benchmarks present in only one of the files are listed and ignored.
+ * <pre>
+ * mvn -Pjmh-compare -DskipTests verify -Djmh.baseline=release.json [-Djmh.threshold=10]
+ * </pre>
+ */
+public final class BenchmarkComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    // a few bytes per operation come and go with JIT decisions, not with code changes
+    private static final double ALLOCATION_NOISE_BYTES = 16;
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            throw new IllegalArgumentException("Expected: <baseline.json> <current.json> [threshold percent]");
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %12s %12s%n",
+                "benchmark", "baseline", "current", "change", "B/op before", "B/op after");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s%n", entry.getKey(), "new");
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double scoreBefore = before.path("primaryMetric").path("score").asDouble();
+            double scoreAfter = after.path("primaryMetric").path("score").asDouble();
+            double change = increase(scoreBefore, scoreAfter);
+            // throughput is better when higher, every other mode measures time
+            double slowdown = "thrpt".equals(after.path("mode").asText()) ? -change : change;
+            double allocationBefore = allocation(before);
+            double allocationAfter = allocation(after);
+            boolean slower = slowdown > threshold;
+            boolean allocatesMore = allocationAfter - allocationBefore > ALLOCATION_NOISE_BYTES
+                    && increase(allocationBefore, allocationAfter) > threshold;
+            System.out.printf("%-70s %14.3f %14.3f %+7.1f%% %12.0f %12.0f%s%n",
+                    entry.getKey(), scoreBefore, scoreAfter, change, allocationBefore, allocationAfter,
+                    slower || allocatesMore ? "  REGRESSION" : "");
+            if (slower || allocatesMore) {
+                regressions++;
+            }
+        }
+        for (String removed : baseline.keySet()) {
+            if (!current.containsKey(removed)) {
+                System.out.printf("%-70s %14s%n", removed, "removed");
+            }
+        }
+
+        System.out.printf("%n%d regression(s) above %.1f%%%n", regressions, threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * Results keyed by benchmark, mode and parameters, so each parameter combination is compared with itself.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replaceFirst("^org\\.jwttest\\.benchmark\\.", ""));
+            key.append(' ').append(result.path("mode").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    /**
+     * Bytes allocated per operation, or 0 when the results were taken without {@code -prof gc}.
+     */
+    private static double allocation(JsonNode result) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = result.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            // older JMH versions prefix the profiler metrics with a middle dot
+            if (metric.getKey().replaceFirst("^\\u00b7", "").equals(ALLOCATION)) {
+                return metric.getValue().path("score").asDouble();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Change from {@code before} to {@code after}, in percent of {@code before}.
+     */
+    private static double increase(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before * 100;
+    }
+}
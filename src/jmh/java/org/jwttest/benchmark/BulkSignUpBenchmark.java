@@ -0,0 +1,144 @@
+package org.jwttest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Importing {@code records} users through {@code /sign-up/bulk} against one {@code /sign-up} call per user.
+ * <p>
+ * The bulk body is generated while it is sent and the response is read line by line, so the client holds
+ * neither; run with {@code -prof gc} to see the server's allocation per imported user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BulkSignUpBenchmark {
+
+    @Param({"1000", "10000"})
+    public int records;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private final AtomicLong batch = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApp.start("bulk-" + records);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long bulk() throws Exception {
+        String prefix = "bulk-" + batch.incrementAndGet() + "-";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/sign-up/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new RecordStream(prefix, records)))
+                .build();
+        long created = client.send(request, HttpResponse.BodyHandlers.ofLines()).body()
+                .filter(line -> line.contains("\"code\":201"))
+                .count();
+        return check(created);
+    }
+
+    @Benchmark
+    public long oneByOne() throws Exception {
+        String prefix = "single-" + batch.incrementAndGet() + "-";
+        long created = 0;
+        for (int i = 0; i < records; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/sign-up"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(record(prefix, i)))
+                    .build();
+            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 201) {
+                created++;
+            }
+        }
+        return check(created);
+    }
+
+    private long check(long created) {
+        if (created != records) {
+            throw new IllegalStateException("Created " + created + " of " + records + " users");
+        }
+        return created;
+    }
+
+    private static String record(String prefix, int i) {
+        return "{\"name\":\"Bulk User\",\"email\":\"" + prefix + i + "@example.com\",\"password\":\"a2asfGfdfdf4\","
+                + "\"phones\":[{\"number\":" + (1_000_000 + i) + ",\"citycode\":1,\"contrycode\":\"57\"}]}";
+    }
+
+    /**
+     * NDJSON body produced a record at a time.
+     */
+    private static final class RecordStream extends InputStream {
+        private final String prefix;
+        private final int records;
+        private int next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        RecordStream(String prefix, int records) {
+            this.prefix = prefix;
+            this.records = records;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length) {
+                if (next == records) {
+                    return -1;
+                }
+                line = (record(prefix, next++) + "\n").getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return line[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                int c = read();
+                if (c < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                b[off + count++] = (byte) c;
+            }
+            return count;
+        }
+    }
+}
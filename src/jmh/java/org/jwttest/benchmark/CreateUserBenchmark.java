@@ -0,0 +1,115 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.model.User;
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+import org.jwttest.persistence.UserStore;
+import org.jwttest.service.ClusterInvalidation;
+import org.jwttest.service.LoginResponseCache;
+import org.jwttest.service.RefreshTokenService;
+import org.jwttest.service.UserService;
+import org.jwttest.service.UserStatusCache;
+import org.jwttest.service.impl.UserServiceImpl;
+import org.jwttest.util.Instrumentation;
+import org.jwttest.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link UserService#createUser} with two phones, with the persistence layer mocked, against the
+ * application's H2 database and against the in-memory store ({@code storage.type=memory}) in a temporary
+ * directory. The difference to {@code mocked} is the cost of storage and transactions; the {@code mocked}
+ * score alone is validation, hashing at BCrypt's minimum cost, token signing and mapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CreateUserBenchmark {
+
+    @Param({"mocked", "h2", "memory"})
+    public String repository;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("h2".equals(repository)) {
+            context = BenchmarkApp.start("create-user");
+            userService = context.getBean(UserService.class);
+        } else if ("memory".equals(repository)) {
+            context = BenchmarkApp.start("create-user", "--storage.type=memory",
+                    "--storage.memory.directory=" + Files.createTempDirectory("create-user"));
+            userService = context.getBean(UserService.class);
+        } else {
+            userService = mockedUserService();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public UserResponse createUser() {
+        return userService.createUser(UserRequest.builder()
+                .name("Bench User")
+                .email("create-" + sequence.incrementAndGet() + "@example.com")
+                .password("a2asfGfdfdf4")
+                .phones(List.of(phone(1234567), phone(7654321)))
+                .build());
+    }
+
+    private static UserRequest.Phone phone(long number) {
+        return UserRequest.Phone.builder().number(number).citycode(1).contrycode("57").build();
+    }
+
+    /**
+     * Stub-only mocks: they do not record their invocations, which would otherwise pile up for the whole run.
+     */
+    private static UserService mockedUserService() {
+        UserStore userStore = stub(UserStore.class);
+        when(userStore.insert(any(User.class))).then(returnsFirstArg());
+        RefreshTokenService refreshTokenService = stub(RefreshTokenService.class);
+        when(refreshTokenService.issue(any(User.class))).thenReturn("refresh-token");
+        return new UserServiceImpl(userStore, stub(PlatformTransactionManager.class), JwtUtil.builder().build(),
+                new BCryptPasswordEncoder(4), stub(UserStatusCache.class), stub(LoginResponseCache.class),
+                refreshTokenService, stub(ClusterInvalidation.class), Instrumentation.noop());
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
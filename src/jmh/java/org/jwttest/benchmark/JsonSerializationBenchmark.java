@@ -0,0 +1,81 @@
+package org.jwttest.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jwttest.model.Phone;
+import org.jwttest.model.User;
+import org.jwttest.model.UserResponse;
+import org.jwttest.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a sign-up response and of a user with two phones, with an {@link ObjectMapper}
+ * configured as Spring Boot configures the one behind the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private UserResponse userResponse;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Date now = new Date();
+        String token = JwtUtil.builder().build().generateToken("bench@example.com");
+        userResponse = UserResponse.builder()
+                .id(UUID.randomUUID())
+                .created(now)
+                .lastLogin(now)
+                .token(token)
+                .refreshToken(UUID.randomUUID().toString())
+                .isActive(true)
+                .build();
+        user = User.builder()
+                .id(userResponse.getId())
+                .name("Bench User")
+                .email("bench@example.com")
+                .password("{bcrypt}$2a$10$7EqJtq98hPqEX7fNZaFWoOa5yJmu5WbGVVAWvXRgBeu0GgTVDGAGu")
+                .created(now)
+                .lastLogin(now)
+                .token(token)
+                .isActive(true)
+                .build();
+        user.setPhones(List.of(phone(1234567), phone(7654321)));
+    }
+
+    @Benchmark
+    public byte[] userResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userResponse);
+    }
+
+    @Benchmark
+    public byte[] user() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    private Phone phone(long number) {
+        return Phone.builder().number(number).citycode(1).countrycode("57").user(user).build();
+    }
+}
@@ -0,0 +1,100 @@
+package org.jwttest.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.SigningKeyRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HS256 token signing and verification: the original per-call jjwt builder/parser against {@link JwtUtil}.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtUtilBenchmark {
+
+    private static final SecretKey SIGNING_KEY =
+            Keys.hmacShaKeyFor("EstaEsUnaClaveSecretaMuySeguraYLarga123!".getBytes(StandardCharsets.UTF_8));
+
+    private static final String SUBJECT = "juan.perez@example.com";
+
+    private JwtUtil jwtUtil;
+    private JwtUtil uncachedJwtUtil;
+    private JwtParser sharedParser;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = JwtUtil.builder().keyRing(hs256()).build();
+        uncachedJwtUtil = JwtUtil.builder().keyRing(hs256()).cache(0, Duration.ZERO).build();
+        sharedParser = Jwts.parser().verifyWith(SIGNING_KEY).build();
+        token = jwtUtil.generateToken(SUBJECT);
+    }
+
+    private static SigningKeyRing hs256() {
+        return new SigningKeyRing(SigningKeyRing.HS256, "", "", "", Duration.ofDays(1), Duration.ofDays(1),
+                Duration.ofHours(1));
+    }
+
+    @Benchmark
+    public String signPerCallBuilder() {
+        return Jwts.builder()
+                .subject(SUBJECT)
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .signWith(SIGNING_KEY)
+                .compact();
+    }
+
+    @Benchmark
+    public String signPrebuiltSigner() {
+        return jwtUtil.generateToken(SUBJECT);
+    }
+
+    @Benchmark
+    public Claims verifyPerCallParser() {
+        return Jwts.parser()
+                .verifyWith(SIGNING_KEY)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    @Benchmark
+    public Claims verifySharedParser() {
+        return sharedParser.parseSignedClaims(token).getPayload();
+    }
+
+    @Benchmark
+    public String verifyJwtUtilUncached() {
+        return uncachedJwtUtil.extractSubject(token);
+    }
+
+    @Benchmark
+    public String verifyJwtUtilCached() {
+        return jwtUtil.extractSubject(token);
+    }
+}
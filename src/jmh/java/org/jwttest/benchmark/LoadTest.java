@@ -0,0 +1,195 @@
+package org.jwttest.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jwttest.config.ExecutionModeConfig;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load on {@code /login}, comparing request execution modes.
+ * <p>
+ * For each mode the application is booted in-process on a random port, {@code users} accounts are
+ * signed up, and then {@code concurrency} logins are kept in flight for {@code duration} seconds.
+ * It prints throughput, latency percentiles and the peak number of live JVM threads for each mode.
+ * Modes the runtime does not support (virtual threads before Java 21) are skipped.
+ * <pre>
+ * mvn -Ploadtest -DskipTests verify -Dloadtest.args="modes=platform,virtual concurrency=2000"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+    private final int concurrency;
+    private final int users;
+    private final Duration duration;
+    private final List<String> modes;
+
+    private LoadTest(String[] args) {
+        int concurrency = 200;
+        int users = 100;
+        long seconds = 30;
+        List<String> modes = Arrays.asList("platform", "virtual");
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            switch (option[0]) {
+                case "concurrency":
+                    concurrency = Integer.parseInt(option[1]);
+                    break;
+                case "users":
+                    users = Integer.parseInt(option[1]);
+                    break;
+                case "duration":
+                    seconds = Long.parseLong(option[1]);
+                    break;
+                case "modes":
+                    modes = Arrays.asList(option[1].split(","));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        this.concurrency = concurrency;
+        this.users = users;
+        this.duration = Duration.ofSeconds(seconds);
+        this.modes = modes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(args).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            if ("virtual".equals(mode) && !ExecutionModeConfig.isVirtualThreadSupported()) {
+                System.out.printf("Skipping mode 'virtual': Java %s has no virtual threads%n", Runtime.version());
+                continue;
+            }
+            results.add(runMode(mode));
+        }
+
+        System.out.printf("%n/login, %d in flight, %ds%n", concurrency, duration.getSeconds());
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s %8s%n",
+                "mode", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms", "threads");
+        for (Result result : results) {
+            Histogram latency = result.latency;
+            System.out.printf("%-10s %10.0f %8d %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    result.mode,
+                    latency.getTotalCount() / result.elapsedSeconds,
+                    result.errors,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0,
+                    result.peakThreads);
+        }
+    }
+
+    private Result runMode(String mode) throws Exception {
+        ConfigurableApplicationContext context = BenchmarkApp.start("load-" + mode,
+                "--execution.mode=" + mode,
+                "--server.tomcat.max-connections=" + (concurrency + 1_000),
+                "--server.tomcat.accept-count=" + concurrency);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            List<String> tokens = signUpUsers(client, baseUrl, users);
+
+            Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+            LongAdder errors = new LongAdder();
+            Semaphore inFlight = new Semaphore(concurrency);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            for (long i = 0; System.nanoTime() < deadline; i++) {
+                inFlight.acquire();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .header("Authorization", "Bearer " + tokens.get((int) (i % tokens.size())))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                long sent = System.nanoTime();
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                    if (error != null || response.statusCode() != 200) {
+                        errors.increment();
+                    }
+                    inFlight.release();
+                });
+            }
+            inFlight.acquire(concurrency);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            return new Result(mode, latency, errors.sum(), elapsedSeconds, threads.getPeakThreadCount());
+        } finally {
+            clientExecutor.shutdownNow();
+            context.close();
+        }
+    }
+
+    /**
+     * Signs up {@code users} accounts and returns their access tokens.
+     */
+    static List<String> signUpUsers(HttpClient client, String baseUrl, int users) throws Exception {
+        List<String> tokens = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String body = "{\"name\":\"Load User\",\"email\":\"load-" + i + "@example.com\","
+                    + "\"password\":\"a2asfGfdfdf4\",\"phones\":[{\"number\":1234567,\"citycode\":1,\"contrycode\":\"57\"}]}";
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/sign-up"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher token = TOKEN.matcher(response.body());
+            if (response.statusCode() != 201 || !token.find()) {
+                throw new IllegalStateException("Sign-up failed: " + response.statusCode() + " " + response.body());
+            }
+            tokens.add(token.group(1));
+        }
+        return tokens;
+    }
+
+    private static final class Result {
+        private final String mode;
+        private final Histogram latency;
+        private final long errors;
+        private final double elapsedSeconds;
+        private final int peakThreads;
+
+        Result(String mode, Histogram latency, long errors, double elapsedSeconds, int peakThreads) {
+            this.mode = mode;
+            this.latency = latency;
+            this.errors = errors;
+            this.elapsedSeconds = elapsedSeconds;
+            this.peakThreads = peakThreads;
+        }
+    }
+}
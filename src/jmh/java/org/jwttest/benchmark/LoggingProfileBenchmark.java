@@ -0,0 +1,97 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+import org.jwttest.service.LoginResponseCache;
+import org.jwttest.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sign-up and login throughput with the default logging (every statement and bind parameter logged
+ * synchronously) against the {@code prod} profile (asynchronous appender, sampled slow statements only).
+ * <p>
+ * The console is redirected to {@code target/logging-<profile>.log} while the application runs, so the
+ * log is written to a file as it would be to a container's stdout, instead of flooding the JMH output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(4)
+@Fork(1)
+public class LoggingProfileBenchmark {
+
+    @Param({"default", "prod"})
+    public String profile;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private PrintStream console;
+    private PrintStream log;
+    private String tokenHeader;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        Path file = Paths.get("target", "logging-" + profile + ".log");
+        Files.createDirectories(file.getParent());
+        console = System.out;
+        log = new PrintStream(new FileOutputStream(file.toFile()), false);
+        System.setOut(log);
+
+        context = BenchmarkApp.startWithLogging("logging-" + profile, "--spring.profiles.active=" + profile);
+        userService = context.getBean(UserService.class);
+        tokenHeader = "Bearer " + userService.createUser(request("login@example.com")).getToken();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        System.setOut(console);
+        log.close();
+    }
+
+    @Benchmark
+    public UserResponse signUp() {
+        return userService.createUser(request("new-" + sequence.incrementAndGet() + "@example.com"));
+    }
+
+    @Benchmark
+    public LoginResponseCache.Entry login() {
+        return userService.login(tokenHeader);
+    }
+
+    private static UserRequest request(String email) {
+        return UserRequest.builder()
+                .name("Bench User")
+                .email(email)
+                .password("a2asfGfdfdf4")
+                .phones(List.of(
+                        UserRequest.Phone.builder().number(1234567).citycode(1).contrycode("57").build(),
+                        UserRequest.Phone.builder().number(7654321).citycode(1).contrycode("57").build()))
+                .build();
+    }
+}
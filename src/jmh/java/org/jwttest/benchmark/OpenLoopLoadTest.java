@@ -0,0 +1,297 @@
+package org.jwttest.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load on {@code /sign-up} and {@code /login}, usable as a gate before a deployment.
+ * <p>
+ * The application is booted in-process on a random port and {@code users} accounts are signed up for the
+ * logins. Requests are then sent at a fixed {@code rate} per second, whether or not earlier ones have been
+ * answered, a {@code sign-up-share} of them to {@code /sign-up} and the rest to {@code /login}, picked by a
+ * random sequence with a fixed {@code seed} so that runs are repeatable. Each latency is measured from the
+ * time its request was due rather than from when it was sent, so a stalled server shows in the percentiles
+ * instead of silently lowering the load (coordinated omission).
+ * <p>
+ * Nothing is recorded during the first {@code warmup} seconds. After {@code duration} seconds more, it
+ * prints throughput, errors and latency percentiles per endpoint, writes each endpoint's HdrHistogram
+ * percentile distribution to {@code report}/&lt;endpoint&gt;.hgrm, and exits with status 1 when a gate is
+ * exceeded: {@code max-error-rate}, {@code max-p99-sign-up} or {@code max-p99-login} (milliseconds, 0 for
+ * no limit).
+ * <pre>
+ * mvn -Popenloop -DskipTests verify -Dopenloop.args="rate=500 sign-up-share=0.1 max-p99-login=50"
+ * </pre>
+ */
+public final class OpenLoopLoadTest {
+
+    private static final String SIGN_UP = "sign-up";
+    private static final String LOGIN = "login";
+
+    private final double rate;
+    private final double signUpShare;
+    private final int users;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int maxInFlight;
+    private final long seed;
+    private final String mode;
+    private final Path report;
+    private final double maxErrorRate;
+    private final double maxP99SignUpMillis;
+    private final double maxP99LoginMillis;
+
+    private OpenLoopLoadTest(String[] args) {
+        double rate = 200;
+        double signUpShare = 0.1;
+        int users = 100;
+        long warmup = 10;
+        long duration = 30;
+        int maxInFlight = 10_000;
+        long seed = 42;
+        String mode = "platform";
+        Path report = Paths.get("target", "openloop");
+        double maxErrorRate = 0.001;
+        double maxP99SignUpMillis = 0;
+        double maxP99LoginMillis = 0;
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            switch (option[0]) {
+                case "rate":
+                    rate = Double.parseDouble(option[1]);
+                    break;
+                case "sign-up-share":
+                    signUpShare = Double.parseDouble(option[1]);
+                    break;
+                case "users":
+                    users = Integer.parseInt(option[1]);
+                    break;
+                case "warmup":
+                    warmup = Long.parseLong(option[1]);
+                    break;
+                case "duration":
+                    duration = Long.parseLong(option[1]);
+                    break;
+                case "max-in-flight":
+                    maxInFlight = Integer.parseInt(option[1]);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(option[1]);
+                    break;
+                case "mode":
+                    mode = option[1];
+                    break;
+                case "report":
+                    report = Paths.get(option[1]);
+                    break;
+                case "max-error-rate":
+                    maxErrorRate = Double.parseDouble(option[1]);
+                    break;
+                case "max-p99-sign-up":
+                    maxP99SignUpMillis = Double.parseDouble(option[1]);
+                    break;
+                case "max-p99-login":
+                    maxP99LoginMillis = Double.parseDouble(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        this.rate = rate;
+        this.signUpShare = signUpShare;
+        this.users = users;
+        this.warmup = Duration.ofSeconds(warmup);
+        this.duration = Duration.ofSeconds(duration);
+        this.maxInFlight = maxInFlight;
+        this.seed = seed;
+        this.mode = mode;
+        this.report = report;
+        this.maxErrorRate = maxErrorRate;
+        this.maxP99SignUpMillis = maxP99SignUpMillis;
+        this.maxP99LoginMillis = maxP99LoginMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = new OpenLoopLoadTest(args).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        ConfigurableApplicationContext context = BenchmarkApp.start("open-loop",
+                "--execution.mode=" + mode,
+                "--server.tomcat.max-connections=" + (maxInFlight + 1_000));
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            List<String> tokens = LoadTest.signUpUsers(client, baseUrl, users);
+            Endpoint signUp = new Endpoint(SIGN_UP);
+            Endpoint login = new Endpoint(LOGIN);
+            double elapsedSeconds = drive(client, baseUrl, tokens, signUp, login);
+
+            System.out.printf("%nOpen loop at %.0f req/s, %.0f%% sign-ups, %ds after %ds of warm-up%n",
+                    rate, signUpShare * 100, duration.getSeconds(), warmup.getSeconds());
+            System.out.printf("%-10s %10s %10s %8s %10s %10s %10s %10s%n",
+                    "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            Files.createDirectories(report);
+            boolean passed = true;
+            for (Endpoint endpoint : List.of(signUp, login)) {
+                endpoint.print(elapsedSeconds);
+                endpoint.writeDistribution(report.resolve(endpoint.name + ".hgrm"));
+                double maxP99Millis = SIGN_UP.equals(endpoint.name) ? maxP99SignUpMillis : maxP99LoginMillis;
+                passed &= endpoint.check(maxErrorRate, maxP99Millis);
+            }
+            System.out.printf("%nHistograms in %s%n%s%n", report.toAbsolutePath(), passed ? "PASSED" : "FAILED");
+            return passed;
+        } finally {
+            clientExecutor.shutdownNow();
+            context.close();
+        }
+    }
+
+    /**
+     * Sends the requests on schedule until the end of the run and waits for the last answers. Returns the
+     * length of the measured period in seconds.
+     */
+    private double drive(HttpClient client, String baseUrl, List<String> tokens, Endpoint signUp, Endpoint login)
+            throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        AtomicInteger inFlight = new AtomicInteger();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measured = start + warmup.toNanos();
+        long end = measured + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean isSignUp = random.nextDouble() < signUpShare;
+            Endpoint endpoint = isSignUp ? signUp : login;
+            boolean record = due >= measured;
+            if (inFlight.get() >= maxInFlight) {
+                // the server is that far behind: count the request as failed rather than queue it without bound
+                if (record) {
+                    endpoint.dropped.increment();
+                }
+                continue;
+            }
+            HttpRequest request = isSignUp
+                    ? signUpRequest(baseUrl, "open-" + i + "@example.com")
+                    : loginRequest(baseUrl, tokens.get(random.nextInt(tokens.size())));
+            int expectedStatus = isSignUp ? 201 : 200;
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (record) {
+                    endpoint.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+                    if (error != null || response.statusCode() != expectedStatus) {
+                        endpoint.errors.increment();
+                    }
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+        while (inFlight.get() > 0) {
+            Thread.sleep(10);
+        }
+        return duration.toNanos() / 1e9;
+    }
+
+    private static HttpRequest signUpRequest(String baseUrl, String email) {
+        String body = "{\"name\":\"Load User\",\"email\":\"" + email + "\",\"password\":\"a2asfGfdfdf4\","
+                + "\"phones\":[{\"number\":1234567,\"citycode\":1,\"contrycode\":\"57\"}]}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/sign-up"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest loginRequest(String baseUrl, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void print(double elapsedSeconds) {
+            System.out.printf("%-10s %10d %10.0f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    name,
+                    requests(),
+                    latency.getTotalCount() / elapsedSeconds,
+                    errors.sum() + dropped.sum(),
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0);
+        }
+
+        /**
+         * HdrHistogram's percentile distribution format, in milliseconds, which its plotter reads.
+         */
+        void writeDistribution(Path file) throws Exception {
+            try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()), false, "UTF-8")) {
+                latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+
+        /**
+         * Answered requests, failed or not, plus those never sent because too many were in flight.
+         */
+        long requests() {
+            return latency.getTotalCount() + dropped.sum();
+        }
+
+        boolean check(double maxErrorRate, double maxP99Millis) {
+            List<String> failures = new ArrayList<>();
+            double errorRate = requests() == 0 ? 0 : (double) (errors.sum() + dropped.sum()) / requests();
+            if (errorRate > maxErrorRate) {
+                failures.add(String.format("error rate %.4f above %.4f", errorRate, maxErrorRate));
+            }
+            double p99Millis = latency.getValueAtPercentile(99) / 1000.0;
+            if (maxP99Millis > 0 && p99Millis > maxP99Millis) {
+                failures.add(String.format("p99 %.2f ms above %.2f ms", p99Millis, maxP99Millis));
+            }
+            failures.forEach(failure -> System.out.printf("%s: %s%n", name, failure));
+            return failures.isEmpty();
+        }
+    }
+}
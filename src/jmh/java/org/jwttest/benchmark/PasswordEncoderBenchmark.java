@@ -0,0 +1,78 @@
+package org.jwttest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing cost per configuration, as hashes per second on a single core.
+ * <p>
+ * Each {@code encoder} value is {@code algorithm:cost} with the same meaning as the
+ * {@code password.hashing.*} properties: BCrypt strength, Argon2 memory in KiB (2 iterations,
+ * parallelism 1) and PBKDF2-HMAC-SHA256 iterations. Pick the highest cost whose score still covers the
+ * expected sign-up rate divided by the number of hashing threads; add {@code -t <cores>} to check scaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(1)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "a2asfGfdfdf4";
+
+    @Param({"bcrypt:10", "bcrypt:12", "argon2:15360", "argon2:65536", "pbkdf2:310000", "pbkdf2:600000"})
+    public String encoder;
+
+    private PasswordEncoder passwordEncoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        String[] config = encoder.split(":");
+        int cost = Integer.parseInt(config[1]);
+        switch (config[0]) {
+            case "bcrypt":
+                passwordEncoder = new BCryptPasswordEncoder(cost);
+                break;
+            case "argon2":
+                passwordEncoder = new Argon2PasswordEncoder(16, 32, 1, cost, 2);
+                break;
+            case "pbkdf2":
+                Pbkdf2PasswordEncoder pbkdf2 = new Pbkdf2PasswordEncoder("", 16, cost, 256);
+                pbkdf2.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+                passwordEncoder = pbkdf2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown encoder " + encoder);
+        }
+        hash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, hash);
+    }
+}
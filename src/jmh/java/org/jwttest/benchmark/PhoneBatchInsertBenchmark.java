@@ -0,0 +1,91 @@
+package org.jwttest.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+import org.jwttest.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sign-up of users with 1, 10 and 100 phones. JMH reports the latency percentiles (p99 included);
+ * the JDBC statements per request, taken from Hibernate statistics, are printed after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PhoneBatchInsertBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int phones;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private Statistics statistics;
+    private List<UserRequest.Phone> phoneRequests;
+    private final AtomicLong sequence = new AtomicLong();
+    private long requestsAtStart;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApp.start("phones-" + phones, "--spring.jpa.properties.hibernate.generate_statistics=true");
+        userService = context.getBean(UserService.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        phoneRequests = new ArrayList<>(phones);
+        for (int i = 0; i < phones; i++) {
+            phoneRequests.add(UserRequest.Phone.builder().number(3_000_000L + i).citycode(1).contrycode("57").build());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        requestsAtStart = sequence.get();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatementsPerRequest() {
+        long requests = sequence.get() - requestsAtStart;
+        if (requests > 0) {
+            System.out.printf("%n%d phones: %.2f statements/request%n",
+                    phones, (double) statistics.getPrepareStatementCount() / requests);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserResponse signUp() {
+        return userService.createUser(UserRequest.builder()
+                .name("Bench User")
+                .email("phones-" + sequence.incrementAndGet() + "@example.com")
+                .password("a2asfGfdfdf4")
+                .phones(phoneRequests)
+                .build());
+    }
+}
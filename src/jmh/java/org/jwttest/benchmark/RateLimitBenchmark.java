@@ -0,0 +1,62 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a rate limit check with {@code clients} tracked buckets: a request let through, and one rejected
+ * by an exhausted bucket, which is all a rejected request costs before the 429 is written. Run with
+ * {@code -prof gc} to confirm neither allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimitBenchmark {
+
+    @Param({"100000"})
+    public int clients;
+
+    private RateLimiter open;
+    private RateLimiter exhausted;
+    private String client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        open = new RateLimiter("open", Integer.MAX_VALUE, Duration.ofNanos(Integer.MAX_VALUE), clients + 1);
+        exhausted = new RateLimiter("exhausted", 1, Duration.ofDays(1), clients + 1);
+        for (int i = 0; i < clients; i++) {
+            client = "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+            open.tryAcquire(client);
+            exhausted.tryAcquire(client);
+        }
+    }
+
+    @Benchmark
+    public long allowed() {
+        return open.tryAcquire(client);
+    }
+
+    @Benchmark
+    public long rejected() {
+        return exhausted.tryAcquire(client);
+    }
+}
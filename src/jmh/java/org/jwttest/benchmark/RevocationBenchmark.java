@@ -0,0 +1,81 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RevocationList;
+import org.jwttest.util.SigningKeyRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-request revocation check with {@code revoked} ids in the list: a miss (the common case,
+ * answered by the Bloom filter), a hit (filter plus exact set), and a cached {@link JwtUtil#isTokenValid}
+ * with and without the list. Run with {@code -prof gc} to confirm a miss allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RevocationBenchmark {
+
+    @Param({"100000"})
+    public int revoked;
+
+    private RevocationList revocationList;
+    private JwtUtil jwtUtil;
+    private String missId;
+    private String hitId;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        revocationList = new RevocationList(revoked, 0.01);
+        long expiresAt = System.currentTimeMillis() + Duration.ofHours(1).toMillis();
+        for (int i = 0; i < revoked; i++) {
+            hitId = UUID.randomUUID().toString();
+            revocationList.revoke(hitId, expiresAt);
+        }
+        missId = UUID.randomUUID().toString();
+
+        SigningKeyRing keyRing = new SigningKeyRing(SigningKeyRing.HS256, "", "", "", Duration.ofDays(1), Duration.ofDays(1),
+                Duration.ofHours(1));
+        jwtUtil = JwtUtil.builder()
+                .keyRing(keyRing)
+                .revocations(revocationList)
+                .expiration(Duration.ofHours(1))
+                .build();
+        token = jwtUtil.generateToken("juan.perez@example.com");
+    }
+
+    @Benchmark
+    public boolean isRevokedMiss() {
+        return revocationList.isRevoked(missId);
+    }
+
+    @Benchmark
+    public boolean isRevokedHit() {
+        return revocationList.isRevoked(hitId);
+    }
+
+    @Benchmark
+    public boolean isTokenValidCached() {
+        return jwtUtil.isTokenValid(token);
+    }
+}
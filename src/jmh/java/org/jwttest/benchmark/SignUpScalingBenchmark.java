@@ -0,0 +1,101 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+import org.jwttest.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sign-up latency against the real H2 schema with an increasing number of stored users.
+ * <p>
+ * With the unique email index both the duplicate probe and the insert are index lookups, so the
+ * sampled latency should stay flat from 1k to 1M users. BCrypt runs at its minimum cost so that the
+ * database part of the request is not hidden behind hashing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SignUpScalingBenchmark {
+
+    private static final int SEED_BATCH = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int storedUsers;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApp.start("signup-" + storedUsers);
+        userService = context.getBean(UserService.class);
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserResponse signUp() {
+        return userService.createUser(request("new-" + sequence.incrementAndGet() + "@example.com"));
+    }
+
+    @Benchmark
+    public String signUpExistingEmail() {
+        try {
+            userService.createUser(request("seed-" + (sequence.incrementAndGet() % storedUsers) + "@example.com"));
+            throw new IllegalStateException("Duplicate sign-up was accepted");
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static UserRequest request(String email) {
+        return UserRequest.builder()
+                .name("Bench User")
+                .email(email)
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < storedUsers; i++) {
+            batch.add(new Object[]{UUID.randomUUID(), "Seed User", "seed-" + i + "@example.com", "{noop}x", now, true});
+            if (batch.size() == SEED_BATCH || i == storedUsers - 1) {
+                jdbcTemplate.batchUpdate("insert into users (id, name, email, password, created_at, is_active) "
+                        + "values (?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.SigningKeyRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify cost per {@code jwt.signing.algorithm}. Verification bypasses the verified-token cache
+ * so every call checks the signature; this is also the cost a downstream service pays with our JWKS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningAlgorithmBenchmark {
+
+    private static final String SUBJECT = "juan.perez@example.com";
+
+    @Param({SigningKeyRing.HS256, SigningKeyRing.RS256, SigningKeyRing.ES256, SigningKeyRing.EDDSA})
+    public String algorithm;
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SigningKeyRing keyRing = new SigningKeyRing(algorithm, "", "", "", Duration.ofDays(1), Duration.ofDays(7),
+                Duration.ofHours(1));
+        jwtUtil = JwtUtil.builder().keyRing(keyRing).cache(0, Duration.ZERO).build();
+        token = jwtUtil.generateToken(SUBJECT);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken(SUBJECT);
+    }
+
+    @Benchmark
+    public String verify() {
+        return jwtUtil.extractSubject(token);
+    }
+}
@@ -0,0 +1,220 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.JwtUtil;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cold start on the persistent storage: time until the application serves requests, and latency of the
+ * first requests, with {@code users} accounts in the database.
+ * <p>
+ * The H2 file database at {@code path} is seeded once, with JDBC batches, and reused by later executions.
+ * Each run then starts the application in a fresh JVM, so class loading and JIT compilation are part of
+ * the measurement as they are in a real restart, and reports:
+ * <ul>
+ *     <li>{@code jvm ms}: from JVM start until the application context is running</li>
+ *     <li>{@code context ms}: the application context alone, migrations and schema validation included</li>
+ *     <li>{@code first ms}, {@code second ms}: the first two {@code /login} calls, for different users</li>
+ * </ul>
+ * <pre>
+ * mvn -Pstartup -DskipTests verify -Dstartup.args="users=1000000 runs=5"
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+    private static final String PROBE = "probe";
+    private static final String RESULT = "startup-result";
+    private static final int SEED_BATCH = 10_000;
+
+    private final int users;
+    private final int runs;
+    private final Path path;
+
+    private StartupBenchmark(String[] args) {
+        int users = 1_000_000;
+        int runs = 5;
+        Path path = Paths.get("target", "startup-benchmark", "users");
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            switch (option[0]) {
+                case "users":
+                    users = Integer.parseInt(option[1]);
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(option[1]);
+                    break;
+                case "path":
+                    path = Paths.get(option[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        this.users = users;
+        this.runs = runs;
+        this.path = path.toAbsolutePath();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && PROBE.equals(args[0])) {
+            probe(args);
+        } else {
+            new StartupBenchmark(args).run();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        seed();
+        List<long[]> results = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            results.add(startProbe());
+        }
+
+        System.out.printf("%nCold start, %d users in %s%n", users, path);
+        System.out.printf("%-8s %10s %10s %10s %10s%n", "run", "jvm ms", "context ms", "first ms", "second ms");
+        for (int run = 0; run < results.size(); run++) {
+            print(String.valueOf(run + 1), results.get(run));
+        }
+        long[] median = new long[4];
+        for (int column = 0; column < median.length; column++) {
+            long[] values = new long[results.size()];
+            for (int run = 0; run < values.length; run++) {
+                values[run] = results.get(run)[column];
+            }
+            Arrays.sort(values);
+            median[column] = values[values.length / 2];
+        }
+        print("median", median);
+    }
+
+    private static void print(String run, long[] result) {
+        System.out.printf("%-8s %10d %10d %10.2f %10.2f%n",
+                run, result[0], result[1], result[2] / 1000.0, result[3] / 1000.0);
+    }
+
+    /**
+     * Tops the database up to {@code users} accounts with one phone each. The password hash is the same for
+     * all of them: logins are token based, and hashing a million passwords would take longer than the rest.
+     */
+    private void seed() {
+        try (ConfigurableApplicationContext context = BenchmarkApp.startOn(url(path))) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            Integer existing = jdbcTemplate.queryForObject("select count(*) from users", Integer.class);
+            if (existing >= users) {
+                return;
+            }
+            System.out.printf("Seeding %d users into %s%n", users - existing, path);
+            String password = context.getBean(PasswordEncoder.class).encode("a2asfGfdfdf4");
+            Timestamp created = new Timestamp(System.currentTimeMillis());
+            Long maxPhoneId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from phones", Long.class);
+            for (int first = existing; first < users; first += SEED_BATCH) {
+                int last = Math.min(first + SEED_BATCH, users);
+                List<Object[]> userRows = new ArrayList<>(last - first);
+                List<Object[]> phoneRows = new ArrayList<>(last - first);
+                for (int i = first; i < last; i++) {
+                    UUID id = UUID.randomUUID();
+                    userRows.add(new Object[]{id, "Startup User", email(i), password, created});
+                    phoneRows.add(new Object[]{++maxPhoneId, 1_000_000L + i, 1, "57", id});
+                }
+                jdbcTemplate.batchUpdate("insert into users (id, name, email, password, created_at, is_active)"
+                        + " values (?, ?, ?, ?, ?, true)", userRows);
+                jdbcTemplate.batchUpdate("insert into phones (id, number, citycode, countrycode, user_id)"
+                        + " values (?, ?, ?, ?, ?)", phoneRows);
+            }
+            // Hibernate's pooled optimizer hands out the 50 ids up to each value it reads from the sequence
+            jdbcTemplate.execute("alter sequence phones_seq restart with " + (maxPhoneId + 50));
+        }
+    }
+
+    private long[] startProbe() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), PROBE, path.toString(), String.valueOf(users))
+                .redirectErrorStream(true)
+                .start();
+        long[] result = null;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = output.readLine(); line != null; line = output.readLine()) {
+                if (line.startsWith(RESULT)) {
+                    result = Arrays.stream(line.substring(RESULT.length()).trim().split(" "))
+                            .mapToLong(Long::parseLong)
+                            .toArray();
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Probe failed with exit code " + process.exitValue());
+        }
+        return result;
+    }
+
+    /**
+     * Runs in the child JVM: starts the application and prints one result line.
+     */
+    private static void probe(String[] args) throws Exception {
+        Path path = Paths.get(args[1]);
+        int users = Integer.parseInt(args[2]);
+
+        long contextStart = System.nanoTime();
+        ConfigurableApplicationContext context = BenchmarkApp.startOn(url(path), "--logging.level.root=WARN");
+        long contextMillis = (System.nanoTime() - contextStart) / 1_000_000;
+        long jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        try {
+            JwtUtil jwtUtil = context.getBean(JwtUtil.class);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            long first = login(client, baseUrl, jwtUtil.generateToken(email(users / 3)));
+            long second = login(client, baseUrl, jwtUtil.generateToken(email(2 * users / 3)));
+            System.out.printf("%s %d %d %d %d%n", RESULT, jvmMillis, contextMillis, first, second);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Returns the latency of one {@code /login} call, in microseconds.
+     */
+    private static long login(HttpClient client, String baseUrl, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        long micros = (System.nanoTime() - start) / 1_000;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body());
+        }
+        return micros;
+    }
+
+    private static String url(Path path) {
+        return "jdbc:h2:file:" + path + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+
+    private static String email(int i) {
+        return "startup-" + i + "@example.com";
+    }
+}
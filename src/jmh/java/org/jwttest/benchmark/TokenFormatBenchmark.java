@@ -0,0 +1,65 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.SigningKeyRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verify throughput of the {@code standard} and {@code compact} token profiles ({@code jwt.format}), with the
+ * verified-token cache off so every call parses and checks the signature. HS256 shows the parsing itself,
+ * which RS256's signature check mostly hides. The size of each token is printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenFormatBenchmark {
+
+    private static final String EMAIL = "juan.perez@example.com";
+
+    @Param({JwtUtil.STANDARD, JwtUtil.COMPACT})
+    public String format;
+
+    @Param({SigningKeyRing.HS256, SigningKeyRing.RS256})
+    public String algorithm;
+
+    private JwtUtil jwtUtil;
+    private String subject;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SigningKeyRing keyRing = new SigningKeyRing(algorithm, "", "", "", Duration.ofDays(1), Duration.ofDays(7),
+                Duration.ofHours(1));
+        jwtUtil = JwtUtil.builder().keyRing(keyRing).format(format).cache(0, Duration.ZERO).build();
+        subject = JwtUtil.COMPACT.equals(format) ? UUID.randomUUID().toString() : EMAIL;
+        token = jwtUtil.generateToken(subject);
+        System.out.printf("%n%s %s token: %d bytes%n", format, algorithm, token.length());
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken(subject);
+    }
+
+    @Benchmark
+    public String verify() {
+        return jwtUtil.extractSubject(token);
+    }
+}
@@ -0,0 +1,85 @@
+package org.jwttest.benchmark;
+
+import org.jwttest.util.ValidationUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sign-up validation: {@code Pattern.matches} (compiles on every call), a precompiled {@link Pattern} and
+ * the {@link ValidationUtility} scanners. The {@code long} inputs are 10k characters of almost-valid text,
+ * which the regular expressions have to read (and for the password, backtrack over) before rejecting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final String EMAIL_REGEX = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+    private static final String PASSWORD_REGEX =
+            "^(?=(?:[^A-Z]*[A-Z]){1}[^A-Z]*$)(?=(?:[^\\d]*\\d){2}[^\\d]*$)(?!.*\\d{2})[a-zA-Z\\d]{8,12}$";
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(EMAIL_REGEX);
+    private static final Pattern PASSWORD_PATTERN = Pattern.compile(PASSWORD_REGEX);
+
+    @Param({"valid", "long"})
+    public String input;
+
+    private String email;
+    private String password;
+
+    @Setup
+    public void setUp() {
+        if ("long".equals(input)) {
+            email = "a".repeat(10_000) + "@example.c0m";
+            password = "aB1" + "a".repeat(10_000) + "2";
+        } else {
+            email = "juan.perez@example.com";
+            password = "a2asfGfdfdf4";
+        }
+    }
+
+    @Benchmark
+    public boolean emailPatternMatches() {
+        return Pattern.matches(EMAIL_REGEX, email);
+    }
+
+    @Benchmark
+    public boolean emailPrecompiled() {
+        return EMAIL_PATTERN.matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean emailScanner() {
+        return ValidationUtility.isValidEmail(email);
+    }
+
+    @Benchmark
+    public boolean passwordPatternMatches() {
+        return Pattern.matches(PASSWORD_REGEX, password);
+    }
+
+    @Benchmark
+    public boolean passwordPrecompiled() {
+        return PASSWORD_PATTERN.matcher(password).matches();
+    }
+
+    @Benchmark
+    public boolean passwordScanner() {
+        return ValidationUtility.isValidPassword(password);
+    }
+}
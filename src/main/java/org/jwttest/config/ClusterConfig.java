@@ -0,0 +1,44 @@
+package org.jwttest.config;
+
+import org.jwttest.persistence.InvalidationBus;
+import org.jwttest.persistence.JdbcInvalidationBus;
+import org.jwttest.util.SigningKeyRing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+/**
+ * How the nodes behind the load balancer tell each other what to drop from their local caches: not at all
+ * for a single node ({@code cluster.invalidation.transport=none}, the default) or through a table of the
+ * shared database ({@code jdbc}). Nodes of a cluster must verify each other's tokens, so {@code jdbc} refuses
+ * to start with signing keys generated in memory.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "cluster.invalidation.transport", havingValue = "none", matchIfMissing = true)
+    public InvalidationBus noInvalidationBus() {
+        return InvalidationBus.none();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cluster.invalidation.transport", havingValue = "jdbc")
+    public JdbcInvalidationBus jdbcInvalidationBus(
+            JdbcTemplate jdbcTemplate,
+            SigningKeyRing signingKeyRing,
+            @Value("${cluster.invalidation.poll-interval:PT1S}") Duration pollInterval,
+            @Value("${cluster.invalidation.grace:PT10S}") Duration grace,
+            @Value("${cluster.invalidation.retention:PT10M}") Duration retention) {
+        if (!signingKeyRing.isShared()) {
+            throw new IllegalStateException("cluster.invalidation.transport=jdbc needs signing keys shared by every"
+                    + " node: HS256 with jwt.signing.secret, or " + signingKeyRing.getAlgorithm()
+                    + " with jwt.signing.key-directory");
+        }
+        return new JdbcInvalidationBus(jdbcTemplate, pollInterval, grace, retention);
+    }
+}
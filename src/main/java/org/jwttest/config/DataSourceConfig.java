@@ -0,0 +1,42 @@
+package org.jwttest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Sizes the connection pool from the core count unless {@code spring.datasource.hikari.maximum-pool-size}
+ * is set. Hikari's default of 10 is too many on a small container and too few on a large host.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+    // static: a BeanPostProcessor must not pull its configuration class in before the other processors
+    @Bean
+    public static BeanPostProcessor connectionPoolSizePostProcessor(
+            Environment environment,
+            @Value("${datasource.pool.connections-per-core:2}") int connectionsPerCore,
+            @Value("${datasource.pool.spindles:1}") int spindles) {
+        return new BeanPostProcessor() {
+            // before initialization: after spring.datasource.hikari.* is bound and before the slow query
+            // wrapper hides the pool
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource && !environment.containsProperty(MAXIMUM_POOL_SIZE)) {
+                    ((HikariDataSource) bean).setMaximumPoolSize(
+                            poolSize(Runtime.getRuntime().availableProcessors(), connectionsPerCore, spindles));
+                }
+                return bean;
+            }
+        };
+    }
+
+    static int poolSize(int cores, int connectionsPerCore, int spindles) {
+        return Math.max(1, cores * connectionsPerCore + spindles);
+    }
+}
@@ -0,0 +1,60 @@
+package org.jwttest.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request execution mode. By default Tomcat serves requests on its bounded platform thread pool; with
+ * {@code execution.mode=virtual} every request runs on its own virtual thread, so blocking on JDBC or on
+ * the password hashing pool no longer ties up a platform thread. Virtual threads need Java 21 or newer;
+ * the application refuses to start in that mode on an older runtime.
+ */
+@Slf4j
+@Configuration
+public class ExecutionModeConfig {
+
+    /**
+     * Tomcat does not shut down an executor it was handed, so it is closed with the context, once the web
+     * server has stopped and no more requests are submitted.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "execution.mode", havingValue = "virtual")
+    public ExecutorService virtualThreadExecutor() {
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "execution.mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+            ExecutorService virtualThreadExecutor) {
+        log.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // looked up reflectively because the code base still compiles for Java 11
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("execution.mode=virtual requires Java 21 or newer, running on "
+                    + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.jwttest.config;
+
+import org.jwttest.persistence.SlowQueryDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Sampled slow-statement logging, enabled by the {@code prod} profile in place of the per-statement
+ * {@code org.hibernate.SQL} and bind parameter logging. The asynchronous appender of that profile is
+ * configured in logback-spring.xml.
+ */
+@Configuration
+public class LoggingConfig {
+
+    // static: a BeanPostProcessor must not pull its configuration class in before the other processors
+    @Bean
+    @ConditionalOnProperty(name = "logging.slow-query.enabled", havingValue = "true")
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(
+            @Value("${logging.slow-query.threshold:50ms}") Duration threshold,
+            @Value("${logging.slow-query.samples-per-second:10}") int samplesPerSecond) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof SlowQueryDataSource)) {
+                    return new SlowQueryDataSource((DataSource) bean, threshold, samplesPerSecond);
+                }
+                return bean;
+            }
+        };
+    }
+}
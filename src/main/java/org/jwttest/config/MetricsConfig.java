@@ -0,0 +1,199 @@
+package org.jwttest.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jwttest.persistence.LoginWriteBehind;
+import org.jwttest.service.LoginResponseCache;
+import org.jwttest.service.UserStatusCache;
+import org.jwttest.util.BoundedPasswordEncoder;
+import org.jwttest.util.Instrumentation;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RateLimiter;
+import org.jwttest.util.RevocationList;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the components' own statistics as meters and tags {@code http.server.requests} with the same
+ * {@code outcome} vocabulary as the {@link Instrumentation} timers. Timers and their SLO buckets are
+ * configured under {@code management.metrics} in application.yml.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public WebMvcTagsContributor outcomeTagsContributor() {
+        return new WebMvcTagsContributor() {
+            @Override
+            public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                         Throwable exception) {
+                if (exception != null) {
+                    return Tags.of("outcome", Instrumentation.outcomeOf(exception));
+                }
+                return Tags.of("outcome", outcomeOf(response == null ? 500 : response.getStatus()));
+            }
+
+            @Override
+            public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+                return Tags.empty();
+            }
+        };
+    }
+
+    // mirrors the status codes chosen by GlobalExceptionHandler and RateLimitFilter
+    static String outcomeOf(int status) {
+        switch (status) {
+            case 400:
+                return Instrumentation.VALIDATION_ERROR;
+            case 401:
+                return Instrumentation.INVALID_TOKEN;
+            case 404:
+                return Instrumentation.NOT_FOUND;
+            case 429:
+            case 503:
+                return Instrumentation.REJECTED;
+            default:
+                return status < 400 ? Instrumentation.SUCCESS : Instrumentation.ERROR;
+        }
+    }
+
+    @Bean
+    public MeterBinder verifiedTokenCacheMetrics(JwtUtil jwtUtil) {
+        return registry -> {
+            Tags tags = Tags.of("cache", "jwt.verified");
+            FunctionCounter.builder("cache.gets", jwtUtil, util -> util.getCacheStats().getHits())
+                    .tags(tags).tag("result", "hit").register(registry);
+            FunctionCounter.builder("cache.gets", jwtUtil, util -> util.getCacheStats().getMisses())
+                    .tags(tags).tag("result", "miss").register(registry);
+            FunctionCounter.builder("cache.evictions", jwtUtil, util -> util.getCacheStats().getEvictions())
+                    .tags(tags).register(registry);
+            Gauge.builder("cache.size", jwtUtil, util -> util.getCacheStats().getSize())
+                    .tags(tags).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder revocationListMetrics(RevocationList revocationList) {
+        return registry -> {
+            Gauge.builder("jwt.revocations.size", revocationList, RevocationList::size).register(registry);
+            FunctionCounter.builder("jwt.revocations.checks", revocationList, list -> list.stats().getChecks())
+                    .register(registry);
+            FunctionCounter.builder("jwt.revocations.filter_positives", revocationList,
+                    list -> list.stats().getFilterPositives()).register(registry);
+            FunctionCounter.builder("jwt.revocations.false_positives", revocationList,
+                    list -> list.stats().getFalsePositives()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder rateLimitMetrics(RateLimitFilter rateLimitFilter) {
+        return registry -> {
+            for (RateLimiter limiter : rateLimitFilter.getLimiters()) {
+                Tags tags = Tags.of("limiter", limiter.getName());
+                FunctionCounter.builder("rate_limit.requests", limiter, l -> l.stats().getAllowed())
+                        .tags(tags).tag("result", "allowed").register(registry);
+                FunctionCounter.builder("rate_limit.requests", limiter, l -> l.stats().getRejected())
+                        .tags(tags).tag("result", "rejected").register(registry);
+                FunctionCounter.builder("rate_limit.overflowed", limiter, l -> l.stats().getOverflowed())
+                        .tags(tags).register(registry);
+                Gauge.builder("rate_limit.keys", limiter, RateLimiter::size).tags(tags).register(registry);
+            }
+        };
+    }
+
+    /**
+     * Hit ratios of the second-level cache regions, from Hibernate's statistics; zero unless
+     * {@code hibernate.generate_statistics} is on.
+     */
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            List<String> regions = Arrays.asList(statistics.getSecondLevelCacheRegionNames());
+            for (String region : SecondLevelCacheConfig.REGIONS) {
+                if (!regions.contains(region)) {
+                    continue;
+                }
+                Tags tags = Tags.of("cache", "hibernate." + region);
+                FunctionCounter.builder("cache.gets", statistics,
+                                stats -> stats.getDomainDataRegionStatistics(region).getHitCount())
+                        .tags(tags).tag("result", "hit").register(registry);
+                FunctionCounter.builder("cache.gets", statistics,
+                                stats -> stats.getDomainDataRegionStatistics(region).getMissCount())
+                        .tags(tags).tag("result", "miss").register(registry);
+                FunctionCounter.builder("cache.puts", statistics,
+                                stats -> stats.getDomainDataRegionStatistics(region).getPutCount())
+                        .tags(tags).register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder loginResponseCacheMetrics(LoginResponseCache loginResponseCache) {
+        return registry -> {
+            Tags tags = Tags.of("cache", "login.response");
+            FunctionCounter.builder("cache.gets", loginResponseCache, cache -> cache.stats().getHits())
+                    .tags(tags).tag("result", "hit").register(registry);
+            FunctionCounter.builder("cache.gets", loginResponseCache, cache -> cache.stats().getMisses())
+                    .tags(tags).tag("result", "miss").register(registry);
+            Gauge.builder("cache.size", loginResponseCache, LoginResponseCache::size)
+                    .tags(tags).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder userStatusCacheMetrics(UserStatusCache userStatusCache) {
+        return registry -> Gauge.builder("cache.size", userStatusCache, UserStatusCache::size)
+                .tag("cache", "user.status")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder loginWriteBehindMetrics(LoginWriteBehind loginWriteBehind) {
+        return registry -> {
+            Gauge.builder("login.write_behind.pending", loginWriteBehind, writer -> writer.stats().getQueueDepth())
+                    .register(registry);
+            FunctionCounter.builder("login.write_behind.flushes", loginWriteBehind, writer -> writer.stats().getFlushes())
+                    .register(registry);
+            FunctionCounter.builder("login.write_behind.rows", loginWriteBehind, writer -> writer.stats().getFlushedRows())
+                    .register(registry);
+            FunctionCounter.builder("login.write_behind.coalesced", loginWriteBehind, writer -> writer.stats().getCoalesced())
+                    .register(registry);
+            Gauge.builder("login.write_behind.last_batch", loginWriteBehind, writer -> writer.stats().getLastBatchSize())
+                    .register(registry);
+            TimeGauge.builder("login.write_behind.flush.last", loginWriteBehind, TimeUnit.NANOSECONDS,
+                    writer -> writer.stats().getLastFlushNanos()).register(registry);
+            TimeGauge.builder("login.write_behind.flush.max", loginWriteBehind, TimeUnit.NANOSECONDS,
+                    writer -> writer.stats().getMaxFlushNanos()).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder passwordHashingPoolMetrics(PasswordEncoder passwordEncoder) {
+        return registry -> {
+            if (!(passwordEncoder instanceof BoundedPasswordEncoder)) {
+                return;
+            }
+            BoundedPasswordEncoder pool = (BoundedPasswordEncoder) passwordEncoder;
+            Gauge.builder("password.pool.active", pool, BoundedPasswordEncoder::getActiveCount).register(registry);
+            Gauge.builder("password.pool.queued", pool, BoundedPasswordEncoder::getQueueSize).register(registry);
+            FunctionCounter.builder("password.pool.rejected", pool, BoundedPasswordEncoder::getRejectedCount)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package org.jwttest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Request rate limits of the unauthenticated endpoints, each a number of requests per window and client
+ * address, plus per email on {@code /sign-up} and per token subject on {@code /login}. A limit of 0
+ * disables it; {@code rate-limit.enabled=false} disables them all.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${rate-limit.eviction-interval:PT1M}")
+    private Duration evictionInterval;
+
+    @Value("${rate-limit.sign-up.window:PT1M}")
+    private Duration signUpWindow;
+
+    @Value("${rate-limit.sign-up.per-client:20}")
+    private int signUpPerClient;
+
+    @Value("${rate-limit.sign-up.per-email:5}")
+    private int signUpPerEmail;
+
+    @Value("${rate-limit.sign-up-bulk.window:PT1M}")
+    private Duration signUpBulkWindow;
+
+    @Value("${rate-limit.sign-up-bulk.per-client:5}")
+    private int signUpBulkPerClient;
+
+    @Value("${rate-limit.login.window:PT1M}")
+    private Duration loginWindow;
+
+    @Value("${rate-limit.login.per-client:120}")
+    private int loginPerClient;
+
+    @Value("${rate-limit.login.per-subject:60}")
+    private int loginPerSubject;
+
+    @Value("${rate-limit.token-refresh.window:PT1M}")
+    private Duration tokenRefreshWindow;
+
+    @Value("${rate-limit.token-refresh.per-client:30}")
+    private int tokenRefreshPerClient;
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(JwtUtil jwtUtil, ObjectMapper objectMapper) {
+        RateLimitFilter filter = new RateLimitFilter(jwtUtil, objectMapper, evictionInterval);
+        if (!enabled) {
+            return filter;
+        }
+        return filter
+                .limit("/sign-up", limiter("sign-up.client", signUpPerClient, signUpWindow),
+                        RateLimitFilter.UserKey.EMAIL, limiter("sign-up.email", signUpPerEmail, signUpWindow))
+                .limit("/sign-up/bulk", limiter("sign-up-bulk.client", signUpBulkPerClient, signUpBulkWindow),
+                        null, null)
+                .limit("/login", limiter("login.client", loginPerClient, loginWindow),
+                        RateLimitFilter.UserKey.SUBJECT, limiter("login.subject", loginPerSubject, loginWindow))
+                .limit("/token/refresh", limiter("token-refresh.client", tokenRefreshPerClient, tokenRefreshWindow),
+                        null, null);
+    }
+
+    /**
+     * Runs the limits just before Spring Security, after the metrics filter, so rejected requests are still
+     * counted in {@code http.server.requests}.
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    private RateLimiter limiter(String name, int requests, Duration window) {
+        return requests > 0 ? new RateLimiter(name, requests, window, maxKeys) : null;
+    }
+}
@@ -0,0 +1,309 @@
+package org.jwttest.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.exception.ErrorResponse;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits the unauthenticated endpoints before they reach {@code JwtController}, so a rejected request
+ * costs a map lookup and a compare-and-set instead of a password hash or a query.
+ * <p>
+ * Every limited endpoint has a bucket per client address; {@code /sign-up} also has one per email, read
+ * from the start of the body, and {@code /login} one per token subject, so a single account cannot be
+ * hammered from many addresses. The subject is only taken from a token that verifies, which is cached
+ * for the controller, so nobody can drain another user's bucket with forged tokens. Rejected requests get
+ * 429 with a {@code Retry-After} header. Idle buckets are evicted every {@code evictionInterval}.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * How much of a {@code /sign-up} body is read ahead to find the email; the rest is streamed to the
+     * controller untouched.
+     */
+    static final int MAX_SCANNED_BODY_BYTES = 8192;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final List<RateLimiter> limiters = new ArrayList<>();
+    private final JwtUtil jwtUtil;
+    private final ObjectMapper objectMapper;
+    private final Duration evictionInterval;
+    private ScheduledExecutorService evictor;
+
+    public RateLimitFilter(JwtUtil jwtUtil, ObjectMapper objectMapper, Duration evictionInterval) {
+        this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * Limits POST requests to {@code path} per client address and, if {@code perUser} is given, per user
+     * as identified by {@code userKey}. Either limiter may be {@code null} for no limit.
+     */
+    public RateLimitFilter limit(String path, RateLimiter perClient, UserKey userKey, RateLimiter perUser) {
+        endpoints.put(path, new Endpoint(perClient, userKey, perUser));
+        if (perClient != null) {
+            limiters.add(perClient);
+        }
+        if (perUser != null) {
+            limiters.add(perUser);
+        }
+        return this;
+    }
+
+    public List<RateLimiter> getLimiters() {
+        return Collections.unmodifiableList(limiters);
+    }
+
+    @PostConstruct
+    public void start() {
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = evictionInterval.toMillis();
+        evictor.scheduleWithFixedDelay(this::evictQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictor != null) {
+            evictor.shutdown();
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Endpoint endpoint = "POST".equals(request.getMethod()) ? endpoints.get(pathOf(request)) : null;
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (endpoint.perClient != null && rejected(endpoint.perClient, request.getRemoteAddr(), response)) {
+            return;
+        }
+        if (endpoint.perUser != null) {
+            String user;
+            if (endpoint.userKey == UserKey.EMAIL) {
+                ReadAheadRequest readAhead = ReadAheadRequest.of(request, MAX_SCANNED_BODY_BYTES);
+                request = readAhead;
+                user = readAhead.email();
+            } else {
+                user = subjectOf(request.getHeader(HttpHeaders.AUTHORIZATION));
+            }
+            if (user != null && rejected(endpoint.perUser, user, response)) {
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean rejected(RateLimiter limiter, String key, HttpServletResponse response) throws IOException {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos == 0) {
+            return false;
+        }
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests"));
+        return true;
+    }
+
+    // the subject of a valid token only, so forged tokens cannot use up someone else's bucket
+    private String subjectOf(String tokenHeader) {
+        if (tokenHeader == null) {
+            return null;
+        }
+        try {
+            return jwtUtil.extractSubject(tokenHeader.replace("Bearer ", ""));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
+    }
+
+    private void evictQuietly() {
+        try {
+            for (RateLimiter limiter : limiters) {
+                limiter.evictIdle();
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to evict idle rate limit buckets, they will be retried", e);
+        }
+    }
+
+    /**
+     * What identifies the user of a request to a per-user limit.
+     */
+    public enum UserKey {
+        /** the {@code email} field of the JSON body */
+        EMAIL,
+        /** the subject of the bearer token */
+        SUBJECT
+    }
+
+    private static final class Endpoint {
+        private final RateLimiter perClient;
+        private final UserKey userKey;
+        private final RateLimiter perUser;
+
+        Endpoint(RateLimiter perClient, UserKey userKey, RateLimiter perUser) {
+            this.perClient = perClient;
+            this.userKey = userKey;
+            this.perUser = perUser;
+        }
+    }
+
+    /**
+     * A request whose body starts with bytes already read from it; reading it yields those bytes, then
+     * the rest of the original stream.
+     */
+    static final class ReadAheadRequest extends HttpServletRequestWrapper {
+        private final byte[] head;
+        private final int length;
+        private final ServletInputStream body;
+
+        private ReadAheadRequest(HttpServletRequest request, byte[] head, int length) throws IOException {
+            super(request);
+            this.head = head;
+            this.length = length;
+            this.body = new ReadAheadInputStream(head, length, request.getInputStream());
+        }
+
+        static ReadAheadRequest of(HttpServletRequest request, int maxBytes) throws IOException {
+            byte[] head = new byte[maxBytes];
+            InputStream in = request.getInputStream();
+            int length = 0;
+            int read;
+            while (length < maxBytes && (read = in.read(head, length, maxBytes - length)) != -1) {
+                length += read;
+            }
+            return new ReadAheadRequest(request, head, length);
+        }
+
+        /**
+         * The normalized {@code email} field, if it is within the bytes read ahead.
+         */
+        String email() {
+            try (JsonParser parser = JSON.createParser(head, 0, length)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("email".equals(field)) {
+                        return value == JsonToken.VALUE_STRING ? parser.getText().trim().toLowerCase(Locale.ROOT) : null;
+                    }
+                    parser.skipChildren();
+                }
+            } catch (IOException e) {
+                // malformed or cut off before the email; the controller reports malformed bodies
+            }
+            return null;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(body, charset));
+        }
+    }
+
+    private static final class ReadAheadInputStream extends ServletInputStream {
+        private final byte[] head;
+        private final int length;
+        private final ServletInputStream rest;
+        private int position;
+
+        ReadAheadInputStream(byte[] head, int length, ServletInputStream rest) {
+            this.head = head;
+            this.length = length;
+            this.rest = rest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return position < length ? head[position++] & 0xff : rest.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (position < length) {
+                int copied = Math.min(count, length - position);
+                System.arraycopy(head, position, buffer, offset, copied);
+                position += copied;
+                return copied;
+            }
+            return rest.read(buffer, offset, count);
+        }
+
+        @Override
+        public boolean isFinished() {
+            return position >= length && rest.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return position < length || rest.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            rest.setReadListener(readListener);
+        }
+    }
+}
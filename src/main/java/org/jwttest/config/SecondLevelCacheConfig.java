@@ -0,0 +1,67 @@
+package org.jwttest.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.jwttest.model.Phone;
+import org.jwttest.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Caffeine caches behind Hibernate's second-level cache, one per region declared on the entities. The
+ * cache manager belongs to this application context: the provider's default one would be shared by every
+ * session factory in the JVM and closed by the first to shut down.
+ * <p>
+ * Entries are held by reference, bounded in number and expire {@code ttl} after they were written, which
+ * also bounds how long a change made to the database behind the application's back can go unnoticed.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final List<String> REGIONS = List.of(
+            User.CACHE_REGION, User.EMAIL_CACHE_REGION, User.PHONES_CACHE_REGION, Phone.CACHE_REGION);
+
+    @Value("${second-level-cache.max-users:100000}")
+    private long maxUsers;
+
+    @Value("${second-level-cache.max-phones:300000}")
+    private long maxPhones;
+
+    @Value("${second-level-cache.ttl:PT1H}")
+    private Duration ttl;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("second-level-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+        for (String region : REGIONS) {
+            cacheManager.createCache(region, configuration(Phone.CACHE_REGION.equals(region) ? maxPhones : maxUsers));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+
+    private CaffeineConfiguration<Object, Object> configuration(long maximumSize) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // Hibernate stores its own immutable cache entries, copying them on every read would be wasted
+        configuration.setStoreByValue(false);
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        return configuration;
+    }
+}
@@ -1,30 +1,119 @@
 package org.jwttest.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.util.BoundedPasswordEncoder;
+import org.jwttest.util.Instrumentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
 @Configuration
 public class SecurityConfig {
 
+    @Value("${spring.security.user.password:}")
+    private String adminPassword;
+
+    @Value("${password.hashing.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${password.hashing.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${password.hashing.argon2.memory-kb:15360}")
+    private int argon2MemoryKb;
+
+    @Value("${password.hashing.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${password.hashing.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    @Value("${password.hashing.pbkdf2.iterations:310000}")
+    private int pbkdf2Iterations;
+
+    @Value("${password.hashing.pool.threads:0}")
+    private int poolThreads;
+
+    @Value("${password.hashing.pool.queue-capacity:64}")
+    private int poolQueueCapacity;
+
+    @Value("${password.hashing.pool.timeout-ms:5000}")
+    private long poolTimeoutMs;
+
+    /**
+     * Everything is open except {@code /admin/**} and the actuator endpoints other than health, which take
+     * HTTP Basic credentials of the {@code spring.security.user} account. Its password must be configured as
+     * an encoded hash ({@code ADMIN_PASSWORD_HASH}); until it is, those endpoints are disabled, which is
+     * logged at startup.
+     */
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        boolean adminEnabled = !adminPassword.isEmpty();
+        if (!adminEnabled) {
+            log.warn("ADMIN_PASSWORD_HASH is not set: /admin/** and the actuator endpoints other than health "
+                    + "are disabled");
+        }
         http
                 .csrf().disable()
-                .authorizeRequests(auth -> auth
-                        .antMatchers("/**").permitAll()
-                        .anyRequest().authenticated()
-                )
+                .authorizeRequests(auth -> {
+                    auth.requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll();
+                    if (adminEnabled) {
+                        auth.antMatchers("/admin/**").hasRole("ADMIN")
+                                .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN");
+                    } else {
+                        auth.antMatchers("/admin/**").denyAll()
+                                .requestMatchers(EndpointRequest.toAnyEndpoint()).denyAll();
+                    }
+                    auth.antMatchers("/**").permitAll()
+                            .anyRequest().authenticated();
+                })
                 .httpBasic();
         return http.build();
     }
 
+    /**
+     * Hashes with the configured algorithm on a bounded worker pool (one thread per core by default).
+     * Stored hashes carry an {@code {id}} prefix; hashes without one are legacy BCrypt hashes.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(Instrumentation instrumentation) {
+        int threads = poolThreads > 0 ? poolThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(hashingEncoder(), threads, poolQueueCapacity, poolTimeoutMs, instrumentation);
+    }
+
+    private PasswordEncoder hashingEncoder() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("argon2", new Argon2PasswordEncoder(16, 32, argon2Parallelism, argon2MemoryKb, argon2Iterations));
+        encoders.put("pbkdf2", pbkdf2(pbkdf2Iterations));
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + algorithm);
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    private static Pbkdf2PasswordEncoder pbkdf2(int iterations) {
+        Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder("", 16, iterations, 256);
+        encoder.setAlgorithm(Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+        return encoder;
     }
 
 }
@@ -0,0 +1,49 @@
+package org.jwttest.config;
+
+import org.jwttest.persistence.InMemoryUserStore;
+import org.jwttest.persistence.JpaRefreshTokenStore;
+import org.jwttest.persistence.JpaUserStore;
+import org.jwttest.persistence.LoginWriteBehind;
+import org.jwttest.persistence.RefreshTokenRepository;
+import org.jwttest.persistence.UserBatchWriter;
+import org.jwttest.persistence.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Where users and their refresh tokens are kept: the database through JPA ({@code storage.type=jpa}, the
+ * default) or {@link InMemoryUserStore} ({@code storage.type=memory}). Revoked tokens stay in the database
+ * either way.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+    public JpaUserStore jpaUserStore(UserRepository userRepository, UserBatchWriter userBatchWriter,
+                                     LoginWriteBehind loginWriteBehind) {
+        return new JpaUserStore(userRepository, userBatchWriter, loginWriteBehind);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "jpa", matchIfMissing = true)
+    public JpaRefreshTokenStore jpaRefreshTokenStore(RefreshTokenRepository refreshTokenRepository) {
+        return new JpaRefreshTokenStore(refreshTokenRepository);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+    public InMemoryUserStore inMemoryUserStore(
+            @Value("${storage.memory.directory:./data/users}") String directory,
+            @Value("${storage.memory.shards:0}") int shards,
+            @Value("${sign-up.bulk.chunk-size:500}") int chunkSize,
+            @Value("${storage.memory.sync-interval:PT1S}") Duration syncInterval,
+            @Value("${storage.memory.snapshot-interval:PT10M}") Duration snapshotInterval) {
+        return new InMemoryUserStore(Paths.get(directory), shards, chunkSize, syncInterval, snapshotInterval);
+    }
+}
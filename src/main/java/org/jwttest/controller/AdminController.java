@@ -0,0 +1,37 @@
+package org.jwttest.controller;
+
+import org.jwttest.model.RevocationRequest;
+import org.jwttest.service.TokenRevocationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Operator endpoints, restricted to the {@code ADMIN} role by {@code SecurityConfig}.
+ */
+@RestController
+public class AdminController {
+
+    private final TokenRevocationService tokenRevocationService;
+
+    public AdminController(TokenRevocationService tokenRevocationService) {
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    /**
+     * Revokes a token, given in full or by {@code jti}, until it expires. Revoking a token twice, or an
+     * already expired one, is not an error.
+     */
+    @PostMapping("/admin/revocations")
+    public ResponseEntity<Void> revoke(@RequestBody RevocationRequest request) {
+        if (request.getToken() != null) {
+            tokenRevocationService.revokeToken(request.getToken());
+        } else if (request.getJti() != null) {
+            tokenRevocationService.revokeId(request.getJti());
+        } else {
+            throw new IllegalArgumentException("Either token or jti is required");
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,33 @@
+package org.jwttest.controller;
+
+import org.jwttest.util.SigningKeyRing;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Publishes the token verification keys so other services can verify tokens without calling this one.
+ */
+@RestController
+public class JwksController {
+
+    static final MediaType JWK_SET = MediaType.parseMediaType("application/jwk-set+json");
+
+    private final SigningKeyRing keyRing;
+
+    public JwksController(SigningKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(keyRing.getJwksMaxAge()).cachePublic())
+                .contentType(JWK_SET)
+                .body(keyRing.jwks());
+    }
+}
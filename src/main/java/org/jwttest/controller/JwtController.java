@@ -1,19 +1,37 @@
 package org.jwttest.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.jwttest.exception.ErrorResponse;
-import org.jwttest.model.User;
+import org.jwttest.model.BulkSignUpResult;
+import org.jwttest.model.RefreshRequest;
+import org.jwttest.model.TokenResponse;
 import org.jwttest.model.UserRequest;
 import org.jwttest.model.UserResponse;
+import org.jwttest.service.LoginResponseCache;
 import org.jwttest.service.UserService;
 import org.jwttest.util.JwtUtil;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 @Slf4j
 @RestController
 public class JwtController {
@@ -22,9 +40,14 @@ public class JwtController {
 
     private UserService userService;
 
-    public JwtController(JwtUtil jwtUtil, UserService userService) {
+    private final ObjectReader bulkRequestReader;
+    private final ObjectWriter bulkResultWriter;
+
+    public JwtController(JwtUtil jwtUtil, UserService userService, ObjectMapper objectMapper) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.bulkRequestReader = objectMapper.readerFor(UserRequest.class);
+        this.bulkResultWriter = objectMapper.writerFor(BulkSignUpResult.class);
     }
 
     @PostMapping("/sign-up")
@@ -33,10 +56,116 @@ public class JwtController {
         return ResponseEntity.status(HttpStatus.CREATED).body(user);
     }
 
+    /**
+     * Signs up the users of a JSON array or of newline-delimited JSON, answering one NDJSON line per record
+     * in request order. The body is parsed as it arrives and results are written a chunk at a time, so an
+     * import of any size runs in constant memory. A record that cannot be parsed ends the import with a
+     * 400 line for its index; the records before it are kept.
+     */
+    @PostMapping(value = "/sign-up/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void signUpBulk(InputStream body, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        try (MappingIterator<UserRequest> parsed = bulkRequestReader.readValues(body)) {
+            ParsedRecords requests = new ParsedRecords(parsed);
+            userService.createUsers(requests, results -> {
+                try {
+                    for (BulkSignUpResult result : results) {
+                        out.write(bulkResultWriter.writeValueAsBytes(result));
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (requests.malformed) {
+                out.write(bulkResultWriter.writeValueAsBytes(
+                        BulkSignUpResult.failed(requests.count, HttpStatus.BAD_REQUEST.value(), "Malformed record")));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns the logged-in user. A client that sends back the ETag of its last response in
+     * {@code If-None-Match} gets 304 while that response is still current.
+     */
     @PostMapping("/login")
-    public ResponseEntity<User> login(@RequestHeader("Authorization") String tokenHeader) {
-        User user = userService.getUserByToken(tokenHeader);
-        return ResponseEntity.ok(user);
+    public ResponseEntity<byte[]> login(@RequestHeader("Authorization") String tokenHeader,
+                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            LoginResponseCache.Entry cached = userService.findNotModifiedLogin(tokenHeader, ifNoneMatch);
+            if (cached != null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cached.getETag()).build();
+            }
+        }
+        LoginResponseCache.Entry response = userService.login(tokenHeader);
+        return ResponseEntity.ok()
+                .eTag(response.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.getBody());
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and refresh token. The presented refresh token is
+     * spent; presenting it again revokes every refresh token issued from the same one at sign-up. Access
+     * tokens already issued stay valid until they expire.
+     */
+    @PostMapping("/token/refresh")
+    public ResponseEntity<TokenResponse> refresh(@RequestBody RefreshRequest request) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(userService.refresh(request.getRefreshToken()));
+    }
+
+    /**
+     * Records read from the body until the first one Jackson cannot read; past a syntax error there is no
+     * reliable way to find where the next record starts. Reads one record ahead, so that the failure is
+     * seen by {@code hasNext} and the service still completes the records before it.
+     */
+    private static final class ParsedRecords implements Iterator<UserRequest> {
+        private final MappingIterator<UserRequest> parsed;
+        private UserRequest next;
+        private long count;
+        private boolean malformed;
+
+        ParsedRecords(MappingIterator<UserRequest> parsed) {
+            this.parsed = parsed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (malformed) {
+                return false;
+            }
+            try {
+                if (!parsed.hasNextValue()) {
+                    return false;
+                }
+                UserRequest request = parsed.nextValue();
+                // a literal null is a record without an email
+                next = request == null ? new UserRequest() : request;
+                return true;
+            } catch (IOException e) {
+                malformed = true;
+                return false;
+            }
+        }
 
+        @Override
+        public UserRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UserRequest request = next;
+            next = null;
+            count++;
+            return request;
+        }
     }
 }
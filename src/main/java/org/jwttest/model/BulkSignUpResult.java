@@ -0,0 +1,33 @@
+package org.jwttest.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one record of a bulk sign-up: {@code code} is the status {@code /sign-up} would have answered,
+ * with the created user on success and the error detail otherwise. {@code index} is the record's position
+ * in the request body, starting at 0.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkSignUpResult {
+
+    private long index;
+    private int code;
+    private UserResponse user;
+    private String detail;
+
+    public static BulkSignUpResult created(long index, UserResponse user) {
+        return BulkSignUpResult.builder().index(index).code(201).user(user).build();
+    }
+
+    public static BulkSignUpResult failed(long index, int code, String detail) {
+        return BulkSignUpResult.builder().index(index).code(code).detail(detail).build();
+    }
+}
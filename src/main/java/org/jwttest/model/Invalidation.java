@@ -0,0 +1,47 @@
+package org.jwttest.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Something other nodes must drop from their local caches: a user that changed, identified by id and, when
+ * known, by email, or a token revoked until it expires.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Invalidation {
+
+    public enum Kind {
+        USER_CHANGED,
+        TOKEN_REVOKED
+    }
+
+    private final Kind kind;
+    private final UUID userId;
+    private final String email;
+    private final String jti;
+    private final Date expiresAt;
+
+    /**
+     * @param email null when only the row was written, such as by a login write-behind batch
+     */
+    public static Invalidation userChanged(UUID userId, String email) {
+        return new Invalidation(Kind.USER_CHANGED, userId, email, null, null);
+    }
+
+    public static Invalidation tokenRevoked(String jti, Date expiresAt) {
+        return new Invalidation(Kind.TOKEN_REVOKED, null, null, jti, expiresAt);
+    }
+
+    public static Invalidation of(Kind kind, UUID userId, String email, String jti, Date expiresAt) {
+        return new Invalidation(kind, userId, email, jti, expiresAt);
+    }
+}
@@ -0,0 +1,42 @@
+package org.jwttest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of a successful login: the user as stored, minus the password hash.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginResponse {
+
+    private UUID id;
+    private String name;
+    private String email;
+    private List<Phone> phones;
+    private Date created;
+    private Date lastLogin;
+    @ToString.Exclude
+    private String token;
+    private boolean isActive;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Phone {
+        private Long id;
+        private Long number;
+        private Integer citycode;
+        private String countrycode;
+    }
+}
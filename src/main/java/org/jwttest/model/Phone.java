@@ -2,11 +2,15 @@ package org.jwttest.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
 @Table(name = "phones")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Phone.CACHE_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,8 +18,12 @@ import javax.persistence.*;
 @Builder
 public class Phone {
 
+    public static final String CACHE_REGION = "phones";
+
+    // pooled sequence instead of IDENTITY, so Hibernate can batch phone inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "phones_seq")
+    @SequenceGenerator(name = "phones_seq", sequenceName = "phones_seq", allocationSize = 50)
     private Long id;
 
     private Long number;
@@ -24,7 +32,7 @@ public class Phone {
 
     private String countrycode;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonBackReference
     private User user;
@@ -0,0 +1,17 @@
+package org.jwttest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshRequest {
+
+    @ToString.Exclude
+    private String refreshToken;
+}
@@ -0,0 +1,73 @@
+package org.jwttest.model;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A refresh token, stored by the SHA-256 of its value so the table cannot be replayed from a dump.
+ * <p>
+ * Each refresh replaces the presented token with a new one of the same family and marks it used. A used
+ * token stays until it expires: presented again, it shows that the token was copied, and the whole family
+ * is deleted.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "ix_refresh_tokens_family_id", columnList = "family_id"),
+        @Index(name = "ix_refresh_tokens_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken implements Persistable<String> {
+
+    @Id
+    @Column(name = "token_hash", updatable = false, nullable = false, length = 43)
+    private String tokenHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, updatable = false)
+    private User user;
+
+    @Column(name = "family_id", nullable = false, updatable = false, columnDefinition = "UUID")
+    private UUID familyId;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    @Column(nullable = false)
+    private boolean used;
+
+    /** The token itself, only known to the request that issued it. */
+    @Transient
+    @ToString.Exclude
+    private String value;
+
+    /** Same as {@link User#isNew()}: the id is assigned, so {@code save} must be told to persist. */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    public String getId() {
+        return tokenHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,21 @@
+package org.jwttest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Token to revoke, given either in full or by its {@code jti} alone.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevocationRequest {
+
+    @ToString.Exclude
+    private String token;
+    private String jti;
+}
@@ -0,0 +1,26 @@
+package org.jwttest.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A revoked token id, kept until the token expires so revocations survive a restart.
+ */
+@Entity
+@Table(name = "revoked_tokens", indexes = @Index(name = "ix_revoked_tokens_expires_at", columnList = "expires_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @Column(name = "jti", updatable = false, nullable = false, length = 64)
+    private String id;
+
+    @Column(name = "expires_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+}
@@ -0,0 +1,24 @@
+package org.jwttest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Body of a successful refresh: a new access token, valid for {@code expiresIn} seconds, and the refresh
+ * token that replaces the one presented.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenResponse {
+
+    @ToString.Exclude
+    private String token;
+    @ToString.Exclude
+    private String refreshToken;
+    private long expiresIn;
+}
@@ -1,21 +1,43 @@
 package org.jwttest.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Kept in the second-level cache, as are its email-to-id resolutions and its phone collection, so that a
+ * repeat {@code findByEmail} issues no SQL. Writes through Hibernate update the cache; the JDBC writes of
+ * {@code LoginWriteBehind} soft-lock the users' entries while they run and unlock them once committed, see
+ * {@code UserCacheInvalidator}, so the next read loads the new row.
+ */
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = User.EMAIL_UNIQUE_INDEX, columnList = "email", unique = true))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.EMAIL_CACHE_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class User {
+public class User implements Persistable<UUID> {
+
+    /** Emails are stored trimmed and lower-cased, so this index also makes them case-insensitively unique. */
+    public static final String EMAIL_UNIQUE_INDEX = "ux_users_email";
+
+    public static final String CACHE_REGION = "users";
+    public static final String EMAIL_CACHE_REGION = "users.email";
+    public static final String PHONES_CACHE_REGION = "users.phones";
 
     @Id
     @Column(name = "id", updatable = false, nullable = false, columnDefinition = "UUID")
@@ -24,14 +46,15 @@ public class User {
     @Column
     private String name;
 
+    @NaturalId
     @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
     private String password;
 
-    @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
-    @JoinColumn(name = "user_id")
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.PHONES_CACHE_REGION)
     @JsonManagedReference
     private List<Phone> phones;
 
@@ -43,9 +66,32 @@ public class User {
     @Temporal(TemporalType.TIMESTAMP)
     private Date lastLogin;
 
-    @Column(name = "token")
+    // an RS256 token with a kid header is about 550 characters
+    @Column(name = "token", length = 1024)
     private String token;
 
     @Column(nullable = false)
     private boolean isActive;
+
+    /**
+     * Ids are assigned before the first save, so Spring Data cannot tell new users apart by id; without
+     * this flag {@code save} would merge, issuing a SELECT before every sign-up INSERT.
+     */
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
 }
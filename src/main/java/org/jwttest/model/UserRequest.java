@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.util.List;
 
@@ -17,6 +18,7 @@ public class UserRequest {
 
     private String email;
 
+    @ToString.Exclude
     private String password;
     private List<Phone> phones;
 
@@ -2,6 +2,7 @@ package org.jwttest.model;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.ToString;
 
 import java.util.Date;
 import java.util.UUID;
@@ -13,6 +14,9 @@ public class UserResponse {
     private UUID id;
     private Date created;
     private Date lastLogin;
+    @ToString.Exclude
     private String token;
+    @ToString.Exclude
+    private String refreshToken;
     private boolean isActive;
 }
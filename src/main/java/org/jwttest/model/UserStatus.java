@@ -0,0 +1,24 @@
+package org.jwttest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Minimal, immutable view of a user that is enough to answer a login without loading the entity.
+ */
+@Getter
+@AllArgsConstructor
+public class UserStatus {
+
+    private final UUID id;
+    private final String email;
+    private final boolean isActive;
+    private final Date lastLogin;
+
+    public UserStatus withLastLogin(Date lastLogin) {
+        return new UserStatus(id, email, isActive, lastLogin);
+    }
+}
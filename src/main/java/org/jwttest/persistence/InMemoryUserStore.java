@@ -0,0 +1,838 @@
+package org.jwttest.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.model.Phone;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.jwttest.model.UserStatus;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Users and refresh tokens kept in memory and made durable by a write-ahead log with periodic snapshots,
+ * selected with {@code storage.type=memory} instead of the JPA repositories.
+ * <p>
+ * Both are split into {@code shards}, users by email and refresh tokens by hash, each shard with its own
+ * lock, maps and log file. Reads go to the maps, which hold immutable records, without locking. A write
+ * takes its shard's lock, appends to the shard's log and then changes the map, so writes to different
+ * shards run in parallel and never wait on each other's files. The logs are forced to disk every
+ * {@code syncInterval}, or on each write when it is zero: a crash of the process loses nothing, a crash of
+ * the machine at most that interval.
+ * <p>
+ * Every {@code snapshotInterval}, and on shutdown, each shard continues in a new log generation and writes
+ * its maps to a snapshot of that generation; older files are then deleted. The snapshot is written without
+ * the lock and may already contain changes logged in the new generation, which is harmless as every record
+ * sets values rather than changing them: replayed again over the snapshot, they end in the same state. On
+ * startup the latest snapshot of each shard is loaded and the later logs replayed, up to a record torn by a
+ * crash.
+ * <p>
+ * A user takes one record with its phones in parallel arrays; entities are built per read.
+ * {@link #insertAll} is all or nothing against duplicates, but not against a crash halfway through.
+ */
+@Slf4j
+public class InMemoryUserStore implements UserStore, RefreshTokenStore {
+
+    static final String LOG_SUFFIX = ".log";
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Pattern FILE_NAME = Pattern.compile("(shard-\\d+)\\.(\\d+)(\\.log|\\.snapshot)(\\.tmp)?");
+
+    private static final byte INSERT_USER = 1;
+    private static final byte UPDATE_LOGIN = 2;
+    private static final byte INSERT_TOKEN = 3;
+    private static final byte MARK_USED = 4;
+    private static final byte DELETE_FAMILY = 5;
+    private static final byte DELETE_EXPIRED = 6;
+
+    // stands for null in the primitive fields of the records
+    private static final long NONE = Long.MIN_VALUE;
+    private static final int NO_CITYCODE = Integer.MIN_VALUE;
+
+    private final Path directory;
+    private final Shard[] shards;
+    private final int chunkSize;
+    private final Duration syncInterval;
+    private final Duration snapshotInterval;
+    private final ConcurrentMap<UUID, String> emailsById = new ConcurrentHashMap<>();
+    private final AtomicLong phoneIds = new AtomicLong();
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    public InMemoryUserStore(Path directory, int shards, int chunkSize, Duration syncInterval,
+                             Duration snapshotInterval) {
+        this.directory = directory;
+        this.shards = new Shard[shards > 0 ? shards : defaultShards(Runtime.getRuntime().availableProcessors())];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(String.format("shard-%02d", i));
+        }
+        this.chunkSize = chunkSize;
+        this.syncInterval = syncInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * A few shards per core, so that concurrent writers rarely pick the same one.
+     */
+    static int defaultShards(int cores) {
+        return 4 * cores;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        Set<String> recovered = new TreeSet<>();
+        long generation = recover(recovered) + 1;
+        Set<String> names = new TreeSet<>();
+        for (Shard shard : shards) {
+            shard.log = new WriteAheadLog(directory, shard.name, generation, LOG_SUFFIX, syncInterval.isZero());
+            names.add(shard.name);
+        }
+        // every shard keeps a log, so other names mean that the number of shards changed: the recovered
+        // records now belong to other shards, whose files are replayed in no particular order
+        if (!recovered.isEmpty() && !recovered.equals(names)) {
+            snapshot();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-user-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!syncInterval.isZero()) {
+            long intervalMs = syncInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::syncQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (!snapshotInterval.isZero()) {
+            long intervalMs = snapshotInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        snapshot();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.log.close();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return shardOf(email).users.containsKey(email);
+    }
+
+    @Override
+    public List<String> findExistingEmails(Collection<String> emails) {
+        return emails.stream().filter(this::existsByEmail).collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return Optional.ofNullable(shardOf(email).users.get(email)).map(UserRecord::toUser);
+    }
+
+    @Override
+    public Optional<UserStatus> findStatusByEmail(String email) {
+        return Optional.ofNullable(shardOf(email).users.get(email)).map(UserRecord::toStatus);
+    }
+
+    @Override
+    public Optional<String> findEmailById(UUID id) {
+        return Optional.ofNullable(emailsById.get(id));
+    }
+
+    @Override
+    public User insert(User user) {
+        UserRecord record = newRecord(user);
+        Shard shard = shardOf(record.email);
+        shard.lock.lock();
+        try {
+            if (shard.users.containsKey(record.email)) {
+                throw duplicate(record.email);
+            }
+            shard.append(out -> writeUser(out, record));
+            putUser(record);
+        } finally {
+            shard.lock.unlock();
+        }
+        return user;
+    }
+
+    @Override
+    public void insertAll(List<User> users, List<RefreshToken> refreshTokens) {
+        List<UserRecord> userRecords = new ArrayList<>(users.size());
+        Set<UUID> newIds = new HashSet<>();
+        Set<String> newEmails = new HashSet<>();
+        TreeSet<Integer> locked = new TreeSet<>();
+        for (User user : users) {
+            UserRecord record = newRecord(user);
+            if (!newEmails.add(record.email)) {
+                throw duplicate(record.email);
+            }
+            userRecords.add(record);
+            newIds.add(record.id);
+            locked.add(shardIndex(record.email));
+        }
+        List<TokenRecord> tokenRecords = new ArrayList<>(refreshTokens.size());
+        for (RefreshToken token : refreshTokens) {
+            TokenRecord record = TokenRecord.of(token);
+            tokenRecords.add(record);
+            locked.add(shardIndex(record.hash));
+        }
+
+        // in index order, so that two calls never wait on each other
+        locked.forEach(index -> shards[index].lock.lock());
+        try {
+            for (UserRecord record : userRecords) {
+                if (shardOf(record.email).users.containsKey(record.email)) {
+                    throw duplicate(record.email);
+                }
+            }
+            for (TokenRecord record : tokenRecords) {
+                if (!newIds.contains(record.userId)) {
+                    checkUserExists(record.userId);
+                }
+            }
+            for (UserRecord record : userRecords) {
+                shardOf(record.email).append(out -> writeUser(out, record));
+                putUser(record);
+            }
+            for (TokenRecord record : tokenRecords) {
+                Shard shard = shardOf(record.hash);
+                shard.append(out -> writeToken(out, record));
+                shard.tokens.put(record.hash, record);
+            }
+        } finally {
+            locked.descendingSet().forEach(index -> shards[index].lock.unlock());
+        }
+    }
+
+    /**
+     * Like the write-behind's UPDATE, a user that is not there is not an error.
+     */
+    @Override
+    public User updateLogin(User user) {
+        Shard shard = shardOf(user.getEmail());
+        long lastLogin = time(user.getLastLogin());
+        shard.lock.lock();
+        try {
+            UserRecord current = shard.users.get(user.getEmail());
+            if (current != null) {
+                shard.append(out -> writeLogin(out, current.email, user.getToken(), lastLogin));
+                shard.users.put(current.email, current.withLogin(user.getToken(), lastLogin));
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+        return user;
+    }
+
+    @Override
+    public void save(RefreshToken token) {
+        TokenRecord record = TokenRecord.of(token);
+        Shard shard = shardOf(record.hash);
+        shard.lock.lock();
+        try {
+            checkUserExists(record.userId);
+            shard.append(out -> writeToken(out, record));
+            shard.tokens.put(record.hash, record);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<RefreshToken> findWithUser(String tokenHash) {
+        TokenRecord token = shardOf(tokenHash).tokens.get(tokenHash);
+        if (token == null) {
+            return Optional.empty();
+        }
+        String email = emailsById.get(token.userId);
+        UserRecord user = email == null ? null : shardOf(email).users.get(email);
+        if (user == null) {
+            return Optional.empty();
+        }
+        return Optional.of(RefreshToken.builder()
+                .tokenHash(token.hash)
+                .user(user.toUser())
+                .familyId(token.familyId)
+                .expiresAt(new Date(token.expiresAt))
+                .used(token.used)
+                .build());
+    }
+
+    @Override
+    public int markUsed(String tokenHash) {
+        Shard shard = shardOf(tokenHash);
+        shard.lock.lock();
+        try {
+            TokenRecord token = shard.tokens.get(tokenHash);
+            if (token == null || token.used) {
+                return 0;
+            }
+            shard.append(out -> writeMarkUsed(out, tokenHash));
+            shard.tokens.put(tokenHash, token.markUsed());
+            return 1;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Scans every shard; it only happens when a used token is presented again.
+     */
+    @Override
+    public int deleteFamily(UUID familyId) {
+        int deleted = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                List<String> hashes = shard.tokens.values().stream()
+                        .filter(token -> token.familyId.equals(familyId))
+                        .map(token -> token.hash)
+                        .collect(Collectors.toList());
+                if (!hashes.isEmpty()) {
+                    shard.append(out -> writeDeleteFamily(out, familyId));
+                    hashes.forEach(shard.tokens::remove);
+                    deleted += hashes.size();
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public int deleteExpired(Date now) {
+        long time = now.getTime();
+        int deleted = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                long expired = shard.tokens.values().stream().filter(token -> token.expiresAt <= time).count();
+                if (expired > 0) {
+                    shard.append(out -> writeDeleteExpired(out, time));
+                    shard.tokens.values().removeIf(token -> token.expiresAt <= time);
+                    deleted += expired;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Forces every shard's log to disk.
+     */
+    public void sync() throws IOException {
+        for (Shard shard : shards) {
+            shard.log.sync();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every shard and deletes the files it replaces.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            for (Shard shard : shards) {
+                shard.snapshot();
+            }
+            deleteFilesOfOtherShards();
+            log.info("Snapshot of {} users in {} ms", emailsById.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private Shard shardOf(String key) {
+        return shards[shardIndex(key)];
+    }
+
+    private int shardIndex(String key) {
+        int hash = key.hashCode();
+        // the high bits too, as String hashes of similar emails differ mostly in the low ones
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    private UserRecord newRecord(User user) {
+        if (user.getId() == null) {
+            user.setId(UUID.randomUUID());
+        }
+        // ids as the phones sequence would assign them
+        if (user.getPhones() != null) {
+            user.getPhones().forEach(phone -> phone.setId(phoneIds.incrementAndGet()));
+        }
+        return UserRecord.of(user);
+    }
+
+    private void putUser(UserRecord record) {
+        shardOf(record.email).users.put(record.email, record);
+        emailsById.put(record.id, record.email);
+        for (long phoneId : record.phoneIds) {
+            phoneIds.accumulateAndGet(phoneId, Math::max);
+        }
+    }
+
+    private void checkUserExists(UUID userId) {
+        if (!emailsById.containsKey(userId)) {
+            throw new DataIntegrityViolationException("Refresh token of unknown user " + userId);
+        }
+    }
+
+    private static DuplicateKeyException duplicate(String email) {
+        // named like the database's unique index, which is what UserServiceImpl recognizes
+        return new DuplicateKeyException("Email already stored, violates " + User.EMAIL_UNIQUE_INDEX);
+    }
+
+    /**
+     * Loads every shard's files, whatever the number of shards that wrote them: records are applied to the
+     * shard of their key. Returns the highest generation found, or 0, and adds the shards found to
+     * {@code names}.
+     */
+    private long recover(Set<String> names) throws IOException {
+        long start = System.nanoTime();
+        Map<String, TreeMap<Long, Path>> logs = new TreeMap<>();
+        Map<String, Long> snapshots = new TreeMap<>();
+        long maxGeneration = 0;
+        for (Path file : files()) {
+            Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+            matcher.matches();
+            if (matcher.group(4) != null) {
+                // a snapshot that was not completed
+                Files.delete(file);
+                continue;
+            }
+            String name = matcher.group(1);
+            long generation = Long.parseLong(matcher.group(2));
+            maxGeneration = Math.max(maxGeneration, generation);
+            if (LOG_SUFFIX.equals(matcher.group(3))) {
+                logs.computeIfAbsent(name, key -> new TreeMap<>()).put(generation, file);
+            } else {
+                snapshots.merge(name, generation, Math::max);
+            }
+        }
+
+        long records = 0;
+        names.addAll(logs.keySet());
+        names.addAll(snapshots.keySet());
+        for (String name : names) {
+            long snapshotGeneration = snapshots.getOrDefault(name, 0L);
+            if (snapshots.containsKey(name)) {
+                records += WriteAheadLog.replay(
+                        WriteAheadLog.file(directory, name, snapshotGeneration, SNAPSHOT_SUFFIX), this::apply);
+            }
+            for (Path file : logs.getOrDefault(name, new TreeMap<>()).tailMap(snapshotGeneration).values()) {
+                records += WriteAheadLog.replay(file, this::apply);
+            }
+        }
+        if (records > 0) {
+            log.info("Recovered {} users from {} records in {} in {} ms", emailsById.size(), records, directory,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return maxGeneration;
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void deleteFilesOfOtherShards() throws IOException {
+        for (Path file : files()) {
+            if (!isCurrentShard(file)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private boolean isCurrentShard(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            return true;
+        }
+        int index = Integer.parseInt(matcher.group(1).substring("shard-".length()));
+        return index < shards.length;
+    }
+
+    /**
+     * Applies one record read from a log or a snapshot, on startup.
+     */
+    private void apply(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case INSERT_USER:
+                putUser(readUser(in));
+                break;
+            case UPDATE_LOGIN: {
+                String email = in.readUTF();
+                String token = readNullable(in);
+                long lastLogin = in.readLong();
+                shardOf(email).users.computeIfPresent(email, (key, user) -> user.withLogin(token, lastLogin));
+                break;
+            }
+            case INSERT_TOKEN: {
+                TokenRecord token = readToken(in);
+                shardOf(token.hash).tokens.put(token.hash, token);
+                break;
+            }
+            case MARK_USED: {
+                String hash = in.readUTF();
+                shardOf(hash).tokens.computeIfPresent(hash, (key, token) -> token.markUsed());
+                break;
+            }
+            case DELETE_FAMILY: {
+                UUID familyId = new UUID(in.readLong(), in.readLong());
+                for (Shard shard : shards) {
+                    shard.tokens.values().removeIf(token -> token.familyId.equals(familyId));
+                }
+                break;
+            }
+            case DELETE_EXPIRED: {
+                long now = in.readLong();
+                for (Shard shard : shards) {
+                    shard.tokens.values().removeIf(token -> token.expiresAt <= now);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private static void writeUser(DataOutput out, UserRecord user) throws IOException {
+        out.writeByte(INSERT_USER);
+        writeUuid(out, user.id);
+        writeNullable(out, user.name);
+        out.writeUTF(user.email);
+        out.writeUTF(user.password);
+        out.writeLong(user.created);
+        out.writeLong(user.lastLogin);
+        writeNullable(out, user.token);
+        out.writeBoolean(user.active);
+        out.writeInt(user.phoneIds.length);
+        for (int i = 0; i < user.phoneIds.length; i++) {
+            out.writeLong(user.phoneIds[i]);
+            out.writeLong(user.numbers[i]);
+            out.writeInt(user.citycodes[i]);
+            writeNullable(out, user.countrycodes[i]);
+        }
+    }
+
+    private static UserRecord readUser(DataInput in) throws IOException {
+        UUID id = readUuid(in);
+        String name = readNullable(in);
+        String email = in.readUTF();
+        String password = in.readUTF();
+        long created = in.readLong();
+        long lastLogin = in.readLong();
+        String token = readNullable(in);
+        boolean active = in.readBoolean();
+        int phones = in.readInt();
+        long[] phoneIds = new long[phones];
+        long[] numbers = new long[phones];
+        int[] citycodes = new int[phones];
+        String[] countrycodes = new String[phones];
+        for (int i = 0; i < phones; i++) {
+            phoneIds[i] = in.readLong();
+            numbers[i] = in.readLong();
+            citycodes[i] = in.readInt();
+            countrycodes[i] = readNullable(in);
+        }
+        return new UserRecord(id, name, email, password, created, lastLogin, token, active,
+                phoneIds, numbers, citycodes, countrycodes);
+    }
+
+    private static void writeLogin(DataOutput out, String email, String token, long lastLogin) throws IOException {
+        out.writeByte(UPDATE_LOGIN);
+        out.writeUTF(email);
+        writeNullable(out, token);
+        out.writeLong(lastLogin);
+    }
+
+    private static void writeToken(DataOutput out, TokenRecord token) throws IOException {
+        out.writeByte(INSERT_TOKEN);
+        out.writeUTF(token.hash);
+        writeUuid(out, token.userId);
+        writeUuid(out, token.familyId);
+        out.writeLong(token.expiresAt);
+        out.writeBoolean(token.used);
+    }
+
+    private static TokenRecord readToken(DataInput in) throws IOException {
+        return new TokenRecord(in.readUTF(), readUuid(in), readUuid(in), in.readLong(), in.readBoolean());
+    }
+
+    private static void writeMarkUsed(DataOutput out, String hash) throws IOException {
+        out.writeByte(MARK_USED);
+        out.writeUTF(hash);
+    }
+
+    private static void writeDeleteFamily(DataOutput out, UUID familyId) throws IOException {
+        out.writeByte(DELETE_FAMILY);
+        writeUuid(out, familyId);
+    }
+
+    private static void writeDeleteExpired(DataOutput out, long now) throws IOException {
+        out.writeByte(DELETE_EXPIRED);
+        out.writeLong(now);
+    }
+
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long time(Date date) {
+        return date == null ? NONE : date.getTime();
+    }
+
+    private static Date date(long time) {
+        return time == NONE ? null : new Date(time);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to force the user store's logs to disk, will retry", e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to write a snapshot of the user store, will retry", e);
+        }
+    }
+
+    private final class Shard {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentMap<String, UserRecord> users = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, TokenRecord> tokens = new ConcurrentHashMap<>();
+        private WriteAheadLog log;
+
+        Shard(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Called under the lock, before the change is applied.
+         */
+        void append(WriteAheadLog.Writer record) {
+            try {
+                log.append(record);
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("Unable to write to the log of " + name, e);
+            }
+        }
+
+        void snapshot() throws IOException {
+            long generation;
+            lock.lock();
+            try {
+                generation = log.roll();
+            } finally {
+                lock.unlock();
+            }
+            // everything logged before the new generation is in the maps by now
+            String temporarySuffix = SNAPSHOT_SUFFIX + TEMPORARY_SUFFIX;
+            try (WriteAheadLog snapshot = new WriteAheadLog(directory, name, generation, temporarySuffix, false)) {
+                for (UserRecord user : users.values()) {
+                    snapshot.append(out -> writeUser(out, user));
+                }
+                for (TokenRecord token : tokens.values()) {
+                    snapshot.append(out -> writeToken(out, token));
+                }
+            }
+            Files.move(WriteAheadLog.file(directory, name, generation, temporarySuffix),
+                    WriteAheadLog.file(directory, name, generation, SNAPSHOT_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE);
+            for (Path file : files()) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && name.equals(matcher.group(1))
+                        && Long.parseLong(matcher.group(2)) < generation) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static final class UserRecord {
+        private final UUID id;
+        private final String name;
+        private final String email;
+        private final String password;
+        private final long created;
+        private final long lastLogin;
+        private final String token;
+        private final boolean active;
+        private final long[] phoneIds;
+        private final long[] numbers;
+        private final int[] citycodes;
+        private final String[] countrycodes;
+
+        UserRecord(UUID id, String name, String email, String password, long created, long lastLogin,
+                   String token, boolean active, long[] phoneIds, long[] numbers, int[] citycodes,
+                   String[] countrycodes) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+            this.password = password;
+            this.created = created;
+            this.lastLogin = lastLogin;
+            this.token = token;
+            this.active = active;
+            this.phoneIds = phoneIds;
+            this.numbers = numbers;
+            this.citycodes = citycodes;
+            this.countrycodes = countrycodes;
+        }
+
+        static UserRecord of(User user) {
+            List<Phone> phones = user.getPhones() == null ? List.of() : user.getPhones();
+            long[] phoneIds = new long[phones.size()];
+            long[] numbers = new long[phones.size()];
+            int[] citycodes = new int[phones.size()];
+            String[] countrycodes = new String[phones.size()];
+            for (int i = 0; i < phones.size(); i++) {
+                Phone phone = phones.get(i);
+                phoneIds[i] = phone.getId();
+                numbers[i] = phone.getNumber() == null ? NONE : phone.getNumber();
+                citycodes[i] = phone.getCitycode() == null ? NO_CITYCODE : phone.getCitycode();
+                countrycodes[i] = phone.getCountrycode();
+            }
+            return new UserRecord(user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                    time(user.getCreated()), time(user.getLastLogin()), user.getToken(), user.isActive(),
+                    phoneIds, numbers, citycodes, countrycodes);
+        }
+
+        UserRecord withLogin(String token, long lastLogin) {
+            return new UserRecord(id, name, email, password, created, lastLogin, token, active,
+                    phoneIds, numbers, citycodes, countrycodes);
+        }
+
+        User toUser() {
+            User user = User.builder()
+                    .id(id)
+                    .name(name)
+                    .email(email)
+                    .password(password)
+                    .created(date(created))
+                    .lastLogin(date(lastLogin))
+                    .token(token)
+                    .isActive(active)
+                    .build();
+            List<Phone> phones = new ArrayList<>(phoneIds.length);
+            for (int i = 0; i < phoneIds.length; i++) {
+                phones.add(Phone.builder()
+                        .id(phoneIds[i])
+                        .number(numbers[i] == NONE ? null : numbers[i])
+                        .citycode(citycodes[i] == NO_CITYCODE ? null : citycodes[i])
+                        .countrycode(countrycodes[i])
+                        .user(user)
+                        .build());
+            }
+            user.setPhones(phones);
+            return user;
+        }
+
+        UserStatus toStatus() {
+            return new UserStatus(id, email, active, date(lastLogin));
+        }
+    }
+
+    private static final class TokenRecord {
+        private final String hash;
+        private final UUID userId;
+        private final UUID familyId;
+        private final long expiresAt;
+        private final boolean used;
+
+        TokenRecord(String hash, UUID userId, UUID familyId, long expiresAt, boolean used) {
+            this.hash = hash;
+            this.userId = userId;
+            this.familyId = familyId;
+            this.expiresAt = expiresAt;
+            this.used = used;
+        }
+
+        static TokenRecord of(RefreshToken token) {
+            return new TokenRecord(token.getTokenHash(), token.getUser().getId(), token.getFamilyId(),
+                    token.getExpiresAt().getTime(), token.isUsed());
+        }
+
+        TokenRecord markUsed() {
+            return new TokenRecord(hash, userId, familyId, expiresAt, true);
+        }
+    }
+}
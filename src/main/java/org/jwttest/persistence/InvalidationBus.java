@@ -0,0 +1,46 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.Invalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link Invalidation}s between the nodes behind the load balancer, so each can keep node-local
+ * caches of state that lives in the database. Delivery is at least once and an invalidation is never
+ * delivered back to the node that published it.
+ */
+public interface InvalidationBus {
+
+    /**
+     * For a single node: publishes to nobody.
+     */
+    static InvalidationBus none() {
+        return new InvalidationBus() {
+            @Override
+            public void publish(List<Invalidation> invalidations) {
+            }
+
+            @Override
+            public void start(Consumer<Invalidation> listener) {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+    }
+
+    void publish(List<Invalidation> invalidations);
+
+    default void publish(Invalidation invalidation) {
+        publish(List.of(invalidation));
+    }
+
+    /**
+     * Hands what the other nodes publish from now on to {@code listener}, one at a time.
+     */
+    void start(Consumer<Invalidation> listener);
+
+    void shutdown();
+}
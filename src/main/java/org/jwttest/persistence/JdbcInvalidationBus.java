@@ -0,0 +1,165 @@
+package org.jwttest.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.model.Invalidation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link InvalidationBus} over the {@code invalidations} table of the shared database: published
+ * invalidations are inserted, and every {@code pollInterval} each node reads the rows of the others, so they
+ * reach it within about that long once committed.
+ * <p>
+ * Identity values are not committed in order, so rows are read by {@code created_at}, the database time the
+ * inserting transaction started, over a window that reaches {@code grace} back: a row committed up to that
+ * long after it was inserted is still seen, once, as the ids already delivered are remembered for as long as
+ * the window covers them. Rows older than {@code retention} are deleted.
+ */
+@Slf4j
+public class JdbcInvalidationBus implements InvalidationBus {
+
+    private static final String INSERT = "insert into invalidations (node_id, kind, user_id, email, jti, expires_at)"
+            + " values (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT = "select id, created_at, node_id, kind, user_id, email, jti, expires_at"
+            + " from invalidations where created_at > ? order by id";
+    private static final String NOW = "select current_timestamp";
+    private static final String DELETE_BEFORE = "delete from invalidations where created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long pollIntervalMs;
+    private final long graceMs;
+    private final long retentionMs;
+
+    // only touched by the polling thread, or by tests calling poll()
+    private final Map<Long, Long> delivered = new HashMap<>();
+    private Consumer<Invalidation> listener;
+    private long since;
+    private long lastPurge;
+    private ScheduledExecutorService poller;
+
+    public JdbcInvalidationBus(JdbcTemplate jdbcTemplate, Duration pollInterval, Duration grace, Duration retention) {
+        if (retention.compareTo(grace) <= 0) {
+            throw new IllegalArgumentException("The retention must exceed the grace period");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollIntervalMs = pollInterval.toMillis();
+        this.graceMs = grace.toMillis();
+        this.retentionMs = retention.toMillis();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(List<Invalidation> invalidations) {
+        jdbcTemplate.batchUpdate(INSERT, invalidations, invalidations.size(), (ps, invalidation) -> {
+            ps.setString(1, nodeId);
+            ps.setString(2, invalidation.getKind().name());
+            ps.setObject(3, invalidation.getUserId());
+            ps.setString(4, invalidation.getEmail());
+            ps.setString(5, invalidation.getJti());
+            ps.setTimestamp(6, invalidation.getExpiresAt() == null
+                    ? null : new Timestamp(invalidation.getExpiresAt().getTime()));
+        });
+    }
+
+    /**
+     * Starts the polling; with a {@code pollInterval} of 0 nothing polls but {@link #poll()}.
+     */
+    @Override
+    public void start(Consumer<Invalidation> listener) {
+        this.listener = listener;
+        long now = now();
+        since = now - graceMs;
+        lastPurge = now;
+        if (pollIntervalMs == 0) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        if (poller != null) {
+            poller.shutdown();
+        }
+    }
+
+    /**
+     * Delivers the rows of other nodes not delivered yet.
+     *
+     * @return how many were delivered
+     */
+    public int poll() {
+        long now = now();
+        int count = 0;
+        for (Row row : jdbcTemplate.query(SELECT, JdbcInvalidationBus::toRow, new Timestamp(since))) {
+            if (delivered.putIfAbsent(row.id, row.createdAt) == null && !nodeId.equals(row.nodeId)) {
+                listener.accept(row.invalidation);
+                count++;
+            }
+        }
+        since = Math.max(since, now - graceMs);
+        delivered.values().removeIf(createdAt -> createdAt <= since);
+        if (now - lastPurge >= retentionMs) {
+            int deleted = jdbcTemplate.update(DELETE_BEFORE, new Timestamp(now - retentionMs));
+            lastPurge = now;
+            log.debug("Deleted {} invalidations older than {} ms", deleted, retentionMs);
+        }
+        return count;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("Unable to read invalidations, they will be read on the next poll", e);
+        }
+    }
+
+    private long now() {
+        return jdbcTemplate.queryForObject(NOW, Timestamp.class).getTime();
+    }
+
+    private static Row toRow(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        return new Row(rs.getLong("id"), rs.getTimestamp("created_at").getTime(), rs.getString("node_id"),
+                Invalidation.of(Invalidation.Kind.valueOf(rs.getString("kind")), rs.getObject("user_id", UUID.class),
+                        rs.getString("email"), rs.getString("jti"),
+                        expiresAt == null ? null : new Date(expiresAt.getTime())));
+    }
+
+    private static final class Row {
+        private final long id;
+        private final long createdAt;
+        private final String nodeId;
+        private final Invalidation invalidation;
+
+        Row(long id, long createdAt, String nodeId, Invalidation invalidation) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.nodeId = nodeId;
+            this.invalidation = invalidation;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    public JpaRefreshTokenStore(RefreshTokenRepository refreshTokenRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+    }
+
+    @Override
+    public void save(RefreshToken token) {
+        refreshTokenRepository.save(token);
+    }
+
+    @Override
+    public Optional<RefreshToken> findWithUser(String tokenHash) {
+        return refreshTokenRepository.findWithUser(tokenHash);
+    }
+
+    @Override
+    public int markUsed(String tokenHash) {
+        return refreshTokenRepository.markUsed(tokenHash);
+    }
+
+    @Override
+    public int deleteFamily(UUID familyId) {
+        return refreshTokenRepository.deleteFamily(familyId);
+    }
+
+    @Override
+    public int deleteExpired(Date now) {
+        return refreshTokenRepository.deleteExpired(now);
+    }
+}
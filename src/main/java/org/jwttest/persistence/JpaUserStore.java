@@ -0,0 +1,79 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.jwttest.model.UserStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The users table through {@link UserRepository}, with inserts of many users through
+ * {@link UserBatchWriter} and logins recorded by {@link LoginWriteBehind} when it is enabled.
+ */
+public class JpaUserStore implements UserStore {
+
+    private final UserRepository userRepository;
+    private final UserBatchWriter userBatchWriter;
+    private final LoginWriteBehind loginWriteBehind;
+
+    public JpaUserStore(UserRepository userRepository, UserBatchWriter userBatchWriter,
+                        LoginWriteBehind loginWriteBehind) {
+        this.userRepository = userRepository;
+        this.userBatchWriter = userBatchWriter;
+        this.loginWriteBehind = loginWriteBehind;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return userRepository.existsByEmail(email);
+    }
+
+    @Override
+    public List<String> findExistingEmails(Collection<String> emails) {
+        return userRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    @Override
+    public Optional<UserStatus> findStatusByEmail(String email) {
+        return userRepository.findStatusByEmail(email);
+    }
+
+    // from the second-level cache once the user has been read
+    @Override
+    public Optional<String> findEmailById(UUID id) {
+        return userRepository.findById(id).map(User::getEmail);
+    }
+
+    // flushed here, so that a duplicate surfaces from this call rather than at commit
+    @Override
+    public User insert(User user) {
+        return userRepository.saveAndFlush(user);
+    }
+
+    @Override
+    public void insertAll(List<User> users, List<RefreshToken> refreshTokens) {
+        userBatchWriter.insertAll(users, refreshTokens);
+    }
+
+    @Override
+    public int getChunkSize() {
+        return userBatchWriter.getChunkSize();
+    }
+
+    @Override
+    public User updateLogin(User user) {
+        if (loginWriteBehind.isEnabled()) {
+            loginWriteBehind.enqueue(user.getId(), user.getEmail(), user.getToken(), user.getLastLogin());
+            return user;
+        }
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,243 @@
+package org.jwttest.persistence;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind pipeline for the {@code token}/{@code lastLogin} columns updated on every login.
+ * <p>
+ * Updates are coalesced per user, so only the latest value is written, and flushed as a single JDBC
+ * batch when the flush interval elapses or {@code batchSize} users are pending. The pending set is
+ * bounded: once {@code maxPending} users are waiting, the caller writes one batch inline, which pushes back
+ * on the request threads instead of growing without limit, while the rest is left to the flusher thread.
+ * Pending updates are flushed on shutdown.
+ * <p>
+ * Of the two columns, {@code lastLogin} is the one read back: every login response carries it, from the
+ * user status projection or the entity, on any node and after a restart. {@code /login} verifies the
+ * presented token without reading the stored one, which only records the latest token issued.
+ * <p>
+ * With {@code login.write-behind.enabled=false} every update is written immediately. Either way the
+ * users' second-level cache entries are locked around the write, see {@link UserCacheInvalidator}.
+ */
+@Slf4j
+@Component
+public class LoginWriteBehind {
+
+    private static final String UPDATE_LOGIN = "update users set token = ?, last_login = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserCacheInvalidator userCacheInvalidator;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxPending;
+    private final long flushIntervalMs;
+
+    private final ConcurrentMap<UUID, PendingLogin> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile int lastBatchSize;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    public LoginWriteBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            boolean enabled, int batchSize, int maxPending, long flushIntervalMs) {
+        this(jdbcTemplate, transactionManager, UserCacheInvalidator.none(), enabled, batchSize, maxPending,
+                flushIntervalMs);
+    }
+
+    @Autowired
+    public LoginWriteBehind(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            UserCacheInvalidator userCacheInvalidator,
+                            @Value("${login.write-behind.enabled:true}") boolean enabled,
+                            @Value("${login.write-behind.batch-size:500}") int batchSize,
+                            @Value("${login.write-behind.max-pending:10000}") int maxPending,
+                            @Value("${login.write-behind.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userCacheInvalidator = userCacheInvalidator;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(UUID userId, String email, String token, Date lastLogin) {
+        PendingLogin login = new PendingLogin(userId, email, token, lastLogin);
+        if (!enabled) {
+            write(List.of(login));
+            return;
+        }
+        if (pending.put(userId, login) != null) {
+            coalesced.increment();
+        }
+
+        int depth = pending.size();
+        if (depth >= batchSize && flusher != null && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        if (depth >= maxPending) {
+            flushBatch();
+        }
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            while (!pending.isEmpty()) {
+                writeOrRequeue(drain());
+            }
+        }
+    }
+
+    /**
+     * Writes one batch on the calling thread, unless the queue went back under {@code maxPending} while
+     * it waited for the lock: a request thread pays for at most one batch, not for the others' updates.
+     */
+    private void flushBatch() {
+        synchronized (flushLock) {
+            if (pending.size() >= maxPending) {
+                writeOrRequeue(drain());
+            }
+        }
+    }
+
+    private void writeOrRequeue(List<PendingLogin> batch) {
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            batch.forEach(login -> pending.putIfAbsent(login.userId, login));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    public Stats stats() {
+        return new Stats(pending.size(), flushes.sum(), flushedRows.sum(), coalesced.sum(),
+                lastBatchSize, lastFlushNanos, maxFlushNanos);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Unable to flush {} pending logins, they will be retried", pending.size(), e);
+        }
+    }
+
+    private List<PendingLogin> drain() {
+        List<PendingLogin> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        for (UUID userId : pending.keySet()) {
+            PendingLogin login = pending.remove(userId);
+            if (login != null) {
+                batch.add(login);
+                if (batch.size() == batchSize) {
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void write(List<PendingLogin> batch) {
+        long start = System.nanoTime();
+        Map<UUID, String> emailsById = new HashMap<>();
+        batch.forEach(login -> emailsById.put(login.userId, login.email));
+        userCacheInvalidator.write(emailsById, () -> transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPDATE_LOGIN, batch, batch.size(), (ps, login) -> {
+                    ps.setString(1, login.token);
+                    ps.setTimestamp(2, new Timestamp(login.lastLogin.getTime()));
+                    ps.setObject(3, login.userId);
+                })));
+        long elapsed = System.nanoTime() - start;
+
+        flushes.increment();
+        flushedRows.add(batch.size());
+        lastBatchSize = batch.size();
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+    }
+
+    private static final class PendingLogin {
+        private final UUID userId;
+        private final String email;
+        private final String token;
+        private final Date lastLogin;
+
+        PendingLogin(UUID userId, String email, String token, Date lastLogin) {
+            this.userId = userId;
+            this.email = email;
+            this.token = token;
+            this.lastLogin = lastLogin;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final int queueDepth;
+        private final long flushes;
+        private final long flushedRows;
+        private final long coalesced;
+        private final int lastBatchSize;
+        private final long lastFlushNanos;
+        private final long maxFlushNanos;
+    }
+}
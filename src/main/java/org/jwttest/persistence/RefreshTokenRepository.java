@@ -0,0 +1,37 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    /**
+     * The token with its user (without phones), in one query.
+     */
+    @Query("select r from RefreshToken r join fetch r.user where r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findWithUser(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Marks the token used unless it already is; 0 means another refresh got to it first.
+     */
+    @Modifying
+    @Query("update RefreshToken r set r.used = true where r.tokenHash = :tokenHash and r.used = false")
+    int markUsed(@Param("tokenHash") String tokenHash);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.familyId = :familyId")
+    int deleteFamily(@Param("familyId") UUID familyId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Date now);
+}
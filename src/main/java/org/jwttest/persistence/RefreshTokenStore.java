@@ -0,0 +1,29 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where {@code RefreshTokenService} keeps refresh tokens, next to the users of the {@link UserStore}.
+ */
+public interface RefreshTokenStore {
+
+    void save(RefreshToken token);
+
+    /**
+     * The token with its user (without phones).
+     */
+    Optional<RefreshToken> findWithUser(String tokenHash);
+
+    /**
+     * Marks the token used unless it already is; 0 means another refresh got to it first.
+     */
+    int markUsed(String tokenHash);
+
+    int deleteFamily(UUID familyId);
+
+    int deleteExpired(Date now);
+}
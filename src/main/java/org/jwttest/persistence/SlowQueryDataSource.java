@@ -0,0 +1,166 @@
+package org.jwttest.persistence;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs JDBC statements that take longer than {@code threshold}, replacing per-statement SQL logging.
+ * <p>
+ * Only the SQL text the statement was prepared with is logged, never its parameters: the wrapper does not
+ * look at bind values, so tokens and password hashes cannot reach the log through it. (Hibernate's own
+ * slow query log prints {@code Statement.toString()}, which for H2 includes the parameters.)
+ * <p>
+ * At most {@code samplesPerSecond} slow statements are logged per second; the others are counted and the
+ * count is reported with the next logged one, so a slow database does not also flood the log.
+ */
+@Slf4j
+public class SlowQueryDataSource extends DelegatingDataSource {
+
+    private final long thresholdNanos;
+    private final int samplesPerSecond;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong currentSecond = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger loggedThisSecond = new AtomicInteger();
+    private final LongAdder slowStatements = new LongAdder();
+    private final LongAdder loggedStatements = new LongAdder();
+    private final LongAdder notLogged = new LongAdder();
+
+    public SlowQueryDataSource(DataSource target, Duration threshold, int samplesPerSecond) {
+        this(target, threshold, samplesPerSecond, System::nanoTime);
+    }
+
+    SlowQueryDataSource(DataSource target, Duration threshold, int samplesPerSecond, LongSupplier nanoClock) {
+        super(target);
+        this.thresholdNanos = threshold.toNanos();
+        this.samplesPerSecond = samplesPerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public Stats stats() {
+        return new Stats(slowStatements.sum(), loggedStatements.sum());
+    }
+
+    void record(String sql, long elapsedNanos) {
+        slowStatements.increment();
+        long second = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+        long previous = currentSecond.get();
+        // racing threads at a second boundary may log a few more than the limit, which is fine for a sample
+        if (second != previous && currentSecond.compareAndSet(previous, second)) {
+            loggedThisSecond.set(0);
+        }
+        if (loggedThisSecond.incrementAndGet() > samplesPerSecond) {
+            notLogged.increment();
+            return;
+        }
+        loggedStatements.increment();
+        long skipped = notLogged.sumThenReset();
+        if (skipped == 0) {
+            log.warn("Slow statement ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sql);
+        } else {
+            log.warn("Slow statement ({} ms, {} more not logged): {}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), skipped, sql);
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SlowQueryDataSource.invoke(target, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            // prepareStatement and prepareCall carry their SQL; createStatement gets it on execute
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()}, new StatementHandler(result, sql));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final String sql;
+
+        StatementHandler(Object target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return SlowQueryDataSource.invoke(target, method, args);
+            }
+            long start = nanoClock.getAsLong();
+            try {
+                return SlowQueryDataSource.invoke(target, method, args);
+            } finally {
+                long elapsed = nanoClock.getAsLong() - start;
+                if (elapsed >= thresholdNanos) {
+                    record(sqlOf(args), elapsed);
+                }
+            }
+        }
+
+        private String sqlOf(Object[] args) {
+            if (sql != null) {
+                return sql;
+            }
+            return args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "<statement batch>";
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final long slowStatements;
+        private final long loggedStatements;
+    }
+}
@@ -0,0 +1,55 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * Inserts new users, with their phones and refresh tokens, a chunk per transaction.
+ * <p>
+ * The inserts go out in JDBC batches of {@code hibernate.jdbc.batch_size}. Open-in-view is off, so each
+ * chunk's transaction has a persistence context of its own and no connection is held between chunks, while
+ * the next one is read and hashed. Its entities are still detached once written, in case a caller runs
+ * several chunks in one transaction.
+ * <p>
+ * A {@code @Repository}, so a duplicate email surfaces as a {@code DataIntegrityViolationException}, as it
+ * does from {@link UserRepository#save}.
+ */
+@Repository
+public class UserBatchWriter {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserBatchWriter(PlatformTransactionManager transactionManager,
+                           @Value("${sign-up.bulk.chunk-size:500}") int chunkSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * All or nothing: when one user cannot be inserted, none of the chunk is.
+     */
+    public void insertAll(List<User> users, List<RefreshToken> refreshTokens) {
+        transactionTemplate.executeWithoutResult(status -> {
+            users.forEach(entityManager::persist);
+            refreshTokens.forEach(entityManager::persist);
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package org.jwttest.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.jwttest.model.Invalidation;
+import org.jwttest.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the second-level cache of users right around writes that bypass Hibernate, such as the JDBC
+ * batches of {@link LoginWriteBehind}.
+ * <p>
+ * Evicting after the write would not be enough: a load that read the old row just before the write could
+ * still put it back. Instead the users' entries are soft-locked for the duration of the write, the way
+ * Hibernate handles its own updates, so readers go to the database meanwhile and loads that started
+ * before the write ends are not cached. Once written, the other nodes are told through the
+ * {@link InvalidationBus} to {@link #evict} the users from theirs and to drop their email-keyed login
+ * status and responses. A failure to tell them is logged, not thrown: the write is committed by then.
+ */
+@Slf4j
+@Component
+public class UserCacheInvalidator {
+
+    private static final UserCacheInvalidator NONE = new UserCacheInvalidator(InvalidationBus.none());
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final EntityPersister persister;
+    private final InvalidationBus invalidationBus;
+
+    /**
+     * Without Hibernate: only publishes.
+     */
+    UserCacheInvalidator(InvalidationBus invalidationBus) {
+        this.sessionFactory = null;
+        this.persister = null;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Autowired
+    public UserCacheInvalidator(EntityManagerFactory entityManagerFactory, InvalidationBus invalidationBus) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.persister = sessionFactory.getMetamodel().entityPersister(User.class);
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * For writers used without Hibernate: runs writes as they are.
+     */
+    public static UserCacheInvalidator none() {
+        return NONE;
+    }
+
+    /**
+     * Runs {@code write}, which changes the rows of the users in {@code emailsById} without going through
+     * Hibernate.
+     */
+    public void write(Map<UUID, String> emailsById, Runnable write) {
+        EntityDataAccess access = persister == null || !persister.canWriteToCache()
+                ? null : persister.getCacheAccessStrategy();
+        if (access == null) {
+            write.run();
+        } else {
+            writeLocked(access, emailsById.keySet(), write);
+        }
+        try {
+            invalidationBus.publish(emailsById.entrySet().stream()
+                    .map(user -> Invalidation.userChanged(user.getKey(), user.getValue()))
+                    .collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            log.error("Unable to tell the other nodes about {} written users", emailsById.size(), e);
+        }
+    }
+
+    /**
+     * Drops the cached entry of a user another node changed.
+     */
+    public void evict(UUID userId) {
+        if (sessionFactory != null) {
+            sessionFactory.getCache().evictEntityData(User.class, userId);
+        }
+    }
+
+    private void writeLocked(EntityDataAccess access, Collection<UUID> userIds, Runnable write) {
+        try (SessionImplementor session = (SessionImplementor) sessionFactory.openSession()) {
+            List<Object> keys = new ArrayList<>(userIds.size());
+            List<SoftLock> locks = new ArrayList<>(userIds.size());
+            for (UUID userId : userIds) {
+                Object key = access.generateCacheKey(userId, persister, sessionFactory, null);
+                locks.add(access.lockItem(session, key, null));
+                keys.add(key);
+            }
+            try {
+                write.run();
+            } finally {
+                for (int i = 0; i < keys.size(); i++) {
+                    access.unlockItem(session, keys.get(i), locks.get(i));
+                }
+            }
+        }
+    }
+}
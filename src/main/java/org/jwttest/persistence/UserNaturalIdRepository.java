@@ -0,0 +1,15 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.User;
+
+import java.util.Optional;
+
+public interface UserNaturalIdRepository {
+
+    /**
+     * Full aggregate, phones included. Answered from the second-level cache when the email's id, the user
+     * and its phones are all cached; otherwise loaded in a single query, which caches them. Use it only
+     * when the phones are really needed.
+     */
+    Optional<User> findByEmail(String email);
+}
@@ -0,0 +1,55 @@
+package org.jwttest.persistence;
+
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.jwttest.model.User;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * {@code session.bySimpleNaturalId(User.class).load(email)} would also use the natural-id cache, but on a
+ * miss it resolves the id, loads the user and then its phones in three statements. This answers from the
+ * cache only when the id, the user and its phones are all there, and otherwise runs one fetch join.
+ */
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    private static final String PHONES_ROLE = User.class.getName() + ".phones";
+    private static final String FIND_BY_EMAIL = "select u from User u left join fetch u.phones where u.email = :email";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // like the Spring Data methods, so the session is there without a caller transaction
+    @Transactional(readOnly = true)
+    @Override
+    public Optional<User> findByEmail(String email) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        Cache cache = session.getFactory().getCache();
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(User.class);
+        Object id = session.getPersistenceContext().getNaturalIdHelper()
+                .findCachedNaturalIdResolution(persister, new Object[]{email});
+        // neither a miss (null) nor an invalidated resolution, and the rest of the aggregate is cached too
+        if (id instanceof UUID && isCached(cache, (UUID) id)) {
+            User user = session.get(User.class, (UUID) id);
+            if (user != null && email.equals(user.getEmail())) {
+                Hibernate.initialize(user.getPhones());
+                return Optional.of(user);
+            }
+        }
+        List<User> users = entityManager.createQuery(FIND_BY_EMAIL, User.class)
+                .setParameter("email", email)
+                .getResultList();
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+    }
+
+    private static boolean isCached(Cache cache, UUID userId) {
+        return cache.containsEntity(User.class, userId) && cache.containsCollection(PHONES_ROLE, userId);
+    }
+}
@@ -1,15 +1,28 @@
 package org.jwttest.persistence;
 
 import org.jwttest.model.User;
-import org.springframework.data.jpa.repository.EntityGraph;
+import org.jwttest.model.UserStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface UserRepository extends JpaRepository<User, UUID> {
+public interface UserRepository extends JpaRepository<User, UUID>, UserNaturalIdRepository {
 
-    @EntityGraph(attributePaths = {"phones"})
-    Optional<User> findByEmail(String email);
+    boolean existsByEmail(String email);
+
+    /**
+     * Which of the given emails are taken, in one query; the bulk sign-up counterpart of {@link #existsByEmail}.
+     */
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select new org.jwttest.model.UserStatus(u.id, u.email, u.isActive, u.lastLogin) "
+            + "from User u where u.email = :email")
+    Optional<UserStatus> findStatusByEmail(@Param("email") String email);
 
 }
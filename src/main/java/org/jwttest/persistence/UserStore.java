@@ -0,0 +1,57 @@
+package org.jwttest.persistence;
+
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.jwttest.model.UserStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where {@code UserServiceImpl} keeps its users: the JPA repositories by default, or
+ * {@link InMemoryUserStore} with {@code storage.type=memory}. Emails are passed normalized.
+ * <p>
+ * A new user whose email is taken is rejected with a {@code DataIntegrityViolationException} whose message
+ * names {@link User#EMAIL_UNIQUE_INDEX}, as the database reports it.
+ */
+public interface UserStore {
+
+    boolean existsByEmail(String email);
+
+    /**
+     * Which of the given emails are taken; the bulk sign-up counterpart of {@link #existsByEmail}.
+     */
+    List<String> findExistingEmails(Collection<String> emails);
+
+    /**
+     * Full aggregate, phones included.
+     */
+    Optional<User> findByEmail(String email);
+
+    Optional<UserStatus> findStatusByEmail(String email);
+
+    /**
+     * The email of a user known by id, as in the subject of compact tokens.
+     */
+    Optional<String> findEmailById(UUID id);
+
+    /**
+     * Stores a new user with its phones, in the caller's transaction if there is one.
+     */
+    User insert(User user);
+
+    /**
+     * All or nothing: when one user cannot be inserted, none of them, nor any of the refresh tokens, is.
+     * At most {@link #getChunkSize()} users per call.
+     */
+    void insertAll(List<User> users, List<RefreshToken> refreshTokens);
+
+    int getChunkSize();
+
+    /**
+     * Records the user's new token and last login, possibly after returning.
+     */
+    User updateLogin(User user);
+}
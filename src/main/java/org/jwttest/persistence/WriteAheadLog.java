@@ -0,0 +1,236 @@
+package org.jwttest.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of one shard of {@link InMemoryUserStore}, one file per generation:
+ * {@code <name>.<generation>.log}. Each record is framed as its length, its bytes and their CRC32, so
+ * that a record torn by a crash is recognized on replay. Snapshots are files of the same format with another
+ * suffix.
+ * <p>
+ * {@link #append} is called under the shard's lock and writes each record to the OS at once, so it survives
+ * a crash of the process; {@link #sync} forces it to disk and may be called from any thread. An append that
+ * fails truncates the file back to where the record started, so a torn record can only be the last one; if
+ * even that fails, the log refuses further appends until it rolls over to a new file.
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+
+    // far above any user record; a larger length can only come from a corrupt file
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
+
+    interface Reader {
+        void read(DataInput in) throws IOException;
+    }
+
+    interface Opener {
+        FileChannel open(Path file) throws IOException;
+    }
+
+    private final Path directory;
+    private final String name;
+    private final String suffix;
+    private final boolean syncEveryWrite;
+    private final Opener opener;
+    private final FrameBuffer buffer = new FrameBuffer();
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+    private volatile FileChannel channel;
+    private long generation;
+    // the length of the file up to the last complete record
+    private long size;
+    // set when a failed append could not be undone
+    private IOException failure;
+    private volatile boolean dirty;
+
+    WriteAheadLog(Path directory, String name, long generation, String suffix, boolean syncEveryWrite)
+            throws IOException {
+        this(directory, name, generation, suffix, syncEveryWrite, file -> FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    WriteAheadLog(Path directory, String name, long generation, String suffix, boolean syncEveryWrite,
+                  Opener opener) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.suffix = suffix;
+        this.syncEveryWrite = syncEveryWrite;
+        this.opener = opener;
+        this.generation = generation;
+        this.channel = open(generation);
+    }
+
+    static Path file(Path directory, String name, long generation, String suffix) {
+        return directory.resolve(name + "." + generation + suffix);
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    void append(Writer record) throws IOException {
+        if (failure != null) {
+            throw new IOException("The log " + file(directory, name, generation, suffix)
+                    + " ends with a record that could not be removed", failure);
+        }
+        buffer.reset();
+        bufferOut.writeInt(0);
+        record.write(bufferOut);
+        int length = buffer.size() - Integer.BYTES;
+        crc.reset();
+        crc.update(buffer.array(), Integer.BYTES, length);
+        bufferOut.writeInt((int) crc.getValue());
+        ByteBuffer frame = ByteBuffer.wrap(buffer.array(), 0, buffer.size());
+        frame.putInt(0, length);
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            if (syncEveryWrite) {
+                channel.force(false);
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            // the caller does not apply a record that failed, so replay must not either
+            try {
+                channel.truncate(size);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+                failure = e;
+            }
+            throw e;
+        }
+        size += frame.limit();
+    }
+
+    /**
+     * Forces what was appended so far to disk.
+     */
+    void sync() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // rolled over meanwhile, which forced the file before closing it
+        }
+    }
+
+    /**
+     * Closes this generation's file and continues in a new one. Called under the shard's lock.
+     *
+     * @return the new generation
+     */
+    long roll() throws IOException {
+        FileChannel previous = channel;
+        channel = open(generation + 1);
+        generation++;
+        failure = null;
+        previous.force(false);
+        previous.close();
+        return generation;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private FileChannel open(long generation) throws IOException {
+        FileChannel opened = opener.open(file(directory, name, generation, suffix));
+        size = opened.size();
+        return opened;
+    }
+
+    /**
+     * Reads every complete record of {@code file}. A torn record is expected only at the end of the file,
+     * where a crash may leave one; anywhere else it means the file is corrupt, and rather than dropping the
+     * records after it this fails.
+     *
+     * @return the number of records read
+     */
+    static long replay(Path file, Reader reader) throws IOException {
+        long records = 0;
+        long fileSize = Files.size(file);
+        long offset = 0;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    long end = offset + 2 * Integer.BYTES + length;
+                    if (length >= 0 && end > fileSize) {
+                        log.warn("Record {} in {} is torn, ignoring it", records, file);
+                        break;
+                    }
+                    if (length < 0 || length > MAX_RECORD_BYTES) {
+                        throw corrupt(file, records, offset);
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    crc.reset();
+                    crc.update(record);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        if (end < fileSize) {
+                            throw corrupt(file, records, offset);
+                        }
+                        log.warn("Record {} in {} is torn, ignoring it", records, file);
+                        break;
+                    }
+                    offset = end;
+                } catch (EOFException e) {
+                    // the normal end of the file, or a record torn by a crash
+                    break;
+                }
+                reader.read(new DataInputStream(new ByteArrayInputStream(record)));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static IOException corrupt(Path file, long records, long offset) {
+        return new IOException("Corrupt record " + records + " at byte " + offset + " of " + file
+                + ", followed by more data");
+    }
+
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+
+        FrameBuffer() {
+            super(1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.jwttest.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.model.Invalidation;
+import org.jwttest.persistence.InvalidationBus;
+import org.jwttest.persistence.UserCacheInvalidator;
+import org.jwttest.util.RevocationList;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the node-local caches of this node in line with the changes other nodes make, through the
+ * {@link InvalidationBus} of {@code cluster.invalidation.transport}.
+ * <p>
+ * A node applies its own changes to its caches as it makes them and publishes them here; what other nodes
+ * publish evicts the user from the {@link UserStatusCache}, the {@link LoginResponseCache} and the
+ * second-level cache, or adds the token to the {@link RevocationList}. New users need nothing: no cache
+ * holds the absence of a user. A publication that fails is logged and not retried, so the other nodes keep
+ * their entry until it is replaced or expires.
+ */
+@Slf4j
+@Service
+public class ClusterInvalidation {
+
+    private final InvalidationBus invalidationBus;
+    private final UserStatusCache userStatusCache;
+    private final LoginResponseCache loginResponseCache;
+    private final UserCacheInvalidator userCacheInvalidator;
+    private final RevocationList revocationList;
+
+    private final LongAdder received = new LongAdder();
+
+    public ClusterInvalidation(InvalidationBus invalidationBus, UserStatusCache userStatusCache,
+                               LoginResponseCache loginResponseCache, UserCacheInvalidator userCacheInvalidator,
+                               RevocationList revocationList) {
+        this.invalidationBus = invalidationBus;
+        this.userStatusCache = userStatusCache;
+        this.loginResponseCache = loginResponseCache;
+        this.userCacheInvalidator = userCacheInvalidator;
+        this.revocationList = revocationList;
+    }
+
+    @PostConstruct
+    public void start() {
+        invalidationBus.start(this::apply);
+    }
+
+    public void userChanged(UUID userId, String email) {
+        publish(Invalidation.userChanged(userId, email));
+    }
+
+    public void tokenRevoked(String jti, Date expiresAt) {
+        publish(Invalidation.tokenRevoked(jti, expiresAt));
+    }
+
+    /**
+     * Invalidations received from other nodes.
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    void apply(Invalidation invalidation) {
+        received.increment();
+        switch (invalidation.getKind()) {
+            case USER_CHANGED:
+                if (invalidation.getEmail() != null) {
+                    userStatusCache.invalidate(invalidation.getEmail());
+                    loginResponseCache.invalidate(invalidation.getEmail());
+                }
+                if (invalidation.getUserId() != null) {
+                    userCacheInvalidator.evict(invalidation.getUserId());
+                }
+                break;
+            case TOKEN_REVOKED:
+                revocationList.revoke(invalidation.getJti(), invalidation.getExpiresAt().getTime());
+                break;
+            default:
+                throw new IllegalStateException("Unknown invalidation " + invalidation.getKind());
+        }
+    }
+
+    private void publish(Invalidation invalidation) {
+        try {
+            invalidationBus.publish(invalidation);
+        } catch (RuntimeException e) {
+            log.error("Unable to publish a {} invalidation to the other nodes", invalidation.getKind(), e);
+        }
+    }
+}
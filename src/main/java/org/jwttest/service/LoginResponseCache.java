@@ -0,0 +1,123 @@
+package org.jwttest.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jwttest.model.LoginResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Last login response of each user, serialized once and keyed by email, with an ETag over its bytes.
+ * <p>
+ * While the user does not change, a login with the same token gets the same bytes: a client that presents
+ * their ETag in {@code If-None-Match} already holds them and is answered with 304, any other gets them
+ * written as they are, in both cases without Jackson or loading the user; the caller still checks that the
+ * user is active. Entries are replaced on every login with another token and must be invalidated whenever
+ * the user changes. At most {@code maxUsers} entries are held, evicting those least likely to be asked for
+ * again.
+ */
+@Component
+public class LoginResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Entry> byEmail;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LoginResponseCache(ObjectMapper objectMapper,
+                              @Value("${login.response-cache.max-users:100000}") int maxUsers) {
+        this.objectMapper = objectMapper;
+        // evictions run on the calling thread, they only unlink an entry
+        this.byEmail = Caffeine.newBuilder().maximumSize(maxUsers).executor(Runnable::run).build();
+    }
+
+    /**
+     * Returns the cached response of {@code email} if it was made for {@code token}.
+     */
+    public Entry find(String email, String token) {
+        Entry entry = byEmail.getIfPresent(email);
+        if (entry != null && token.equals(entry.token)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public Entry put(String email, LoginResponse response) {
+        Entry entry = new Entry(response.getToken(), serialize(response));
+        byEmail.put(email, entry);
+        return entry;
+    }
+
+    public void invalidate(String email) {
+        byEmail.invalidate(email);
+    }
+
+    public long size() {
+        return byEmail.estimatedSize();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), byEmail.estimatedSize());
+    }
+
+    private byte[] serialize(LoginResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize the login response", e);
+        }
+    }
+
+    @Getter
+    public static final class Entry {
+        @Getter(AccessLevel.NONE)
+        private final String token;
+        private final byte[] body;
+        private final String eTag;
+
+        Entry(String token, byte[] body) {
+            this.token = token;
+            this.body = body;
+            this.eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        }
+
+        /**
+         * Whether {@code ifNoneMatch} lists this entry's ETag. {@code *} is not enough: it only says that the
+         * client holds some response, maybe one of another token.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long size;
+    }
+}
@@ -0,0 +1,163 @@
+package org.jwttest.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.exception.NotFoundException;
+import org.jwttest.exception.UnauthorizedException;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.jwttest.persistence.RefreshTokenStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and rotates refresh tokens: opaque random values, valid for {@code expiration}, that are exchanged
+ * for a new access token (and a new refresh token) on {@code /token/refresh}. This is the only place a
+ * returning user causes a write; access tokens are verified without storage.
+ * <p>
+ * Rotation costs a join query, a conditional update and an insert. Expired tokens are deleted every
+ * {@code purgeInterval}.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final RefreshTokenStore refreshTokenStore;
+    private final Duration expiration;
+    private final Duration purgeInterval;
+    private final SecureRandom random = new SecureRandom();
+    private ScheduledExecutorService purger;
+
+    public RefreshTokenService(RefreshTokenStore refreshTokenStore,
+                               @Value("${jwt.refresh.expiration:P14D}") Duration expiration,
+                               @Value("${jwt.refresh.purge-interval:PT1H}") Duration purgeInterval) {
+        this.refreshTokenStore = refreshTokenStore;
+        this.expiration = expiration;
+        this.purgeInterval = purgeInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-token-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = purgeInterval.toMillis();
+        purger.scheduleWithFixedDelay(this::purgeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (purger != null) {
+            purger.shutdown();
+        }
+    }
+
+    /**
+     * A token of a new family for {@code user}, not yet stored; {@link RefreshToken#getValue()} is what the
+     * client gets.
+     */
+    public RefreshToken create(User user) {
+        return create(user, UUID.randomUUID());
+    }
+
+    /**
+     * Creates and stores a token of a new family, in the caller's transaction if there is one.
+     *
+     * @return the token value for the client
+     */
+    public String issue(User user) {
+        RefreshToken token = create(user);
+        refreshTokenStore.save(token);
+        return token.getValue();
+    }
+
+    /**
+     * Replaces the token with value {@code value} by a new one of its family. The returned token carries
+     * its user.
+     *
+     * @throws UnauthorizedException if the token is unknown, expired or already used; in the last case its
+     *                               family is deleted too
+     * @throws NotFoundException     if its user is inactive; the token is left as it was
+     */
+    // the family is deleted and the exception thrown in the same transaction
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public RefreshToken rotate(String value) {
+        if (value == null || value.isEmpty()) {
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        String tokenHash = hash(value);
+        RefreshToken current = refreshTokenStore.findWithUser(tokenHash)
+                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+        if (!current.getExpiresAt().after(new Date())) {
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        // before anything is written: the in-memory store does not roll back
+        if (!current.getUser().isActive()) {
+            throw new NotFoundException("User not found or inactive");
+        }
+        if (refreshTokenStore.markUsed(tokenHash) == 0) {
+            int deleted = refreshTokenStore.deleteFamily(current.getFamilyId());
+            log.warn("Refresh token of family {} presented again, revoked {} tokens", current.getFamilyId(), deleted);
+            throw new UnauthorizedException("Invalid refresh token");
+        }
+        RefreshToken next = create(current.getUser(), current.getFamilyId());
+        refreshTokenStore.save(next);
+        return next;
+    }
+
+    public int purgeExpired() {
+        return refreshTokenStore.deleteExpired(new Date());
+    }
+
+    private RefreshToken create(User user, UUID familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String value = BASE64URL.encodeToString(bytes);
+        return RefreshToken.builder()
+                .tokenHash(hash(value))
+                .user(user)
+                .familyId(familyId)
+                .expiresAt(new Date(System.currentTimeMillis() + expiration.toMillis()))
+                .value(value)
+                .build();
+    }
+
+    static String hash(String value) {
+        return BASE64URL.encodeToString(SHA_256.get().digest(value.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private void purgeQuietly() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            log.error("Unable to purge expired refresh tokens, they will be retried", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.jwttest.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import lombok.extern.slf4j.Slf4j;
+import org.jwttest.model.RevokedToken;
+import org.jwttest.persistence.RevokedTokenRepository;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RevocationList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revokes tokens by {@code jti}.
+ * <p>
+ * A revocation takes effect in the in-memory {@link RevocationList} checked by {@link JwtUtil} and is
+ * stored in {@code revoked_tokens}, from which the list is reloaded on startup, and published to the other nodes
+ * through {@link ClusterInvalidation}. Both forget an id once the token it belongs to has expired: a purge runs
+ * every {@code purgeInterval}.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final int MAX_ID_LENGTH = 64;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final RevocationList revocationList;
+    private final JwtUtil jwtUtil;
+    private final ClusterInvalidation clusterInvalidation;
+    private final Duration purgeInterval;
+    private ScheduledExecutorService purger;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  RevocationList revocationList,
+                                  JwtUtil jwtUtil,
+                                  ClusterInvalidation clusterInvalidation,
+                                  @Value("${jwt.revocation.purge-interval:PT1M}") Duration purgeInterval) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.revocationList = revocationList;
+        this.jwtUtil = jwtUtil;
+        this.clusterInvalidation = clusterInvalidation;
+        this.purgeInterval = purgeInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        List<RevokedToken> live = revokedTokenRepository.findByExpiresAtAfter(new Date());
+        live.forEach(revoked -> revocationList.revoke(revoked.getId(), revoked.getExpiresAt().getTime()));
+        log.info("Loaded {} revoked tokens", live.size());
+
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "revocation-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = purgeInterval.toMillis();
+        purger.scheduleWithFixedDelay(this::purgeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (purger != null) {
+            purger.shutdown();
+        }
+    }
+
+    /**
+     * Revokes {@code token} until it expires. An expired token is already rejected, so it is left alone.
+     *
+     * @throws IllegalArgumentException if the token is not one of ours
+     */
+    public void revokeToken(String token) {
+        Claims claims;
+        try {
+            claims = jwtUtil.getSignedClaims(token);
+        } catch (ExpiredJwtException e) {
+            return;
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+        revoke(claims.getId(), claims.getExpiration());
+    }
+
+    /**
+     * Revokes the token with id {@code jti} without having the token itself. Its expiry is unknown, so the id
+     * is kept for the longest lifetime a token can have.
+     */
+    public void revokeId(String jti) {
+        if (jti == null || jti.isBlank() || jti.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid jti");
+        }
+        revoke(jti, new Date(System.currentTimeMillis() + jwtUtil.getExpiration().toMillis()));
+    }
+
+    public int purgeExpired() {
+        int deleted = revokedTokenRepository.deleteExpired(new Date());
+        revocationList.purgeExpired();
+        return deleted;
+    }
+
+    // the in-memory list first: the token is rejected from now on even if the write fails
+    private void revoke(String jti, Date expiresAt) {
+        if (!revocationList.revoke(jti, expiresAt.getTime())) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(jti, expiresAt));
+        clusterInvalidation.tokenRevoked(jti, expiresAt);
+        log.info("Revoked token {} until {}", jti, expiresAt.toInstant());
+    }
+
+    private void purgeQuietly() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            log.error("Unable to purge expired revocations, they will be retried", e);
+        }
+    }
+}
@@ -1,22 +1,56 @@
 package org.jwttest.service;
 
+import org.jwttest.model.BulkSignUpResult;
+import org.jwttest.model.TokenResponse;
 import org.jwttest.model.User;
 import org.jwttest.model.UserRequest;
 import org.jwttest.model.UserResponse;
 import org.springframework.stereotype.Service;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public interface UserService {
 
     UserResponse createUser(UserRequest userRequest);
 
+    /**
+     * Signs users up like {@link #createUser(UserRequest)}, a chunk at a time: one existence query,
+     * passwords hashed in parallel and one insert transaction per chunk. Each chunk's results are passed
+     * to {@code results} in request order before the next chunk is read, so neither side holds the whole
+     * import.
+     */
+    void createUsers(Iterator<UserRequest> requests, Consumer<List<BulkSignUpResult>> results);
+
     Optional<User> findUserByMail(String mail);
 
+    /**
+     * Issues a new access token to {@code user} and records the login.
+     */
     User updateToken(User user);
 
     User getUser(String tokenHeader);
 
     User getUserByToken(String tokenHeader);
+
+    /**
+     * Logs the user in like {@link #getUserByToken(String)} and returns the serialized response, the cached
+     * one if it was made for the same token and the user has not changed since.
+     */
+    LoginResponseCache.Entry login(String tokenHeader);
+
+    /**
+     * Returns the user's latest login response if the client already holds it, i.e. if its ETag is
+     * listed in {@code ifNoneMatch}; otherwise {@code null}.
+     */
+    LoginResponseCache.Entry findNotModifiedLogin(String tokenHeader, String ifNoneMatch);
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token; the presented one cannot
+     * be used again.
+     */
+    TokenResponse refresh(String refreshToken);
 }
@@ -0,0 +1,55 @@
+package org.jwttest.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jwttest.model.UserStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * In-memory {@link UserStatus} projection keyed by email, used by the stateless login mode.
+ * <p>
+ * Entries are filled from a lightweight status query on first login and must be invalidated whenever the user
+ * changes (sign-up, deactivation). At most {@code maxUsers} entries are held, evicting those least likely to
+ * be asked for again; an evicted user is loaded again on its next login.
+ */
+@Component
+public class UserStatusCache {
+
+    private final boolean enabled;
+    private final Cache<String, UserStatus> byEmail;
+
+    public UserStatusCache(@Value("${login.stateless.enabled:false}") boolean enabled,
+                           @Value("${login.stateless.max-users:100000}") int maxUsers) {
+        this.enabled = enabled;
+        // evictions run on the calling thread, they only unlink an entry
+        this.byEmail = Caffeine.newBuilder().maximumSize(maxUsers).executor(Runnable::run).build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<UserStatus> get(String email) {
+        return Optional.ofNullable(byEmail.getIfPresent(email));
+    }
+
+    public void put(UserStatus status) {
+        byEmail.put(status.getEmail(), status);
+    }
+
+    public void recordLogin(String email, Date lastLogin) {
+        byEmail.asMap().computeIfPresent(email, (key, status) -> status.withLastLogin(lastLogin));
+    }
+
+    public void invalidate(String email) {
+        byEmail.invalidate(email);
+    }
+
+    public long size() {
+        return byEmail.estimatedSize();
+    }
+}
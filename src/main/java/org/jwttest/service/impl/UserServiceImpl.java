@@ -3,22 +3,45 @@ package org.jwttest.service.impl;
 import lombok.extern.slf4j.Slf4j;
 import org.jwttest.exception.NotFoundException;
 import org.jwttest.exception.UnauthorizedException;
+import org.jwttest.model.BulkSignUpResult;
+import org.jwttest.model.LoginResponse;
 import org.jwttest.model.Phone;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.TokenResponse;
 import org.jwttest.model.User;
 import org.jwttest.model.UserRequest;
 import org.jwttest.model.UserResponse;
-import org.jwttest.persistence.UserRepository;
+import org.jwttest.model.UserStatus;
+import org.jwttest.persistence.UserStore;
+import org.jwttest.service.ClusterInvalidation;
+import org.jwttest.service.LoginResponseCache;
+import org.jwttest.service.RefreshTokenService;
 import org.jwttest.service.UserService;
+import org.jwttest.service.UserStatusCache;
+import org.jwttest.util.BoundedPasswordEncoder;
+import org.jwttest.util.Instrumentation;
 import org.jwttest.util.JwtUtil;
+import org.jwttest.util.Redaction;
 import org.jwttest.util.ValidationUtility;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,33 +51,218 @@ public class UserServiceImpl implements UserService {
 
     private final JwtUtil jwtUtil;
     private final PasswordEncoder passwordEncoder;
-    private UserRepository userRepository;
+    private final UserStatusCache userStatusCache;
+    private final LoginResponseCache loginResponseCache;
+    private final RefreshTokenService refreshTokenService;
+    private final ClusterInvalidation clusterInvalidation;
+    private final UserStore userStore;
+    private final TransactionTemplate transactionTemplate;
 
+    private final Instrumentation.Operation existsByEmail;
+    private final Instrumentation.Operation findByEmail;
+    private final Instrumentation.Operation findStatusByEmail;
+    private final Instrumentation.Operation save;
+    private final Instrumentation.Operation findExistingEmails;
+    private final Instrumentation.Operation insertAll;
+    private final Instrumentation.Operation updateLogin;
+    private final Instrumentation.Operation findEmailById;
 
-    public UserServiceImpl(UserRepository userRepository, JwtUtil jwtUtil, PasswordEncoder passwordEncoder) {
-        this.userRepository = userRepository;
+
+    public UserServiceImpl(UserStore userStore, PlatformTransactionManager transactionManager, JwtUtil jwtUtil,
+                           PasswordEncoder passwordEncoder, UserStatusCache userStatusCache,
+                           LoginResponseCache loginResponseCache, RefreshTokenService refreshTokenService,
+                           ClusterInvalidation clusterInvalidation, Instrumentation instrumentation) {
+        this.userStore = userStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.jwtUtil = jwtUtil;
         this.passwordEncoder = passwordEncoder;
+        this.userStatusCache = userStatusCache;
+        this.loginResponseCache = loginResponseCache;
+        this.refreshTokenService = refreshTokenService;
+        this.clusterInvalidation = clusterInvalidation;
+        this.existsByEmail = instrumentation.operation("user.repository", "method", "existsByEmail");
+        this.findByEmail = instrumentation.operation("user.repository", "method", "findByEmail");
+        this.findStatusByEmail = instrumentation.operation("user.repository", "method", "findStatusByEmail");
+        this.save = instrumentation.operation("user.repository", "method", "save");
+        this.findExistingEmails = instrumentation.operation("user.repository", "method", "findExistingEmails");
+        this.insertAll = instrumentation.operation("user.repository", "method", "insertAll");
+        this.updateLogin = instrumentation.operation("user.repository", "method", "updateLogin");
+        this.findEmailById = instrumentation.operation("user.repository", "method", "findEmailById");
     }
 
 
+    /**
+     * The password is hashed, which may wait for the hashing pool, before the transaction starts, so no
+     * connection is held meanwhile; the transaction only writes the user and its first refresh token.
+     */
     @Override
     public UserResponse createUser(UserRequest userRequest) {
 
         Date currentDate = new Date();
+        String email = validateAndReturnEmail(userRequest.getEmail());
+        String password = validateAndReturnEncriptedPassword(userRequest.getPassword());
+
+        UUID id = UUID.randomUUID();
+        User user = newUser(userRequest, id, email, password, newToken(id, email), currentDate);
+        UserResponse response = transactionTemplate.execute(status -> {
+            User savedUser = saveNewUser(user);
+            return toUserResponse(savedUser, refreshTokenService.issue(savedUser));
+        });
+        userStatusCache.invalidate(email);
+        loginResponseCache.invalidate(email);
+        return response;
+    }
+
+    @Override
+    public void createUsers(Iterator<UserRequest> requests, Consumer<List<BulkSignUpResult>> results) {
+        int chunkSize = userStore.getChunkSize();
+        List<UserRequest> chunk = new ArrayList<>(chunkSize);
+        long firstIndex = 0;
+        while (requests.hasNext()) {
+            chunk.add(requests.next());
+            if (chunk.size() == chunkSize) {
+                results.accept(createChunk(firstIndex, chunk));
+                firstIndex += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.accept(createChunk(firstIndex, chunk));
+        }
+    }
+
+    /**
+     * Applies createUser's checks in its order (email format, existing email, password format) with one
+     * existence query for the whole chunk. An email repeated within the chunk is taken by its first record
+     * that passes, as if the records had been signed up one after the other.
+     */
+    private List<BulkSignUpResult> createChunk(long firstIndex, List<UserRequest> requests) {
+        BulkSignUpResult[] results = new BulkSignUpResult[requests.size()];
+        String[] emails = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            String email = requests.get(i).getEmail();
+            if (ValidationUtility.isValidEmail(email)) {
+                emails[i] = normalizeEmail(email);
+            } else {
+                results[i] = BulkSignUpResult.failed(firstIndex + i, 400, "Wrong email format");
+            }
+        }
+
+        Set<String> taken = new HashSet<>(findExistingEmails.record(() -> userStore.findExistingEmails(
+                Arrays.stream(emails).filter(Objects::nonNull).collect(Collectors.toSet()))));
+        List<Integer> accepted = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            if (taken.contains(emails[i])) {
+                results[i] = BulkSignUpResult.failed(firstIndex + i, 400, "User already exists");
+            } else if (!ValidationUtility.isValidPassword(requests.get(i).getPassword())) {
+                results[i] = BulkSignUpResult.failed(firstIndex + i, 400, "Wrong password format");
+            } else {
+                taken.add(emails[i]);
+                accepted.add(i);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        List<String> passwords = encodeAll(accepted.stream()
+                .map(i -> requests.get(i).getPassword())
+                .collect(Collectors.toList()));
+        // left unhashed by a saturated pool, answered like createUser's ServiceUnavailableException
+        for (int n = accepted.size() - 1; n >= 0; n--) {
+            if (passwords.get(n) == null) {
+                results[accepted.get(n)] = BulkSignUpResult.failed(firstIndex + accepted.get(n), 503,
+                        "Too many requests, try again later");
+                accepted.remove(n);
+                passwords.remove(n);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return Arrays.asList(results);
+        }
+        Date currentDate = new Date();
+        UUID[] ids = new UUID[requests.size()];
+        String[] tokens = new String[requests.size()];
+        List<User> users = new ArrayList<>(accepted.size());
+        List<RefreshToken> refreshTokens = new ArrayList<>(accepted.size());
+        for (int n = 0; n < accepted.size(); n++) {
+            int i = accepted.get(n);
+            ids[i] = UUID.randomUUID();
+            tokens[i] = newToken(ids[i], emails[i]);
+            User user = newUser(requests.get(i), ids[i], emails[i], passwords.get(n), tokens[i], currentDate);
+            users.add(user);
+            refreshTokens.add(refreshTokenService.create(user));
+        }
 
+        try {
+            insertAll.record(() -> {
+                userStore.insertAll(users, refreshTokens);
+                return null;
+            });
+            for (int n = 0; n < accepted.size(); n++) {
+                results[accepted.get(n)] = created(firstIndex + accepted.get(n), users.get(n), refreshTokens.get(n));
+            }
+        } catch (RuntimeException e) {
+            // most likely a concurrent sign-up took one of the emails: insert one by one so only its record fails
+            boolean logged = false;
+            for (int n = 0; n < accepted.size(); n++) {
+                int i = accepted.get(n);
+                User user = newUser(requests.get(i), ids[i], emails[i], passwords.get(n), tokens[i], currentDate);
+                RefreshToken refreshToken = refreshTokenService.create(user);
+                try {
+                    insertAll.record(() -> {
+                        userStore.insertAll(List.of(user), List.of(refreshToken));
+                        return null;
+                    });
+                    results[i] = created(firstIndex + i, user, refreshToken);
+                } catch (RuntimeException ex) {
+                    if (ex instanceof DataIntegrityViolationException
+                            && isDuplicateEmail((DataIntegrityViolationException) ex)) {
+                        results[i] = BulkSignUpResult.failed(firstIndex + i, 400, "User already exists");
+                        continue;
+                    }
+                    if (!logged) {
+                        log.error("Unable to insert bulk sign-up record {}", firstIndex + i, ex);
+                        logged = true;
+                    }
+                    results[i] = BulkSignUpResult.failed(firstIndex + i, 500, "Internal server error");
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private BulkSignUpResult created(long index, User user, RefreshToken refreshToken) {
+        userStatusCache.invalidate(user.getEmail());
+        loginResponseCache.invalidate(user.getEmail());
+        return BulkSignUpResult.created(index, toUserResponse(user, refreshToken.getValue()));
+    }
+
+    private List<String> encodeAll(List<String> passwords) {
+        if (passwordEncoder instanceof BoundedPasswordEncoder) {
+            return ((BoundedPasswordEncoder) passwordEncoder).encodeAll(passwords);
+        }
+        return passwords.stream().map(passwordEncoder::encode).collect(Collectors.toList());
+    }
+
+    private static User newUser(UserRequest userRequest, UUID id, String email, String password, String token,
+                                Date created) {
         User user = User.builder()
-                .id(UUID.randomUUID())
-                .created(currentDate)
-                .email(validateAndReturnEmail(userRequest.getEmail()))
+                .id(id)
+                .created(created)
+                .email(email)
                 .isActive(true)
-                .lastLogin(currentDate)
+                .lastLogin(created)
                 .name(userRequest.getName())
-                .password(validateAndReturnEncriptedPassword(userRequest.getPassword()))
-                .token(jwtUtil.generateToken(userRequest.getEmail()))
+                .password(password)
+                .token(token)
                 .build();
 
-        List<Phone> phoneEntities = userRequest.getPhones().stream()
+        List<UserRequest.Phone> phones = userRequest.getPhones() == null ? List.of() : userRequest.getPhones();
+        List<Phone> phoneEntities = phones.stream()
                 .map(phoneRequest -> Phone.builder()
                         .number(phoneRequest.getNumber())
                         .citycode(phoneRequest.getCitycode())
@@ -64,27 +272,32 @@ public class UserServiceImpl implements UserService {
                 .collect(Collectors.toList());
 
         user.setPhones(phoneEntities);
-        User savedUser = userRepository.save(user);
+        return user;
+    }
+
+    private static UserResponse toUserResponse(User user, String refreshToken) {
         return UserResponse.builder()
-                .id(savedUser.getId())
-                .isActive(savedUser.isActive())
-                .lastLogin(savedUser.getLastLogin())
-                .created(savedUser.getCreated())
-                .token(savedUser.getToken())
+                .id(user.getId())
+                .isActive(user.isActive())
+                .lastLogin(user.getLastLogin())
+                .created(user.getCreated())
+                .token(user.getToken())
+                .refreshToken(refreshToken)
                 .build();
     }
 
-    @Transactional
+    // read-only and nothing to write: a valid access token is the login, a new one comes from refresh
+    @Transactional(readOnly = true)
     @Override
     public User getUser(String tokenHeader) {
         String token = tokenHeader.replace("Bearer ", "");
-        String subject = jwtUtil.extractSubject(token);
+        String email = emailOf(jwtUtil.extractSubject(token));
 
-        Optional<User> userOpt = findUserByMail(subject);
+        Optional<User> userOpt = email == null ? Optional.empty() : findUserByMail(email);
         if (userOpt.isPresent()) {
-            return updateToken(userOpt.get());
+            return userOpt.get();
         } else {
-            log.warn("User not found for token: {}", token);
+            log.warn("User not found for token {}", Redaction.token(token));
             return null;
         }
     }
@@ -92,11 +305,11 @@ public class UserServiceImpl implements UserService {
 
     private String validateAndReturnEmail(String email) {
         if (ValidationUtility.isValidEmail(email)) {
-            final Optional<User> byEmail = userRepository.findByEmail(email);
-            if (byEmail.isPresent()){
+            String normalizedEmail = normalizeEmail(email);
+            if (existsByEmail.record(() -> userStore.existsByEmail(normalizedEmail))) {
                 throw new IllegalArgumentException("User already exists");
             }
-            return email;
+            return normalizedEmail;
         } else {
             throw new IllegalArgumentException("Wrong email format");
         }
@@ -110,18 +323,68 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    /**
+     * The existence probe only rejects duplicates early, before the password is hashed; the unique email
+     * index is what settles two concurrent sign-ups with the same email.
+     */
+    private User saveNewUser(User user) {
+        try {
+            return save.record(() -> userStore.insert(user));
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateEmail(e)) {
+                throw new IllegalArgumentException("User already exists");
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        return cause.contains(User.EMAIL_UNIQUE_INDEX);
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // compact tokens carry the user id rather than the email
+    private String newToken(UUID userId, String email) {
+        return jwtUtil.generateToken(jwtUtil.isCompact() ? userId.toString() : email);
+    }
+
+    /**
+     * The email of the user a token was issued to: the subject of a standard token, or the email of the user
+     * whose id is the subject of a compact one. Null if there is no such user.
+     */
+    private String emailOf(String subject) {
+        if (subject.indexOf('@') >= 0) {
+            return normalizeEmail(subject);
+        }
+        UUID id;
+        try {
+            id = JwtUtil.userIdOf(subject);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return findEmailById.record(() -> userStore.findEmailById(id)).orElse(null);
+    }
+
     @Transactional(readOnly = true)
     @Override
     public Optional<User> findUserByMail(String mail) {
-        return userRepository.findByEmail(mail);
+        return findByEmail.record(() -> userStore.findByEmail(normalizeEmail(mail)));
     }
 
     @Override
     public User updateToken(User user) {
-        String token = jwtUtil.generateToken(user.getEmail());
+        String token = newToken(user.getId(), user.getEmail());
         user.setToken(token);
         user.setLastLogin(new Date());
-        return userRepository.save(user);
+        userStatusCache.recordLogin(user.getEmail(), user.getLastLogin());
+        loginResponseCache.invalidate(user.getEmail());
+        User updated = updateLogin.record(() -> userStore.updateLogin(user));
+        clusterInvalidation.userChanged(user.getId(), user.getEmail());
+        return updated;
     }
 
     @Override
@@ -132,6 +395,15 @@ public class UserServiceImpl implements UserService {
             throw new UnauthorizedException("Invalid token");
         }
 
+        if (userStatusCache.isEnabled()) {
+            String email = emailOf(jwtUtil.extractSubject(token));
+            UserStatus status = email == null ? null : userStatus(email);
+            if (status == null) {
+                throw new NotFoundException("User not found or inactive");
+            }
+            return loginFromStatus(status, token);
+        }
+
         User user = getUser(tokenHeader);
         if (user == null || !user.isActive()) {
             throw new NotFoundException("User not found or inactive");
@@ -140,5 +412,111 @@ public class UserServiceImpl implements UserService {
         return user;
     }
 
+    @Override
+    public LoginResponseCache.Entry login(String tokenHeader) {
+        LoginResponseCache.Entry current = findCurrentLogin(tokenHeader);
+        if (current != null) {
+            return current;
+        }
+        User user = getUserByToken(tokenHeader);
+        return loginResponseCache.put(user.getEmail(), toLoginResponse(user, tokenHeader.replace("Bearer ", "")));
+    }
+
+    @Override
+    public TokenResponse refresh(String refreshToken) {
+        RefreshToken rotated = refreshTokenService.rotate(refreshToken);
+        User user = rotated.getUser();
+        updateToken(user);
+        return TokenResponse.builder()
+                .token(user.getToken())
+                .refreshToken(rotated.getValue())
+                .expiresIn(jwtUtil.getExpiration().getSeconds())
+                .build();
+    }
+
+    @Override
+    public LoginResponseCache.Entry findNotModifiedLogin(String tokenHeader, String ifNoneMatch) {
+        LoginResponseCache.Entry current = findCurrentLogin(tokenHeader);
+        return current != null && current.matches(ifNoneMatch) ? current : null;
+    }
+
+    /**
+     * The cached login response of the token's user if it was made for this token and the user is still
+     * active; null if there is none.
+     */
+    private LoginResponseCache.Entry findCurrentLogin(String tokenHeader) {
+        String token = tokenHeader.replace("Bearer ", "");
+        if (!jwtUtil.isTokenValid(token)) {
+            throw new UnauthorizedException("Invalid token");
+        }
+        String email = emailOf(jwtUtil.extractSubject(token));
+        LoginResponseCache.Entry entry = email == null ? null : loginResponseCache.find(email, token);
+        if (entry == null) {
+            return null;
+        }
+        UserStatus status = userStatus(email);
+        if (status == null || !status.isActive()) {
+            loginResponseCache.invalidate(email);
+            throw new NotFoundException("User not found or inactive");
+        }
+        return entry;
+    }
+
+    private static LoginResponse toLoginResponse(User user, String token) {
+        List<LoginResponse.Phone> phones = user.getPhones() == null ? null : user.getPhones().stream()
+                .map(phone -> LoginResponse.Phone.builder()
+                        .id(phone.getId())
+                        .number(phone.getNumber())
+                        .citycode(phone.getCitycode())
+                        .countrycode(phone.getCountrycode())
+                        .build())
+                .collect(Collectors.toList());
+        return LoginResponse.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .phones(phones)
+                .created(user.getCreated())
+                .lastLogin(user.getLastLogin())
+                .token(token)
+                .isActive(user.isActive())
+                .build();
+    }
+
+    /**
+     * The status of a user: from the projection in stateless mode, else from the status query, which loads
+     * neither the user nor its phones. Null if there is no such user.
+     */
+    private UserStatus userStatus(String email) {
+        if (userStatusCache.isEnabled()) {
+            return userStatusCache.get(email).orElseGet(() -> loadUserStatus(email));
+        }
+        return findStatusByEmail.record(() -> userStore.findStatusByEmail(email)).orElse(null);
+    }
+
+    private UserStatus loadUserStatus(String email) {
+        Optional<UserStatus> status = findStatusByEmail.record(() -> userStore.findStatusByEmail(email));
+        status.ifPresent(userStatusCache::put);
+        return status.orElse(null);
+    }
+
+    /**
+     * Stateless login: answers from the status projection, so a cached user costs no query at all. The
+     * returned user only carries the projected fields and the presented token: its login response has null
+     * {@code name}, {@code phones} and {@code created}, which would take loading the user.
+     */
+    private User loginFromStatus(UserStatus status, String token) {
+        if (!status.isActive()) {
+            throw new NotFoundException("User not found or inactive");
+        }
+        return User.builder()
+                .id(status.getId())
+                .email(status.getEmail())
+                .isActive(true)
+                .lastLogin(status.getLastLogin())
+                .token(token)
+                .build();
+    }
+
 }
 
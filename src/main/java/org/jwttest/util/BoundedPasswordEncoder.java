@@ -0,0 +1,190 @@
+package org.jwttest.util;
+
+import org.jwttest.exception.ServiceUnavailableException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PasswordEncoder} that runs the delegate on a dedicated, bounded worker pool.
+ * <p>
+ * At most {@code threads} hashes are computed at once, whatever the number of request threads, and at
+ * most {@code queueCapacity} more may wait. Beyond that, or when a hash is not done within the timeout,
+ * a {@link ServiceUnavailableException} is thrown so the caller answers 503 instead of piling up work.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long timeoutMs;
+    private final LongAdder rejected = new LongAdder();
+    private final Instrumentation.Operation encoding;
+    private final Instrumentation.Operation hashing;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMs) {
+        this(delegate, threads, queueCapacity, timeoutMs, Instrumentation.noop());
+    }
+
+    /**
+     * {@code password.encode} is what the caller waits for, queueing included; {@code password.hash} is
+     * the hashing alone, on the worker thread.
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMs,
+                                  Instrumentation instrumentation) {
+        this.delegate = delegate;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMs = timeoutMs;
+        this.encoding = instrumentation.operation("password.encode");
+        this.hashing = instrumentation.operation("password.hash");
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encoding.record(() -> submit(() -> hashing.record(() -> delegate.encode(rawPassword))));
+    }
+
+    /**
+     * Hashes a bulk import's passwords in parallel. At most two tasks per worker thread, and no more than
+     * half the queue, are in the pool at a time, so interactive sign-ups keep their room; the caller waits
+     * up to the timeout for a slot and then for queue space, rather than being rejected straight away. A
+     * password that gets neither in time, or whose hash is not done within the timeout, is left unhashed, as
+     * {@link #encode} would throw for it; none is hashed on the caller's thread.
+     *
+     * @return the hashes in order, with null for each password left unhashed
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        int threads = executor.getMaximumPoolSize();
+        Semaphore slots = new Semaphore(Math.min(2 * threads, threads + queueCapacity / 2));
+        List<Future<String>> hashes = new ArrayList<>(rawPasswords.size());
+        for (CharSequence rawPassword : rawPasswords) {
+            FutureTask<String> hash = new FutureTask<>(() -> {
+                try {
+                    return hashing.record(() -> delegate.encode(rawPassword));
+                } finally {
+                    slots.release();
+                }
+            });
+            try {
+                if (!slots.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    hashes.add(null);
+                    continue;
+                }
+                // the workers are all started and never stop, so queueing the task is submitting it
+                if (executor.getQueue().offer(hash, timeoutMs, TimeUnit.MILLISECONDS)) {
+                    hashes.add(hash);
+                } else {
+                    slots.release();
+                    rejected.increment();
+                    hashes.add(null);
+                }
+            } catch (InterruptedException e) {
+                cancelAll(hashes);
+                Thread.currentThread().interrupt();
+                throw new ServiceUnavailableException("Interrupted while hashing passwords", e);
+            }
+        }
+        List<String> encoded = new ArrayList<>(hashes.size());
+        for (Future<String> hash : hashes) {
+            try {
+                encoded.add(hash == null ? null : await(hash, timeoutMs));
+            } catch (ServiceUnavailableException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    cancelAll(hashes);
+                    throw e;
+                }
+                encoded.add(null);
+            }
+        }
+        return encoded;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many requests, try again later", e);
+        }
+        return await(future, timeoutMs);
+    }
+
+    private static void cancelAll(List<Future<String>> hashes) {
+        for (Future<String> hash : hashes) {
+            if (hash != null) {
+                hash.cancel(true);
+            }
+        }
+    }
+
+    private <T> T await(Future<T> future, long timeoutMs) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many requests, try again later", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
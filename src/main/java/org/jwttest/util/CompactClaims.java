@@ -0,0 +1,121 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Payload of the compact token profile ({@code jwt.format=compact}): {@code sub}, {@code jti} and
+ * {@code exp} only, always in that order, with the user id as subject and both ids as 22 base64url characters
+ * rather than 36-character UUID strings:
+ * <pre>
+ * {"sub":"vN2x7Qp0S4aY1rL3mX8JeA","jti":"Q5h3Yk9fTz2cW0uIbR6oVg","exp":1700000900}
+ * </pre>
+ * The claim names are the registered ones, so such a token is a regular JWS that any JWT library verifies.
+ * As the layout is fixed, {@link #decode} checks it byte by byte at known offsets instead of running a JSON
+ * parser over it; a payload laid out otherwise, such as one of the standard profile, is left to jjwt.
+ */
+final class CompactClaims {
+
+    static final int ID_LENGTH = 22;
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    private static final byte[] SUB = "{\"sub\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JTI = "\",\"jti\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXP = "\",\"exp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final int SUB_OFFSET = SUB.length;
+    private static final int JTI_OFFSET = SUB_OFFSET + ID_LENGTH + JTI.length;
+    private static final int EXP_OFFSET = JTI_OFFSET + ID_LENGTH + EXP.length;
+    // seconds since the epoch have 10 digits until the year 2286
+    private static final int MAX_EXP_DIGITS = 12;
+
+    private CompactClaims() {
+    }
+
+    /**
+     * The base64url-encoded payload.
+     */
+    static String encode(UUID subject, UUID id, long expiresAtSeconds) {
+        String payload = "{\"sub\":\"" + encodeId(subject) + "\",\"jti\":\"" + encodeId(id)
+                + "\",\"exp\":" + expiresAtSeconds + '}';
+        return BASE64URL.encodeToString(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static String encodeId(UUID id) {
+        return BASE64URL.encodeToString(ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array());
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code id} is not 22 base64url characters
+     */
+    static UUID decodeId(String id) {
+        if (id.length() != ID_LENGTH) {
+            throw new IllegalArgumentException("Not a compact id: " + id);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(BASE64URL_DECODER.decode(id));
+        return new UUID(bytes.getLong(), bytes.getLong());
+    }
+
+    /**
+     * The claims of a base64url-encoded payload in the compact layout, or null if it is laid out otherwise.
+     * Nothing is trusted before the signature has been checked.
+     */
+    static Claims decode(String encodedPayload) {
+        byte[] payload;
+        try {
+            payload = BASE64URL_DECODER.decode(encodedPayload);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int end = payload.length - 1;
+        if (end <= EXP_OFFSET || end - EXP_OFFSET > MAX_EXP_DIGITS || payload[end] != '}'
+                || !matches(payload, 0, SUB) || !matches(payload, JTI_OFFSET - JTI.length, JTI)
+                || !matches(payload, EXP_OFFSET - EXP.length, EXP)
+                || !isId(payload, SUB_OFFSET) || !isId(payload, JTI_OFFSET)
+                || payload[EXP_OFFSET] == '0') {
+            return null;
+        }
+        long expiresAtSeconds = 0;
+        for (int i = EXP_OFFSET; i < end; i++) {
+            int digit = payload[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            expiresAtSeconds = expiresAtSeconds * 10 + digit;
+        }
+        return Jwts.claims()
+                .subject(new String(payload, SUB_OFFSET, ID_LENGTH, StandardCharsets.US_ASCII))
+                .id(new String(payload, JTI_OFFSET, ID_LENGTH, StandardCharsets.US_ASCII))
+                .expiration(new Date(expiresAtSeconds * 1000))
+                .build();
+    }
+
+    private static boolean matches(byte[] payload, int offset, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (payload[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isId(byte[] payload, int offset) {
+        for (int i = offset; i < offset + ID_LENGTH; i++) {
+            byte c = payload[i];
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
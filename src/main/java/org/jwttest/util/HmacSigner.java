@@ -0,0 +1,87 @@
+package org.jwttest.util;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * HS256 JWS signer for the fixed {@code sub}/{@code jti}/{@code iat}/{@code exp} claim set issued by
+ * {@link JwtUtil}.
+ * <p>
+ * The protected header never changes, so it is encoded once. Each thread keeps its own initialised
+ * {@link Mac} cloned from a prototype, which avoids the provider lookup and key setup for every token.
+ * The output is a regular compact JWS and is verified by the standard jjwt parser, or by
+ * {@link #verify} for the compact token profile.
+ */
+final class HmacSigner implements SigningKeyRing.SignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    static final String ENCODED_HEADER =
+            BASE64URL.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final SecretKey key;
+    private final Mac prototype;
+    private final ThreadLocal<Mac> macs;
+
+    HmacSigner(SecretKey key) {
+        this.key = key;
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialise " + ALGORITHM, e);
+        }
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    String sign(String subject, String id, long issuedAtSeconds, long expiresAtSeconds) {
+        JsonStringEncoder json = JsonStringEncoder.getInstance();
+        StringBuilder payload = new StringBuilder(subject.length() + id.length() + 64)
+                .append("{\"sub\":\"")
+                .append(json.quoteAsString(subject))
+                .append("\",\"jti\":\"")
+                .append(json.quoteAsString(id))
+                .append("\",\"iat\":")
+                .append(issuedAtSeconds)
+                .append(",\"exp\":")
+                .append(expiresAtSeconds)
+                .append('}');
+
+        return signPayload(BASE64URL.encodeToString(payload.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    String signPayload(String encodedPayload) {
+        String signingInput = ENCODED_HEADER + '.' + encodedPayload;
+        byte[] signature = macs.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + '.' + BASE64URL.encodeToString(signature);
+    }
+
+    @Override
+    public boolean verify(byte[] token, int signingInputLength, byte[] signature) {
+        Mac mac = macs.get();
+        mac.update(token, 0, signingInputLength);
+        return MessageDigest.isEqual(mac.doFinal(), signature);
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("Unable to initialise " + ALGORITHM, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jwttest.exception.NotFoundException;
+import org.jwttest.exception.ServiceUnavailableException;
+import org.jwttest.exception.UnauthorizedException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times hot-path operations with a Micrometer timer tagged by {@code outcome} and, when recording, a JFR
+ * {@code org.jwttest.Operation} event, so a slow request can be broken down into signing, verification,
+ * hashing and repository time from metrics or from a flight recording.
+ * <p>
+ * Outcomes: {@code success}, {@code invalid_token}, {@code not_found}, {@code validation_error},
+ * {@code rejected} (overloaded) and {@code error}.
+ */
+@Component
+public class Instrumentation {
+
+    public static final String SUCCESS = "success";
+    public static final String INVALID_TOKEN = "invalid_token";
+    public static final String NOT_FOUND = "not_found";
+    public static final String VALIDATION_ERROR = "validation_error";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    private static final Instrumentation NOOP = new Instrumentation((MeterRegistry) null);
+
+    // resolved on first use: the registry binds meters of components that are themselves instrumented
+    private final Supplier<MeterRegistry> registry;
+
+    @Autowired
+    public Instrumentation(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry::getIfAvailable;
+    }
+
+    public Instrumentation(MeterRegistry registry) {
+        this.registry = () -> registry;
+    }
+
+    /**
+     * Instrumentation that records nothing, for components created outside the application context.
+     */
+    public static Instrumentation noop() {
+        return NOOP;
+    }
+
+    /**
+     * @param tags key/value pairs; their values are also appended to the JFR operation name
+     */
+    public Operation operation(String name, String... tags) {
+        StringBuilder label = new StringBuilder(name);
+        for (int i = 1; i < tags.length; i += 2) {
+            label.append('.').append(tags[i]);
+        }
+        return new Operation(name, label.toString(), Tags.of(tags));
+    }
+
+    public static String outcomeOf(Throwable e) {
+        if (e instanceof UnauthorizedException || e instanceof JwtException) {
+            return INVALID_TOKEN;
+        }
+        if (e instanceof NotFoundException) {
+            return NOT_FOUND;
+        }
+        if (e instanceof IllegalArgumentException) {
+            return VALIDATION_ERROR;
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return REJECTED;
+        }
+        return ERROR;
+    }
+
+    /**
+     * A named operation; its timers are resolved once per outcome, not on every call.
+     */
+    public final class Operation {
+        private final String name;
+        private final String label;
+        private final Tags tags;
+        private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+        private Operation(String name, String label, Tags tags) {
+            this.name = name;
+            this.label = label;
+            this.tags = tags;
+        }
+
+        public <T> T record(Supplier<T> call) {
+            OperationEvent event = new OperationEvent();
+            event.begin();
+            long start = System.nanoTime();
+            String outcome = SUCCESS;
+            try {
+                return call.get();
+            } catch (RuntimeException | Error e) {
+                outcome = outcomeOf(e);
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                Timer timer = timers.computeIfAbsent(outcome, this::timer);
+                if (timer != null) {
+                    timer.record(elapsed, TimeUnit.NANOSECONDS);
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = label;
+                    event.outcome = outcome;
+                    event.commit();
+                }
+            }
+        }
+
+        private Timer timer(String outcome) {
+            MeterRegistry meterRegistry = registry.get();
+            if (meterRegistry == null) {
+                return null;
+            }
+            return Timer.builder(name)
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Name("org.jwttest.Operation")
+    @Label("Operation")
+    @Category("JWT App")
+    @Description("A timed hot-path operation: token signing or verification, password hashing or a repository call")
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Outcome")
+        String outcome;
+    }
+}
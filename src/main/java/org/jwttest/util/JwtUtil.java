@@ -1,26 +1,114 @@
 package org.jwttest.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.util.Date;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
 
+/**
+ * Issues and verifies access tokens in one of two profiles, {@code jwt.format}:
+ * <ul>
+ *     <li>{@code standard}: the user's email as {@code sub}, with {@code jti}, {@code iat} and {@code exp}</li>
+ *     <li>{@code compact}: the user's id as {@code sub}, {@code jti} and {@code exp} in a fixed layout, see
+ *     {@link CompactClaims}; about 40 bytes shorter, and verified without JSON parsing, see
+ *     TokenFormatBenchmark</li>
+ * </ul>
+ * Tokens of both profiles are accepted whichever is issued, so the profile can be switched at any time.
+ */
 @Component
 public class JwtUtil {
 
-    private static final String SECRET_KEY = "EstaEsUnaClaveSecretaMuySeguraYLarga123!";
-    private static final SecretKey SIGNING_KEY = Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
+    public static final String STANDARD = "standard";
+    public static final String COMPACT = "compact";
 
+    private static final int DEFAULT_CACHE_MAX_SIZE = 10_000;
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_EXPIRATION = Duration.ofMinutes(15);
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    private final SigningKeyRing keyRing;
+    private final RevocationList revocations;
+    private final long expirationSeconds;
+    private final boolean compact;
+    // immutable and thread-safe, so it is built once and shared by every request; keys are located by kid
+    private final JwtParser parser;
+    private final VerifiedTokenCache verifiedTokens;
+    private final Instrumentation.Operation signing;
+    private final Instrumentation.Operation verification;
+
+    public JwtUtil(SigningKeyRing keyRing,
+                   RevocationList revocations,
+                   Instrumentation instrumentation,
+                   @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+                   @Value("${jwt.cache.ttl:PT5M}") Duration cacheTtl,
+                   @Value("${jwt.expiration:PT15M}") Duration expiration,
+                   @Value("${jwt.format:standard}") String format) {
+        if (!STANDARD.equals(format) && !COMPACT.equals(format)) {
+            throw new IllegalArgumentException("jwt.format must be standard or compact, not " + format);
+        }
+        if (expiration.isNegative() || expiration.isZero()) {
+            throw new IllegalArgumentException("jwt.expiration must be positive");
+        }
+        if (!keyRing.isSymmetric() && expiration.compareTo(keyRing.getKeyRetention()) > 0) {
+            throw new IllegalArgumentException("jwt.expiration must not exceed jwt.signing.key-retention");
+        }
+        this.keyRing = keyRing;
+        this.revocations = revocations;
+        this.expirationSeconds = expiration.getSeconds();
+        this.compact = COMPACT.equals(format);
+        this.parser = Jwts.parser().keyLocator(keyRing).build();
+        this.verifiedTokens = new VerifiedTokenCache(cacheMaxSize, cacheTtl);
+        this.signing = instrumentation.operation("jwt.sign", "algorithm", keyRing.getAlgorithm());
+        // only cache misses are timed: a hit costs a digest and a map lookup
+        this.verification = instrumentation.operation("jwt.verify", "algorithm", keyRing.getAlgorithm());
+    }
+
+    /**
+     * A JwtUtil built outside Spring, such as in tests and benchmarks. Anything not set takes the defaults of
+     * application.yml, with a new {@link SigningKeyRing}, no revocations and no instrumentation.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Signs a token for {@code subject} with a random {@code jti}, by which it can be revoked, and an
+     * {@code exp} of {@code jwt.expiration} from now. With the compact profile the subject must be a user id.
+     */
     public String generateToken(String subject) {
-        return Jwts.builder()
-                .subject(subject)
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .signWith(SIGNING_KEY)
-                .compact();
+        return signing.record(() -> {
+            long now = System.currentTimeMillis() / 1000;
+            if (compact) {
+                return keyRing.signPayload(CompactClaims.encode(
+                        UUID.fromString(subject), UUID.randomUUID(), now + expirationSeconds));
+            }
+            return keyRing.sign(subject, UUID.randomUUID().toString(), now, now + expirationSeconds);
+        });
+    }
+
+    /**
+     * Whether tokens are issued to user ids ({@code compact}) rather than emails.
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * The user id in the subject of a compact token.
+     *
+     * @throws IllegalArgumentException if the subject is not a compact user id
+     */
+    public static UUID userIdOf(String subject) {
+        return CompactClaims.decodeId(subject);
     }
 
     public String extractSubject(String token) {
@@ -36,11 +124,134 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * Claims of a correctly signed, unexpired token, whether or not it has been revoked.
+     *
+     * @throws JwtException if the token is malformed, wrongly signed or expired
+     */
+    public Claims getSignedClaims(String token) {
+        return verifiedTokens.get(token, this::verify);
+    }
+
+    /**
+     * The longest a token issued now stays valid.
+     */
+    public Duration getExpiration() {
+        return Duration.ofSeconds(expirationSeconds);
+    }
+
+    public VerifiedTokenCache.Stats getCacheStats() {
+        return verifiedTokens.stats();
+    }
+
+    // revocation is checked on every call, cache hit or not: a revoked token must not live on in the cache
     private Claims getClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(SIGNING_KEY)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims claims = getSignedClaims(token);
+        if (revocations.isRevoked(claims.getId())) {
+            throw new JwtException("Token has been revoked");
+        }
+        return claims;
+    }
+
+    private Claims verify(String token) {
+        return verification.record(() -> {
+            Claims claims = verifyCompact(token);
+            if (claims != null) {
+                return claims;
+            }
+            claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getId() == null || claims.getExpiration() == null) {
+                // issued before tokens could expire or be revoked
+                throw new JwtException("Token has no jti or exp claim");
+            }
+            return claims;
+        });
+    }
+
+    /**
+     * Verifies a token of the compact profile signed by one of our keys, or returns null for any other token,
+     * which the jjwt parser then checks as usual.
+     */
+    private Claims verifyCompact(String token) {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            return null;
+        }
+        SigningKeyRing.SignatureVerifier verifier = keyRing.verifier(token.substring(0, headerEnd));
+        if (verifier == null) {
+            return null;
+        }
+        Claims claims = CompactClaims.decode(token.substring(headerEnd + 1, payloadEnd));
+        if (claims == null) {
+            return null;
+        }
+        byte[] signature;
+        try {
+            signature = BASE64URL_DECODER.decode(token.substring(payloadEnd + 1));
+        } catch (IllegalArgumentException e) {
+            throw new SignatureException("Malformed JWT signature");
+        }
+        if (!verifier.verify(token.getBytes(StandardCharsets.US_ASCII), payloadEnd, signature)) {
+            throw new SignatureException("JWT signature does not match");
+        }
+        if (claims.getExpiration().getTime() <= System.currentTimeMillis()) {
+            throw new ExpiredJwtException(null, claims, "JWT expired at " + claims.getExpiration().toInstant());
+        }
+        return claims;
+    }
+
+    public static final class Builder {
+
+        private SigningKeyRing keyRing;
+        private RevocationList revocations;
+        private Instrumentation instrumentation = Instrumentation.noop();
+        private int cacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+        private Duration cacheTtl = DEFAULT_CACHE_TTL;
+        private Duration expiration = DEFAULT_EXPIRATION;
+        private String format = STANDARD;
+
+        private Builder() {
+        }
+
+        public Builder keyRing(SigningKeyRing keyRing) {
+            this.keyRing = keyRing;
+            return this;
+        }
+
+        public Builder revocations(RevocationList revocations) {
+            this.revocations = revocations;
+            return this;
+        }
+
+        public Builder instrumentation(Instrumentation instrumentation) {
+            this.instrumentation = instrumentation;
+            return this;
+        }
+
+        /**
+         * A {@code maxSize} of 0 turns the verified-token cache off.
+         */
+        public Builder cache(int maxSize, Duration ttl) {
+            this.cacheMaxSize = maxSize;
+            this.cacheTtl = ttl;
+            return this;
+        }
+
+        public Builder expiration(Duration expiration) {
+            this.expiration = expiration;
+            return this;
+        }
+
+        public Builder format(String format) {
+            this.format = format;
+            return this;
+        }
+
+        public JwtUtil build() {
+            return new JwtUtil(keyRing == null ? new SigningKeyRing() : keyRing,
+                    revocations == null ? new RevocationList() : revocations,
+                    instrumentation, cacheMaxSize, cacheTtl, expiration, format);
+        }
     }
 }
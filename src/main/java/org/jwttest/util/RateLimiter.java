@@ -0,0 +1,136 @@
+package org.jwttest.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets of {@code requests} tokens per key, refilled at {@code requests} per {@code window}.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will be full again (the
+ * theoretical arrival time of the generic cell rate algorithm), so taking a token is a map lookup and a
+ * compare-and-set, without locks or allocation once the key is known. A missing key is a full bucket,
+ * which is why {@link #evictIdle()} can drop every bucket that has refilled.
+ * <p>
+ * At most {@code maxKeys} buckets are kept in a Caffeine cache. When they are all taken, a new key still gets
+ * a bucket and the cache evicts one that was used rarely and least recently. A flood of distinct keys, each
+ * seen once, mostly evicts its own buckets: a key that keeps coming back keeps its bucket and stays limited,
+ * and a new, well-behaved client is still served. The buckets that had to make room are counted in
+ * {@link Stats#getOverflowed()}.
+ */
+public class RateLimiter {
+
+    private final String name;
+    private final int requests;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    public RateLimiter(String name, int requests, Duration window, int maxKeys) {
+        this(name, requests, window, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(String name, int requests, Duration window, int maxKeys, LongSupplier nanoClock) {
+        if (requests < 1 || window.isZero() || window.isNegative() || maxKeys < 1) {
+            throw new IllegalArgumentException("Rate limit " + name + " needs requests >= 1, a positive window and max-keys >= 1");
+        }
+        this.name = name;
+        this.requests = requests;
+        this.intervalNanos = Math.max(1, window.toNanos() / requests);
+        this.burstNanos = intervalNanos * requests;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .executor(Runnable::run)
+                .removalListener((String key, AtomicLong bucket, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        overflowed.increment();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Takes a token from {@code key}'s bucket.
+     *
+     * @return 0 if the request may proceed, otherwise how many nanoseconds until the bucket has a token
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            bucket = buckets.get(key, k -> new AtomicLong(nanoClock.getAsLong()));
+        }
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled. A request racing with the removal may have its token
+     * forgotten, which at worst grants one extra request.
+     *
+     * @return the number of buckets removed
+     */
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int removed = 0;
+        for (Iterator<AtomicLong> it = buckets.asMap().values().iterator(); it.hasNext(); ) {
+            if (it.next().get() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int size() {
+        return (int) buckets.estimatedSize();
+    }
+
+    public Stats stats() {
+        return new Stats(allowed.sum(), rejected.sum(), overflowed.sum(), size());
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final long allowed;
+        private final long rejected;
+        // buckets evicted to make room for a new key
+        private final long overflowed;
+        private final int keys;
+    }
+}
@@ -0,0 +1,43 @@
+package org.jwttest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Log-safe stand-ins for secrets.
+ * <p>
+ * A token is logged as a short SHA-256 fingerprint: two log lines about the same token can be correlated,
+ * but the token cannot be replayed from the log. Passwords and hashes are never logged at all; the model
+ * classes exclude them (and tokens) from {@code toString}.
+ */
+public final class Redaction {
+
+    public static final String REDACTED = "[redacted]";
+
+    private static final int FINGERPRINT_BYTES = 6;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Redaction() {
+    }
+
+    public static String token(String token) {
+        if (token == null || token.isEmpty()) {
+            return REDACTED;
+        }
+        byte[] digest = sha256(token.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder("sha256:");
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            sb.append(HEX[(digest[i] >> 4) & 0xf]).append(HEX[digest[i] & 0xf]);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.jwttest.util;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Revoked token ids ({@code jti}), checked on every request.
+ * <p>
+ * A Bloom filter sits in front of the exact set. Almost every token presented is not revoked, and for
+ * those the filter answers from a few bit reads over the id's characters, without allocating or touching
+ * the set; only filter positives (revoked ids, plus about {@code falsePositiveRate} of the others) go on
+ * to the hash map.
+ * <p>
+ * An id is kept until the token it belongs to expires, since an expired token is rejected anyway. Bloom
+ * filters cannot forget, so {@link #purgeExpired()} rebuilds the filter from the remaining ids; it is also
+ * rebuilt, twice as large, when more ids than it was sized for are revoked.
+ */
+@Component
+public class RevocationList {
+
+    private final ConcurrentMap<String, Long> revoked = new ConcurrentHashMap<>();
+    private final double falsePositiveRate;
+    private final LongSupplier clock;
+    private volatile BloomFilter filter;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterPositives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public RevocationList() {
+        this(100_000, 0.01);
+    }
+
+    @Autowired
+    public RevocationList(@Value("${jwt.revocation.expected-entries:100000}") int expectedEntries,
+                          @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this(expectedEntries, falsePositiveRate, System::currentTimeMillis);
+    }
+
+    RevocationList(int expectedEntries, double falsePositiveRate, LongSupplier clock) {
+        if (expectedEntries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Revocation list needs expected-entries >= 1 and 0 < false-positive-rate < 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.clock = clock;
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+    }
+
+    public boolean isRevoked(String id) {
+        if (id == null) {
+            return false;
+        }
+        checks.increment();
+        if (!filter.mightContain(id)) {
+            return false;
+        }
+        filterPositives.increment();
+        if (revoked.containsKey(id)) {
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * @param expiresAtMillis when the token expires; the id is forgotten afterwards
+     * @return {@code false} if the token has already expired, so there is nothing to revoke
+     */
+    public synchronized boolean revoke(String id, long expiresAtMillis) {
+        if (expiresAtMillis <= clock.getAsLong()) {
+            return false;
+        }
+        // the set before the filter: once a check sees the bit, the id is there
+        if (revoked.merge(id, expiresAtMillis, Math::max) == expiresAtMillis) {
+            if (revoked.size() > filter.capacity) {
+                rebuild(2 * filter.capacity);
+            } else {
+                filter.add(id);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the ids of expired tokens and rebuilds the filter without them.
+     *
+     * @return the number of ids removed
+     */
+    public synchronized int purgeExpired() {
+        long now = clock.getAsLong();
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        int removed = before - revoked.size();
+        if (removed > 0) {
+            rebuild(filter.capacity);
+        }
+        return removed;
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    public Stats stats() {
+        return new Stats(revoked.size(), checks.sum(), filterPositives.sum(), falsePositives.sum(), filter.bitCount());
+    }
+
+    private void rebuild(int capacity) {
+        BloomFilter rebuilt = new BloomFilter(capacity, falsePositiveRate);
+        for (Map.Entry<String, Long> entry : revoked.entrySet()) {
+            rebuilt.add(entry.getKey());
+        }
+        filter = rebuilt;
+    }
+
+    /**
+     * Bit array with {@code hashes} probe positions per id, derived from two 64-bit hashes of its
+     * characters (Kirsch-Mitzenmacher double hashing).
+     */
+    static final class BloomFilter {
+        private final int capacity;
+        private final int hashes;
+        private final long bitCount;
+        private final long mask;
+        private final AtomicLongArray words;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            // a power of two, so a probe position is a mask rather than a division
+            this.bitCount = Math.max(64, Long.highestOneBit(bits - 1) << 1);
+            this.mask = bitCount - 1;
+            // optimal for the computed size; the extra bits of rounding up only lower the false positive rate
+            this.hashes = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+            this.words = new AtomicLongArray((int) (bitCount >>> 6));
+        }
+
+        void add(String id) {
+            long h1 = hash(id);
+            long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                int word = (int) (bit >>> 6);
+                long flag = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & flag) == 0 && !words.compareAndSet(word, current, current | flag));
+            }
+        }
+
+        boolean mightContain(String id) {
+            long h1 = hash(id);
+            long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long bitCount() {
+            return bitCount;
+        }
+
+        // FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer
+        private static long hash(String id) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++) {
+                h ^= id.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final int revoked;
+        private final long checks;
+        private final long filterPositives;
+        private final long falsePositives;
+        private final long filterBits;
+    }
+}
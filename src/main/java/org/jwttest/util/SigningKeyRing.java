@@ -0,0 +1,532 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keys used to sign and verify tokens.
+ * <p>
+ * With an asymmetric algorithm (RS256, ES256 or EdDSA) tokens carry a {@code kid} header and the ring
+ * holds three kinds of keys: the current signing key, the next one, and retired ones that still verify
+ * tokens for {@code keyRetention}. The next key is published before it signs anything, so a JWKS copy
+ * cached for at most one rotation interval always contains the key of every token issued meanwhile.
+ * Verification looks the key up by {@code kid} in a hash map.
+ * <p>
+ * The key pairs are generated in memory unless {@code keyDirectory} is set, so they only verify the tokens
+ * of this process and not after a restart. From a key directory every node loads the same pairs, each a
+ * {@code .pem} file holding a PKCS#8 private key and its X.509 public key, signs with the one named
+ * {@code keyName} and verifies with all of them; such keys are rotated by changing the files and the name.
+ * <p>
+ * HS256, the default, keeps the original behaviour: a single shared secret, no {@code kid}, no rotation and
+ * nothing to publish.
+ * <p>
+ * Tokens of the compact profile are signed and verified here with the JCA directly: their protected header
+ * is always the same for a given key, so the key is found by the encoded header as is, without parsing it.
+ */
+@Slf4j
+@Component
+public class SigningKeyRing extends LocatorAdapter<Key> {
+
+    public static final String HS256 = "HS256";
+    public static final String RS256 = "RS256";
+    public static final String ES256 = "ES256";
+    public static final String EDDSA = "EdDSA";
+
+    private static final String DEFAULT_SECRET = "EstaEsUnaClaveSecretaMuySeguraYLarga123!";
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final Pattern PEM = Pattern.compile("-----BEGIN ([A-Z ]+)-----([^-]+)-----END \\1-----");
+    private static final String PEM_SUFFIX = ".pem";
+
+    /**
+     * Checks the signature of a compact JWS whose signing input is the first {@code signingInputLength}
+     * bytes of {@code token}.
+     */
+    interface SignatureVerifier {
+        boolean verify(byte[] token, int signingInputLength, byte[] signature);
+    }
+
+    private final String algorithm;
+    private final Duration rotationInterval;
+    private final Duration keyRetention;
+    private final Duration jwksMaxAge;
+    private final LongSupplier clock;
+    // null when the key pairs are generated in memory
+    private final Path keyDirectory;
+
+    private final HmacSigner hmacSigner;
+    private final SecretKey secretKey;
+    // JCA signatures are stateful; initialised with the key at each use
+    private final ThreadLocal<Signature> signatures;
+
+    private final ConcurrentMap<String, VerificationKey> verificationKeys = new ConcurrentHashMap<>();
+    private volatile Map<String, VerificationKey> keysByHeader = Map.of();
+    private volatile SigningKey current;
+    private volatile SigningKey next;
+    private volatile Map<String, Object> jwks = Map.of("keys", List.of());
+    private ScheduledExecutorService rotator;
+
+    public SigningKeyRing() {
+        this(HS256, "", "", "", Duration.ofDays(1), Duration.ofDays(7), Duration.ofHours(1));
+    }
+
+    @Autowired
+    public SigningKeyRing(@Value("${jwt.signing.algorithm:HS256}") String algorithm,
+                          @Value("${jwt.signing.secret:}") String secret,
+                          @Value("${jwt.signing.key-directory:}") String keyDirectory,
+                          @Value("${jwt.signing.key-name:}") String keyName,
+                          @Value("${jwt.signing.rotation-interval:P1D}") Duration rotationInterval,
+                          @Value("${jwt.signing.key-retention:P7D}") Duration keyRetention,
+                          @Value("${jwt.jwks.max-age:PT1H}") Duration jwksMaxAge) {
+        this(algorithm, secret, keyDirectory, keyName, rotationInterval, keyRetention, jwksMaxAge,
+                System::currentTimeMillis);
+    }
+
+    SigningKeyRing(String algorithm, String secret, String keyDirectory, String keyName, Duration rotationInterval,
+                   Duration keyRetention, Duration jwksMaxAge, LongSupplier clock) {
+        if (keyRetention.compareTo(rotationInterval) < 0) {
+            throw new IllegalArgumentException("jwt.signing.key-retention must not be shorter than the rotation interval");
+        }
+        this.algorithm = algorithm;
+        this.rotationInterval = rotationInterval;
+        this.keyRetention = keyRetention;
+        // a cached JWKS must not outlive the pre-published next key
+        this.jwksMaxAge = jwksMaxAge.compareTo(rotationInterval) < 0 ? jwksMaxAge : rotationInterval;
+        this.clock = clock;
+
+        if (HS256.equals(algorithm)) {
+            this.secretKey = Keys.hmacShaKeyFor((secret.isEmpty() ? DEFAULT_SECRET : secret).getBytes(StandardCharsets.UTF_8));
+            this.hmacSigner = new HmacSigner(secretKey);
+            this.signatures = null;
+            this.keyDirectory = null;
+        } else {
+            this.secretKey = null;
+            this.hmacSigner = null;
+            if (EDDSA.equals(algorithm)) {
+                registerBouncyCastle();
+            }
+            String jcaAlgorithm = jcaAlgorithm(algorithm);
+            this.signatures = ThreadLocal.withInitial(() -> {
+                try {
+                    return Signature.getInstance(jcaAlgorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(jcaAlgorithm + " not available", e);
+                }
+            });
+            if (keyDirectory.isEmpty()) {
+                this.keyDirectory = null;
+                this.next = newSigningKey();
+                rotate();
+            } else {
+                this.keyDirectory = Paths.get(keyDirectory);
+                load(keyName);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (isSymmetric() || keyDirectory != null) {
+            return;
+        }
+        rotator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "signing-key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = rotationInterval.toMillis();
+        rotator.scheduleAtFixedRate(this::rotateQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rotator != null) {
+            rotator.shutdown();
+        }
+    }
+
+    public boolean isSymmetric() {
+        return secretKey != null;
+    }
+
+    /**
+     * Whether other processes configured alike verify the tokens signed here: false for key pairs generated
+     * in memory.
+     */
+    public boolean isShared() {
+        return isSymmetric() || keyDirectory != null;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String sign(String subject, String id, long issuedAtSeconds, long expiresAtSeconds) {
+        if (isSymmetric()) {
+            return hmacSigner.sign(subject, id, issuedAtSeconds, expiresAtSeconds);
+        }
+        return current.sign(subject, id, issuedAtSeconds, expiresAtSeconds);
+    }
+
+    /**
+     * A compact JWS of the already encoded {@code payload}, with the same header as {@link #sign}.
+     */
+    String signPayload(String encodedPayload) {
+        if (isSymmetric()) {
+            return hmacSigner.signPayload(encodedPayload);
+        }
+        return current.signPayload(encodedPayload, signatures.get());
+    }
+
+    /**
+     * The verifier for tokens with this base64url-encoded protected header, or null if the header is not
+     * one that {@link #signPayload} writes.
+     */
+    SignatureVerifier verifier(String encodedHeader) {
+        if (isSymmetric()) {
+            return HmacSigner.ENCODED_HEADER.equals(encodedHeader) ? hmacSigner : null;
+        }
+        return keysByHeader.get(encodedHeader);
+    }
+
+    /**
+     * Makes the pre-published key the signing key, publishes a new next key and drops keys retired for
+     * longer than the retention period.
+     */
+    public synchronized void rotate() {
+        if (isSymmetric()) {
+            throw new IllegalStateException("HS256 signing keys are not rotated");
+        }
+        if (keyDirectory != null) {
+            throw new IllegalStateException("Signing keys loaded from " + keyDirectory + " are rotated by hand");
+        }
+        long now = clock.getAsLong();
+        SigningKey retired = current;
+        if (retired != null) {
+            verificationKeys.put(retired.kid, new VerificationKey(retired, now, signatures));
+        }
+        current = next;
+        next = newSigningKey();
+        verificationKeys.put(current.kid, new VerificationKey(current, 0, signatures));
+        verificationKeys.put(next.kid, new VerificationKey(next, 0, signatures));
+
+        long retentionMs = keyRetention.toMillis();
+        verificationKeys.values().removeIf(key -> key.retiredAt != 0 && now - key.retiredAt > retentionMs);
+        publish();
+    }
+
+    public String getCurrentKeyId() {
+        return current == null ? null : current.kid;
+    }
+
+    /**
+     * Public keys in JWK Set form; empty for HS256.
+     */
+    public Map<String, Object> jwks() {
+        return jwks;
+    }
+
+    public Duration getJwksMaxAge() {
+        return jwksMaxAge;
+    }
+
+    /**
+     * How long a retired key keeps verifying tokens; not applicable to HS256, whose key never retires.
+     */
+    public Duration getKeyRetention() {
+        return keyRetention;
+    }
+
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId();
+        if (isSymmetric()) {
+            if (kid != null) {
+                throw new SignatureException("Unexpected key id " + kid);
+            }
+            return secretKey;
+        }
+        VerificationKey key = kid == null ? null : verificationKeys.get(kid);
+        if (key == null) {
+            throw new SignatureException("Unknown signing key " + kid);
+        }
+        return key.publicKey;
+    }
+
+    private void publish() {
+        List<PublicJwk<?>> keys = new ArrayList<>(verificationKeys.size());
+        Map<String, VerificationKey> byHeader = new HashMap<>();
+        verificationKeys.values().forEach(key -> {
+            keys.add(key.jwk);
+            byHeader.put(key.encodedHeader, key);
+        });
+        jwks = Map.of("keys", List.copyOf(keys));
+        keysByHeader = Map.copyOf(byHeader);
+        log.info("Signing with key {}, {} keys published", current.kid, keys.size());
+    }
+
+    /**
+     * Signs with the key pair of {@code keyName}, which may be left empty when the directory holds only one,
+     * and verifies with every pair in the directory.
+     */
+    private void load(String keyName) {
+        Map<String, SigningKey> keys = new TreeMap<>();
+        try (Stream<Path> files = Files.list(keyDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(PEM_SUFFIX)) {
+                    keys.put(fileName.substring(0, fileName.length() - PEM_SUFFIX.length()), readSigningKey(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the signing keys in " + keyDirectory, e);
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("No signing keys (*" + PEM_SUFFIX + ") in " + keyDirectory);
+        }
+        if (keyName.isEmpty() && keys.size() > 1) {
+            throw new IllegalArgumentException("jwt.signing.key-name must be one of " + keys.keySet());
+        }
+        current = keyName.isEmpty() ? keys.values().iterator().next() : keys.get(keyName);
+        if (current == null) {
+            throw new IllegalArgumentException("No signing key " + keyName + " in " + keyDirectory);
+        }
+        keys.values().forEach(key -> verificationKeys.put(key.kid, new VerificationKey(key, 0, signatures)));
+        publish();
+    }
+
+    private SigningKey readSigningKey(Path file) throws IOException {
+        Map<String, byte[]> blocks = new HashMap<>();
+        Matcher matcher = PEM.matcher(Files.readString(file, StandardCharsets.US_ASCII));
+        while (matcher.find()) {
+            blocks.put(matcher.group(1), Base64.getMimeDecoder().decode(matcher.group(2)));
+        }
+        if (!blocks.containsKey("PRIVATE KEY") || !blocks.containsKey("PUBLIC KEY")) {
+            throw new IllegalArgumentException(file + " must hold a PRIVATE KEY and a PUBLIC KEY");
+        }
+        KeyPair keyPair;
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm(algorithm));
+            keyPair = new KeyPair(keyFactory.generatePublic(new X509EncodedKeySpec(blocks.get("PUBLIC KEY"))),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(blocks.get("PRIVATE KEY"))));
+            Signature signature = signatures.get();
+            byte[] probe = file.toString().getBytes(StandardCharsets.UTF_8);
+            signature.initSign(keyPair.getPrivate());
+            signature.update(probe);
+            byte[] signed = signature.sign();
+            signature.initVerify(keyPair.getPublic());
+            signature.update(probe);
+            if (!signature.verify(signed)) {
+                throw new IllegalArgumentException("The keys in " + file + " are not a pair");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Unable to read " + algorithm + " keys from " + file, e);
+        }
+        return signingKey(keyPair);
+    }
+
+    private void rotateQuietly() {
+        try {
+            rotate();
+        } catch (RuntimeException e) {
+            log.error("Unable to rotate the signing key, keeping {}", current.kid, e);
+        }
+    }
+
+    /**
+     * Ed25519 is in the JDK from Java 15; before that BouncyCastle provides it. Added last, so a JDK that has
+     * it keeps using its own.
+     */
+    private static void registerBouncyCastle() {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    /**
+     * The JCA name of each JWS algorithm; ECDSA signatures are in the JWS (IEEE P1363) format, not DER.
+     */
+    private static String jcaAlgorithm(String algorithm) {
+        switch (algorithm) {
+            case RS256:
+                return "SHA256withRSA";
+            case ES256:
+                return "SHA256withECDSAinP1363Format";
+            case EDDSA:
+                return "Ed25519";
+            default:
+                throw new IllegalArgumentException("Unsupported signing algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * The JCA key algorithm of each JWS algorithm.
+     */
+    private static String keyAlgorithm(String algorithm) {
+        switch (algorithm) {
+            case RS256:
+                return "RSA";
+            case ES256:
+                return "EC";
+            case EDDSA:
+                return "Ed25519";
+            default:
+                throw new IllegalArgumentException("Unsupported signing algorithm: " + algorithm);
+        }
+    }
+
+    private SigningKey newSigningKey() {
+        switch (algorithm) {
+            case RS256:
+                return signingKey(Jwts.SIG.RS256.keyPair().build());
+            case ES256:
+                return signingKey(Jwts.SIG.ES256.keyPair().build());
+            case EDDSA:
+                return signingKey(Jwks.CRV.Ed25519.keyPair().build());
+            default:
+                throw new IllegalArgumentException("Unsupported signing algorithm: " + algorithm);
+        }
+    }
+
+    private SigningKey signingKey(KeyPair keyPair) {
+        SignatureAlgorithm signatureAlgorithm;
+        switch (algorithm) {
+            case RS256:
+                signatureAlgorithm = Jwts.SIG.RS256;
+                break;
+            case ES256:
+                signatureAlgorithm = Jwts.SIG.ES256;
+                break;
+            case EDDSA:
+                signatureAlgorithm = Jwts.SIG.EdDSA;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported signing algorithm: " + algorithm);
+        }
+        // the thumbprint kid is the same wherever the pair is loaded
+        PublicJwk<?> jwk = Jwks.builder()
+                .key(keyPair.getPublic())
+                .algorithm(algorithm)
+                .publicKeyUse("sig")
+                .idFromThumbprint()
+                .build();
+        return new SigningKey(jwk, keyPair.getPrivate(), signatureAlgorithm);
+    }
+
+    private static final class SigningKey {
+        private final String kid;
+        private final PublicJwk<?> jwk;
+        private final PrivateKey privateKey;
+        private final SignatureAlgorithm algorithm;
+        private final String encodedHeader;
+
+        SigningKey(PublicJwk<?> jwk, PrivateKey privateKey, SignatureAlgorithm algorithm) {
+            this.kid = jwk.getId();
+            this.jwk = jwk;
+            this.privateKey = privateKey;
+            this.algorithm = algorithm;
+            // the kid is a base64url thumbprint, nothing to escape
+            this.encodedHeader = BASE64URL.encodeToString(("{\"alg\":\"" + algorithm.getId() + "\",\"kid\":\""
+                    + kid + "\"}").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        String signPayload(String encodedPayload, Signature signature) {
+            String signingInput = encodedHeader + '.' + encodedPayload;
+            try {
+                signature.initSign(privateKey);
+                signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+                return signingInput + '.' + BASE64URL.encodeToString(signature.sign());
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to sign with key " + kid, e);
+            }
+        }
+
+        String sign(String subject, String id, long issuedAtSeconds, long expiresAtSeconds) {
+            return Jwts.builder()
+                    .header().keyId(kid).and()
+                    .subject(subject)
+                    .id(id)
+                    .issuedAt(new Date(TimeUnit.SECONDS.toMillis(issuedAtSeconds)))
+                    .expiration(new Date(TimeUnit.SECONDS.toMillis(expiresAtSeconds)))
+                    .signWith(privateKey, algorithm)
+                    .compact();
+        }
+    }
+
+    private static final class VerificationKey implements SignatureVerifier {
+        private final PublicJwk<?> jwk;
+        private final PublicKey publicKey;
+        private final String encodedHeader;
+        // 0 while the key signs or is about to
+        private final long retiredAt;
+        private final ThreadLocal<Signature> signatures;
+
+        VerificationKey(SigningKey key, long retiredAt, ThreadLocal<Signature> signatures) {
+            this.jwk = key.jwk;
+            this.publicKey = key.jwk.toKey();
+            this.encodedHeader = key.encodedHeader;
+            this.retiredAt = retiredAt;
+            this.signatures = signatures;
+        }
+
+        @Override
+        public boolean verify(byte[] token, int signingInputLength, byte[] signature) {
+            Signature verifier = signatures.get();
+            try {
+                verifier.initVerify(publicKey);
+                verifier.update(token, 0, signingInputLength);
+                return verifier.verify(signature);
+            } catch (GeneralSecurityException e) {
+                // a malformed signature, e.g. of the wrong length
+                return false;
+            }
+        }
+    }
+}
@@ -1,19 +1,99 @@
 package org.jwttest.util;
 
-import java.util.regex.Pattern;
-
+/**
+ * Sign-up input validation as single-pass character scanners.
+ * <p>
+ * The scanners accept exactly what the original regular expressions did, without compiling a pattern
+ * per call or backtracking:
+ * <pre>
+ * email:    ^[\w.-]+@[\w.-]+\.[a-zA-Z]{2,}$
+ * password: ^(?=(?:[^A-Z]*[A-Z]){1}[^A-Z]*$)(?=(?:[^\d]*\d){2}[^\d]*$)(?!.*\d{2})[a-zA-Z\d]{8,12}$
+ * </pre>
+ * Input longer than the longest acceptable value is rejected before it is read; for emails that is the
+ * 255 characters the {@code users.email} column can hold.
+ */
 public class ValidationUtility {
 
-    private static final String EMAIL_REGEX = "^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$";
+    static final int MAX_EMAIL_LENGTH = 255;
 
-    private static final String PASSWORD_REGEX =
-            "^(?=(?:[^A-Z]*[A-Z]){1}[^A-Z]*$)(?=(?:[^\\d]*\\d){2}[^\\d]*$)(?!.*\\d{2})[a-zA-Z\\d]{8,12}$";
+    static final int MIN_PASSWORD_LENGTH = 8;
+    static final int MAX_PASSWORD_LENGTH = 12;
 
     public static boolean isValidEmail(String email) {
-        return Pattern.matches(EMAIL_REGEX, email);
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        if (length > MAX_EMAIL_LENGTH) {
+            return false;
+        }
+
+        int at = -1;
+        int lastDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            } else if (c == '.') {
+                lastDot = i;
+            } else if (!isWordChar(c) && c != '-') {
+                return false;
+            }
+        }
+        // local part and the domain before the last dot are non-empty, then at least two letters
+        if (at < 1 || lastDot < at + 2 || length - lastDot - 1 < 2) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < length; i++) {
+            if (!isLetter(email.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static boolean isValidPassword(String password) {
-        return Pattern.matches(PASSWORD_REGEX, password);
+        if (password == null) {
+            return false;
+        }
+        int length = password.length();
+        if (length < MIN_PASSWORD_LENGTH || length > MAX_PASSWORD_LENGTH) {
+            return false;
+        }
+
+        int upperCase = 0;
+        int digits = 0;
+        boolean previousDigit = false;
+        for (int i = 0; i < length; i++) {
+            char c = password.charAt(i);
+            boolean digit = isDigit(c);
+            if (digit) {
+                if (previousDigit) {
+                    return false;
+                }
+                digits++;
+            } else if (c >= 'A' && c <= 'Z') {
+                upperCase++;
+            } else if (c < 'a' || c > 'z') {
+                return false;
+            }
+            previousDigit = digit;
+        }
+        return upperCase == 1 && digits == 2;
+    }
+
+    private static boolean isWordChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 }
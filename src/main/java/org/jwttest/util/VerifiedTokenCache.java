@@ -0,0 +1,240 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.Claims;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of already verified token claims.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the compact token, so raw tokens are never kept in memory.
+ * The cache is split in lock-striped LRU segments; an entry is dropped when its segment is full or when it
+ * is older than the configured TTL (or past the token's own {@code exp}, whichever comes first).
+ */
+public class VerifiedTokenCache {
+
+    private static final int SEGMENTS = 16;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedTokenCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    VerifiedTokenCache(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.segments = new Segment[SEGMENTS];
+        int perSegment = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Returns the cached claims for {@code token}, or verifies it with {@code verifier} and caches the result.
+     * Exceptions thrown by the verifier are propagated and nothing is cached for the token.
+     */
+    public Claims get(String token, Function<String, Claims> verifier) {
+        TokenKey key = TokenKey.of(token);
+        Segment segment = segmentFor(key);
+        long now = nanoClock.getAsLong();
+
+        Claims cached = segment.get(key, now);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        Claims claims = verifier.apply(token);
+        segment.put(key, new Entry(claims, expiresAt(claims, now)), now);
+        return claims;
+    }
+
+    public void invalidate(String token) {
+        TokenKey key = TokenKey.of(token);
+        segmentFor(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    private long expiresAt(Claims claims, long now) {
+        long expiresAt = now + ttlNanos;
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+            expiresAt = Math.min(expiresAt, now + remaining);
+        }
+        return expiresAt;
+    }
+
+    private Segment segmentFor(TokenKey key) {
+        return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private final class Segment {
+
+        private final LinkedHashMap<TokenKey, Entry> map;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<TokenKey, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TokenKey, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Claims get(TokenKey key, long now) {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - now <= 0) {
+                map.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.claims;
+        }
+
+        synchronized void put(TokenKey key, Entry entry, long now) {
+            map.put(key, entry);
+            purgeExpired(now);
+        }
+
+        synchronized void remove(TokenKey key) {
+            map.remove(key);
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        // Access order puts the least recently used entries first; stop at the first live one.
+        private void purgeExpired(long now) {
+            Iterator<Entry> it = map.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expiresAt - now > 0) {
+                    return;
+                }
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Claims claims;
+        private final long expiresAt;
+
+        Entry(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class TokenKey {
+        private final long h0;
+        private final long h1;
+        private final long h2;
+        private final long h3;
+
+        private TokenKey(long h0, long h1, long h2, long h3) {
+            this.h0 = h0;
+            this.h1 = h1;
+            this.h2 = h2;
+            this.h3 = h3;
+        }
+
+        static TokenKey of(String token) {
+            MessageDigest digest = SHA_256.get();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenKey(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TokenKey)) {
+                return false;
+            }
+            TokenKey other = (TokenKey) o;
+            return h0 == other.h0 && h1 == other.h1 && h2 == other.h2 && h3 == other.h3;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (h0 ^ (h0 >>> 32));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long size;
+    }
+}
@@ -0,0 +1,47 @@
+-- The schema Hibernate generated from the entities until migrations took over; hibernate.ddl-auto=validate
+-- checks that the two still agree on startup.
+
+create sequence phones_seq start with 1 increment by 50;
+
+create table users (
+    id uuid not null,
+    created_at timestamp not null,
+    email varchar(255) not null,
+    is_active boolean not null,
+    last_login timestamp,
+    name varchar(255),
+    password varchar(255) not null,
+    token varchar(1024),
+    primary key (id)
+);
+-- emails are stored trimmed and lower-cased; the service reports a duplicate by this name
+alter table users add constraint ux_users_email unique (email);
+
+create table phones (
+    id bigint not null,
+    citycode integer,
+    countrycode varchar(255),
+    number bigint,
+    user_id uuid not null,
+    primary key (id)
+);
+alter table phones add constraint fk_phones_user_id foreign key (user_id) references users;
+
+create table refresh_tokens (
+    token_hash varchar(43) not null,
+    expires_at timestamp not null,
+    family_id uuid not null,
+    used boolean not null,
+    user_id uuid not null,
+    primary key (token_hash)
+);
+create index ix_refresh_tokens_family_id on refresh_tokens (family_id);
+create index ix_refresh_tokens_expires_at on refresh_tokens (expires_at);
+alter table refresh_tokens add constraint fk_refresh_tokens_user_id foreign key (user_id) references users;
+
+create table revoked_tokens (
+    jti varchar(64) not null,
+    expires_at timestamp not null,
+    primary key (jti)
+);
+create index ix_revoked_tokens_expires_at on revoked_tokens (expires_at);
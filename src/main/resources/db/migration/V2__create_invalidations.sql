@@ -0,0 +1,17 @@
+-- Notification table of the jdbc invalidation transport (cluster.invalidation.transport=jdbc): every node
+-- polls it for the rows other nodes inserted. A user changed outside the application, such as deactivated by
+-- hand, can be announced the same way in the same transaction:
+--   insert into invalidations (node_id, kind, user_id, email) values ('operator', 'USER_CHANGED', ?, ?);
+
+create table invalidations (
+    id bigint generated by default as identity,
+    created_at timestamp default current_timestamp not null,
+    node_id varchar(36) not null,
+    kind varchar(16) not null,
+    user_id uuid,
+    email varchar(255),
+    jti varchar(64),
+    expires_at timestamp,
+    primary key (id)
+);
+create index ix_invalidations_created_at on invalidations (created_at);
@@ -0,0 +1,76 @@
+package org.jwttest.config;
+
+import org.junit.jupiter.api.Test;
+import org.jwttest.JwtApp;
+import org.jwttest.model.UserRequest;
+import org.jwttest.persistence.JdbcInvalidationBus;
+import org.jwttest.service.TokenRevocationService;
+import org.jwttest.service.UserService;
+import org.jwttest.util.JwtUtil;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterConfigTest {
+
+    private final String database = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @Test
+    void jdbcTransport_shouldRevokeTokensOnTheOtherNode() throws InterruptedException {
+        try (ConfigurableApplicationContext first = start(); ConfigurableApplicationContext second = start()) {
+            assertNotEquals(first.getBean(JdbcInvalidationBus.class).getNodeId(),
+                    second.getBean(JdbcInvalidationBus.class).getNodeId());
+            String token = first.getBean(UserService.class).createUser(UserRequest.builder()
+                    .name("Juan Perez")
+                    .email("cluster@example.com")
+                    .password("a2asfGfdfdf4")
+                    .phones(Collections.emptyList())
+                    .build()).getToken();
+            JwtUtil secondJwtUtil = second.getBean(JwtUtil.class);
+            assertTrue(secondJwtUtil.isTokenValid(token));
+
+            first.getBean(TokenRevocationService.class).revokeToken(token);
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (secondJwtUtil.isTokenValid(token) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(secondJwtUtil.isTokenValid(token), "The other node should see the revocation");
+        }
+    }
+
+    @Test
+    void jdbcTransport_shouldNotStartWithKeysGeneratedInMemory() {
+        Exception e = assertThrows(Exception.class, () -> start("--jwt.signing.algorithm=ES256").close());
+
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertEquals(IllegalStateException.class, cause.getClass());
+        assertTrue(cause.getMessage().contains("jwt.signing.key-directory"), cause.getMessage());
+    }
+
+    private ConfigurableApplicationContext start() {
+        return start("--jwt.signing.algorithm=HS256", "--jwt.signing.secret=" + "cluster-test-secret-".repeat(3));
+    }
+
+    private ConfigurableApplicationContext start(String... signing) {
+        List<String> args = new ArrayList<>(List.of(signing));
+        args.addAll(List.of(
+                "--cluster.invalidation.transport=jdbc",
+                "--cluster.invalidation.poll-interval=50ms",
+                "--spring.datasource.url=" + database,
+                "--server.port=0",
+                "--password.hashing.bcrypt.strength=4",
+                "--logging.level.org.hibernate.SQL=OFF",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"));
+        return new SpringApplicationBuilder(JwtApp.class).run(args.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,63 @@
+package org.jwttest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jwttest.JwtApp;
+import org.jwttest.model.UserRequest;
+import org.jwttest.persistence.UserRepository;
+import org.jwttest.service.UserService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataSourceConfigTest {
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void poolSize_shouldScaleWithCores() {
+        assertEquals(9, DataSourceConfig.poolSize(4, 2, 1));
+        assertEquals(1, DataSourceConfig.poolSize(1, 0, 0));
+    }
+
+    @Test
+    void persistentProfile_shouldKeepUsersAcrossRestarts() {
+        String email = "persistent@example.com";
+        try (ConfigurableApplicationContext context = start()) {
+            context.getBean(UserService.class).createUser(UserRequest.builder()
+                    .name("Juan Perez")
+                    .email(email)
+                    .password("a2asfGfdfdf4")
+                    .phones(Collections.emptyList())
+                    .build());
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            assertTrue(context.getBean(UserRepository.class).findByEmail(email).isPresent());
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "select count(*) from \"flyway_schema_history\" where \"version\" = '1'", Integer.class));
+            assertEquals("64", jdbcTemplate.queryForObject(
+                    "select value from information_schema.settings where name = 'QUERY_CACHE_SIZE'", String.class));
+            assertEquals(DataSourceConfig.poolSize(Runtime.getRuntime().availableProcessors(), 2, 1),
+                    context.getBean(HikariDataSource.class).getMaximumPoolSize());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(JwtApp.class).run(
+                "--spring.profiles.active=persistent",
+                "--storage.path=" + storage.resolve("users"),
+                "--server.port=0",
+                "--password.hashing.bcrypt.strength=4",
+                "--logging.level.org.hibernate.SQL=OFF",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF");
+    }
+}
@@ -0,0 +1,43 @@
+package org.jwttest.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionModeConfigTest {
+
+    @Test
+    void newVirtualThreadPerTaskExecutor_shouldMatchRuntimeSupport() throws Exception {
+        if (Runtime.version().feature() >= 21) {
+            assertTrue(ExecutionModeConfig.isVirtualThreadSupported());
+            ExecutorService executor = ExecutionModeConfig.newVirtualThreadPerTaskExecutor();
+            String name = executor.submit(() -> Thread.currentThread().toString()).get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+            assertTrue(name.startsWith("VirtualThread"), name);
+        } else {
+            assertFalse(ExecutionModeConfig.isVirtualThreadSupported());
+            IllegalStateException ex = assertThrows(IllegalStateException.class,
+                    ExecutionModeConfig::newVirtualThreadPerTaskExecutor);
+            assertTrue(ex.getMessage().contains("Java 21"));
+        }
+    }
+
+    @Test
+    void virtualMode_shouldCloseTheExecutorWithTheContext() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withUserConfiguration(ExecutionModeConfig.class)
+                .withPropertyValues("execution.mode=virtual");
+        if (Runtime.version().feature() < 21) {
+            runner.run(context -> assertNotNull(context.getStartupFailure()));
+            return;
+        }
+        ExecutorService[] executor = new ExecutorService[1];
+        runner.run(context -> executor[0] = context.getBean("virtualThreadExecutor", ExecutorService.class));
+
+        assertTrue(executor[0].isShutdown());
+    }
+}
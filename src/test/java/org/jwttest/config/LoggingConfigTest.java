@@ -0,0 +1,54 @@
+package org.jwttest.config;
+
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.UserRequest;
+import org.jwttest.persistence.SlowQueryDataSource;
+import org.jwttest.service.UserService;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Boots the prod profile: statement logging off, statements timed by the slow query wrapper, and the
+ * application still working through it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:prod-profile;DB_CLOSE_ON_EXIT=FALSE",
+        "password.hashing.bcrypt.strength=4"
+})
+@ActiveProfiles("prod")
+class LoggingConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void prodProfile_shouldReplaceStatementLoggingWithSlowQueryLog() {
+        // Arrange
+        UserRequest request = UserRequest.builder()
+                .name("Juan Perez")
+                .email("juan-" + UUID.randomUUID() + "@example.com")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        // Act
+        String token = userService.createUser(request).getToken();
+
+        // Assert
+        assertNotNull(userService.login("Bearer " + token));
+        assertTrue(dataSource instanceof SlowQueryDataSource);
+        assertFalse(LoggerFactory.getLogger("org.hibernate.SQL").isDebugEnabled());
+        assertFalse(LoggerFactory.getLogger("org.hibernate.type.descriptor.sql.BasicBinder").isTraceEnabled());
+    }
+}
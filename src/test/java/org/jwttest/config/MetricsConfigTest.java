@@ -0,0 +1,40 @@
+package org.jwttest.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.jwttest.util.Instrumentation;
+import org.jwttest.util.JwtUtil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsConfigTest {
+
+    private final MetricsConfig metricsConfig = new MetricsConfig();
+
+    @Test
+    void outcomeOf_shouldFollowExceptionHandlerStatuses() {
+        assertEquals(Instrumentation.SUCCESS, MetricsConfig.outcomeOf(200));
+        assertEquals(Instrumentation.SUCCESS, MetricsConfig.outcomeOf(304));
+        assertEquals(Instrumentation.VALIDATION_ERROR, MetricsConfig.outcomeOf(400));
+        assertEquals(Instrumentation.INVALID_TOKEN, MetricsConfig.outcomeOf(401));
+        assertEquals(Instrumentation.NOT_FOUND, MetricsConfig.outcomeOf(404));
+        assertEquals(Instrumentation.REJECTED, MetricsConfig.outcomeOf(429));
+        assertEquals(Instrumentation.REJECTED, MetricsConfig.outcomeOf(503));
+        assertEquals(Instrumentation.ERROR, MetricsConfig.outcomeOf(500));
+    }
+
+    @Test
+    void verifiedTokenCacheMetrics_shouldReportCacheStats() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtUtil jwtUtil = JwtUtil.builder().build();
+        String token = jwtUtil.generateToken("test@example.com");
+        jwtUtil.extractSubject(token);
+        jwtUtil.extractSubject(token);
+
+        metricsConfig.verifiedTokenCacheMetrics(jwtUtil).bindTo(registry);
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("cache.size").tag("cache", "jwt.verified").gauge().value());
+    }
+}
@@ -0,0 +1,118 @@
+package org.jwttest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RateLimiter;
+import org.jwttest.util.SigningKeyRing;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private final JwtUtil jwtUtil = JwtUtil.builder().build();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final RateLimitFilter filter = new RateLimitFilter(jwtUtil, objectMapper, Duration.ofMinutes(1))
+            .limit("/sign-up", limiter("sign-up.client", 2), RateLimitFilter.UserKey.EMAIL, limiter("sign-up.email", 1))
+            .limit("/login", limiter("login.client", 100), RateLimitFilter.UserKey.SUBJECT, limiter("login.subject", 1));
+
+    @Test
+    void doFilter_shouldRejectClientOverItsLimit() throws Exception {
+        assertEquals(200, signUp("10.0.0.1", "a@example.com").getStatus());
+        assertEquals(200, signUp("10.0.0.1", "b@example.com").getStatus());
+
+        MockHttpServletResponse rejected = signUp("10.0.0.1", "c@example.com");
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("30", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(429, objectMapper.readTree(rejected.getContentAsString()).get("code").asInt());
+        assertEquals(200, signUp("10.0.0.2", "c@example.com").getStatus());
+    }
+
+    @Test
+    void doFilter_shouldLimitSignUpPerEmailAcrossClients() throws Exception {
+        assertEquals(200, signUp("10.0.0.1", "Juan@Example.com").getStatus());
+
+        assertEquals(429, signUp("10.0.0.2", " juan@example.com").getStatus());
+    }
+
+    @Test
+    void doFilter_shouldPassTheWholeBodyOn() throws Exception {
+        String padding = "x".repeat(RateLimitFilter.MAX_SCANNED_BODY_BYTES);
+        String body = "{\"email\":\"juan@example.com\",\"name\":\"" + padding + "\"}";
+        MockHttpServletRequest request = post("/sign-up", "10.0.0.1");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertEquals(body, StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void doFilter_shouldLimitLoginPerVerifiedSubject() throws Exception {
+        String token = jwtUtil.generateToken("juan@example.com");
+        String forged = JwtUtil.builder()
+                .keyRing(new SigningKeyRing(SigningKeyRing.HS256, "another-test-secret-".repeat(3), "", "",
+                        Duration.ofDays(1), Duration.ofDays(7), Duration.ofHours(1)))
+                .build()
+                .generateToken("juan@example.com");
+
+        assertEquals(200, login("10.0.0.1", forged).getStatus());
+        assertEquals(200, login("10.0.0.1", token).getStatus());
+
+        assertEquals(429, login("10.0.0.2", token).getStatus());
+        assertEquals(200, login("10.0.0.2", forged).getStatus());
+    }
+
+    @Test
+    void doFilter_shouldIgnoreOtherRequests() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/sign-up");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            filter.doFilter(request, response, chain);
+
+            assertNotNull(chain.getRequest());
+        }
+        assertEquals(0, filter.getLimiters().get(0).stats().getAllowed());
+    }
+
+    private MockHttpServletResponse signUp(String client, String email) throws Exception {
+        MockHttpServletRequest request = post("/sign-up", client);
+        request.setContent(("{\"name\":\"Juan\",\"email\":\"" + email + "\",\"password\":\"secret\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletResponse login(String client, String token) throws Exception {
+        MockHttpServletRequest request = post("/login", client);
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest post(String path, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr(client);
+        request.setContentType("application/json");
+        return request;
+    }
+
+    private static RateLimiter limiter(String name, int requests) {
+        return new RateLimiter(name, requests, Duration.ofMinutes(1), 100);
+    }
+}
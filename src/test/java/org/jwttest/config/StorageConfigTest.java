@@ -0,0 +1,57 @@
+package org.jwttest.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jwttest.JwtApp;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+import org.jwttest.persistence.InMemoryUserStore;
+import org.jwttest.persistence.UserStore;
+import org.jwttest.service.RefreshTokenService;
+import org.jwttest.service.UserService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageConfigTest {
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void memoryStorage_shouldKeepUsersAndRefreshTokensAcrossRestarts() {
+        String email = "memory@example.com";
+        String refreshToken;
+        try (ConfigurableApplicationContext context = start()) {
+            assertTrue(context.getBean(UserStore.class) instanceof InMemoryUserStore);
+            UserResponse response = context.getBean(UserService.class).createUser(UserRequest.builder()
+                    .name("Juan Perez")
+                    .email(email)
+                    .password("a2asfGfdfdf4")
+                    .phones(Collections.emptyList())
+                    .build());
+            refreshToken = response.getRefreshToken();
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            assertTrue(context.getBean(UserService.class).findUserByMail(email).isPresent());
+            RefreshToken next = context.getBean(RefreshTokenService.class).rotate(refreshToken);
+            assertEquals(email, next.getUser().getEmail());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(JwtApp.class).run(
+                "--storage.type=memory",
+                "--storage.memory.directory=" + storage,
+                "--server.port=0",
+                "--password.hashing.bcrypt.strength=4",
+                "--logging.level.org.hibernate.SQL=OFF",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF");
+    }
+}
@@ -0,0 +1,121 @@
+package org.jwttest.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.RevocationRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:admin;DB_CLOSE_ON_EXIT=FALSE",
+        "password.hashing.bcrypt.strength=4",
+        "logging.level.org.hibernate.SQL=OFF",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"
+})
+@AutoConfigureMockMvc
+class AdminControllerTest {
+
+    private static final String ADMIN_PASSWORD = "admin-secret";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void adminPassword(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.user.password",
+                () -> "{bcrypt}" + new BCryptPasswordEncoder(4).encode(ADMIN_PASSWORD));
+    }
+
+    @Test
+    void revoke_shouldRejectTokenOnLogin() throws Exception {
+        String token = signUp();
+        login(token).andExpect(status().isOk());
+
+        revoke(RevocationRequest.builder().token(token).build(), ADMIN_PASSWORD).andExpect(status().isNoContent());
+
+        login(token).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void revoke_shouldAcceptAlreadyRevokedToken() throws Exception {
+        String token = signUp();
+
+        revoke(RevocationRequest.builder().token(token).build(), ADMIN_PASSWORD).andExpect(status().isNoContent());
+        revoke(RevocationRequest.builder().token(token).build(), ADMIN_PASSWORD).andExpect(status().isNoContent());
+    }
+
+    @Test
+    void revoke_shouldRequireAdminCredentials() throws Exception {
+        String token = signUp();
+
+        mockMvc.perform(post("/admin/revocations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(RevocationRequest.builder().token(token).build())))
+                .andExpect(status().isUnauthorized());
+        revoke(RevocationRequest.builder().token(token).build(), "wrong").andExpect(status().isUnauthorized());
+
+        login(token).andExpect(status().isOk());
+    }
+
+    @Test
+    void actuator_shouldRequireAdminCredentialsExceptForHealth() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator")).andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, basic(ADMIN_PASSWORD)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void revoke_shouldRejectRequestWithoutTokenOrJti() throws Exception {
+        revoke(new RevocationRequest(), ADMIN_PASSWORD).andExpect(status().isBadRequest());
+    }
+
+    private ResultActions revoke(RevocationRequest request, String password) throws Exception {
+        return mockMvc.perform(post("/admin/revocations")
+                .header(HttpHeaders.AUTHORIZATION, basic(password))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)));
+    }
+
+    private static String basic(String password) {
+        return "Basic " + Base64.getEncoder().encodeToString(("admin:" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ResultActions login(String token) throws Exception {
+        return mockMvc.perform(post("/login").header("Authorization", "Bearer " + token));
+    }
+
+    private String signUp() throws Exception {
+        Map<String, Object> body = Map.of(
+                "name", "Admin Test",
+                "email", "admin-" + UUID.randomUUID() + "@example.com",
+                "password", "a2asfGfdfdf4");
+        String response = mockMvc.perform(post("/sign-up")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+}
@@ -0,0 +1,46 @@
+package org.jwttest.controller;
+
+import org.jwttest.util.SigningKeyRing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwksControllerTest {
+
+    @Mock
+    private SigningKeyRing keyRing;
+
+    private JwksController jwksController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        jwksController = new JwksController(keyRing);
+    }
+
+    @Test
+    void jwks_shouldReturnPublishedKeysWithCacheHeaders() {
+        Map<String, Object> jwks = Map.of("keys", List.of());
+        when(keyRing.jwks()).thenReturn(jwks);
+        when(keyRing.getJwksMaxAge()).thenReturn(Duration.ofMinutes(30));
+
+        ResponseEntity<Map<String, Object>> response = jwksController.jwks();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(jwks, response.getBody());
+        assertEquals("max-age=1800, public", response.getHeaders().getCacheControl());
+        assertEquals(JwksController.JWK_SET, response.getHeaders().getContentType());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.PRAGMA));
+    }
+}
@@ -0,0 +1,260 @@
+package org.jwttest.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the JDBC statements Hibernate issues per endpoint, so that a query sneaking into a hot path fails
+ * the build. Writes deferred to the login write-behind are not Hibernate statements and are not counted.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "password.hashing.bcrypt.strength=4",
+        "logging.level.org.hibernate.SQL=OFF",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"
+})
+@AutoConfigureMockMvc
+class JwtControllerStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void signUp_shouldProbeEmailAndInsertUserWithPhones() throws Exception {
+        // warm up the pooled phone id sequence, so the measured sign-up does not fetch a new block
+        signUp(uniqueEmail(), 1);
+        statistics.clear();
+
+        signUp(uniqueEmail(), 10);
+
+        // existence probe, user insert, a single batch for all the phones and the refresh token insert
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(12, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void signUp_shouldRejectDuplicateWithSingleQuery() throws Exception {
+        String email = uniqueEmail();
+        signUp(email, 1);
+        statistics.clear();
+
+        mockMvc.perform(post("/sign-up").contentType(MediaType.APPLICATION_JSON).content(signUpBody(email, 1)))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void signUp_shouldRejectOverEmailLimitWithoutQuery() throws Exception {
+        String email = uniqueEmail();
+        // without phones, so the phone id sequence other tests count statements of is left alone
+        signUp(email, 0);
+        // the rest of the email's five attempts a minute, from another address
+        for (int i = 1; i < 5; i++) {
+            mockMvc.perform(post("/sign-up").contentType(MediaType.APPLICATION_JSON).content(signUpBody(email, 0))
+                            .with(request -> {
+                                request.setRemoteAddr("10.0.0.2");
+                                return request;
+                            }))
+                    .andExpect(status().isBadRequest());
+        }
+        statistics.clear();
+
+        mockMvc.perform(post("/sign-up").contentType(MediaType.APPLICATION_JSON).content(signUpBody(email, 0)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void login_shouldLoadUserWithPhonesInOneQuery() throws Exception {
+        String token = signUp(uniqueEmail(), 2);
+        statistics.clear();
+
+        JsonNode response = login(token);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(token, response.get("token").asText(), "login should not issue a new token");
+    }
+
+    @Test
+    void refresh_shouldRotateWithThreeStatements() throws Exception {
+        JsonNode signedUp = signUpResponse(mockMvc, uniqueEmail(), 1);
+        statistics.clear();
+
+        JsonNode refreshed = refresh(signedUp.get("refreshToken").asText());
+
+        // the token with its user, marking it used and inserting its successor
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertNotEquals(signedUp.get("refreshToken").asText(), refreshed.get("refreshToken").asText());
+        login(refreshed.get("token").asText());
+    }
+
+    @Test
+    void refresh_shouldRevokeFamilyWhenUsedTokenIsPresentedAgain() throws Exception {
+        String first = signUpResponse(mockMvc, uniqueEmail(), 1).get("refreshToken").asText();
+        String second = refresh(first).get("refreshToken").asText();
+
+        mockMvc.perform(post("/token/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshBody(first)))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/token/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshBody(second)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void login_shouldAnswerNotModifiedWithTheStatusQueryOnly() throws Exception {
+        String token = signUp(uniqueEmail(), 2);
+        String eTag = mockMvc.perform(post("/login").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+
+        mockMvc.perform(post("/login")
+                        .header("Authorization", "Bearer " + token)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        assertEquals(1, statistics.getPrepareStatementCount(), "only whether the user is still active");
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void signUpBulk_shouldProbeOnceAndInsertInBatches() throws Exception {
+        // warm up the pooled phone id sequence
+        signUp(uniqueEmail(), 1);
+        statistics.clear();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            body.append(signUpBody(uniqueEmail(), 1)).append('\n');
+        }
+
+        String response = mockMvc.perform(post("/sign-up/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.split("\n");
+        assertEquals(100, lines.length);
+        assertEquals(201, objectMapper.readTree(lines[99]).get("code").asInt());
+        assertEquals(300, statistics.getEntityInsertCount());
+        // the existence probe, the phone id sequence and one batched insert statement each for users, phones
+        // and refresh tokens
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "login.stateless.enabled=true")
+    class StatelessLogin {
+
+        @Autowired
+        private MockMvc statelessMockMvc;
+
+        @Test
+        void login_shouldQueryStatusOnceAndThenNothing() throws Exception {
+            String token = signUp(statelessMockMvc, uniqueEmail(), 2);
+            Statistics statistics = statelessMockMvc.getDispatcherServlet().getWebApplicationContext()
+                    .getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+
+            login(statelessMockMvc, token);
+            assertEquals(1, statistics.getPrepareStatementCount(), "first login loads the status projection");
+            assertEquals(0, statistics.getEntityLoadCount(), "no entity should be loaded");
+
+            statistics.clear();
+            login(statelessMockMvc, token);
+            assertEquals(0, statistics.getPrepareStatementCount(), "cached login should not query");
+        }
+    }
+
+    private String signUp(String email, int phones) throws Exception {
+        return signUp(mockMvc, email, phones);
+    }
+
+    private String signUp(MockMvc mockMvc, String email, int phones) throws Exception {
+        return signUpResponse(mockMvc, email, phones).get("token").asText();
+    }
+
+    private JsonNode signUpResponse(MockMvc mockMvc, String email, int phones) throws Exception {
+        String response = mockMvc.perform(post("/sign-up")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(signUpBody(email, phones)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private JsonNode refresh(String refreshToken) throws Exception {
+        String response = mockMvc.perform(post("/token/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private String refreshBody(String refreshToken) {
+        return "{\"refreshToken\":\"" + refreshToken + "\"}";
+    }
+
+    private JsonNode login(String token) throws Exception {
+        return login(mockMvc, token);
+    }
+
+    private JsonNode login(MockMvc mockMvc, String token) throws Exception {
+        String response = mockMvc.perform(post("/login").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private String signUpBody(String email, int phones) {
+        StringBuilder body = new StringBuilder()
+                .append("{\"name\":\"Test User\",\"email\":\"").append(email)
+                .append("\",\"password\":\"a2asfGfdfdf4\",\"phones\":[");
+        for (int i = 0; i < phones; i++) {
+            body.append(i > 0 ? "," : "").append("{\"number\":").append(1000 + i)
+                    .append(",\"citycode\":1,\"contrycode\":\"57\"}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static String uniqueEmail() {
+        return UUID.randomUUID() + "@example.com";
+    }
+}
@@ -1,9 +1,14 @@
 package org.jwttest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jwttest.exception.ErrorResponse;
-import org.jwttest.model.User;
+import org.jwttest.model.BulkSignUpResult;
+import org.jwttest.model.LoginResponse;
+import org.jwttest.model.RefreshRequest;
+import org.jwttest.model.TokenResponse;
 import org.jwttest.model.UserRequest;
 import org.jwttest.model.UserResponse;
+import org.jwttest.service.LoginResponseCache;
 import org.jwttest.service.UserService;
 import org.jwttest.util.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,9 +16,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,7 +43,7 @@ class JwtControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        jwtController = new JwtController(jwtUtil, userService);
+        jwtController = new JwtController(jwtUtil, userService, new ObjectMapper());
     }
 
     @Test
@@ -63,26 +75,105 @@ class JwtControllerTest {
     }
 
     @Test
-    void login_shouldReturnOkStatusWithUser_whenTokenIsValid() {
+    void refresh_shouldReturnNewTokensWithoutCaching() {
+        TokenResponse tokens = TokenResponse.builder().token("access").refreshToken("next").expiresIn(900).build();
+        when(userService.refresh("refresh")).thenReturn(tokens);
+
+        ResponseEntity<TokenResponse> response = jwtController.refresh(RefreshRequest.builder().refreshToken("refresh").build());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(tokens, response.getBody());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
+    }
+
+    @Test
+    void login_shouldReturnOkStatusWithSerializedResponseAndETag_whenTokenIsValid() {
         String tokenHeader = "Bearer validToken";
-        String token = "validToken";
-        UUID id = UUID.randomUUID();
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put("test@example.com", LoginResponse.builder().email("test@example.com").isActive(true).build());
 
-        User mockUser = User.builder()
-                .id(id)
-                .email("test@example.com")
-                .isActive(true)
-                .build();
+        when(userService.login(tokenHeader)).thenReturn(entry);
 
-        when(userService.getUserByToken(tokenHeader)).thenReturn(mockUser);
+        ResponseEntity<byte[]> response = jwtController.login(tokenHeader, null);
 
-        ResponseEntity<User> response = jwtController.login(tokenHeader);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(entry.getBody(), response.getBody());
+        assertEquals(entry.getETag(), response.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        verify(userService, never()).findNotModifiedLogin(anyString(), anyString());
+    }
+
+    @Test
+    void login_shouldReturnNotModified_whenClientHoldsLatestResponse() {
+        String tokenHeader = "Bearer validToken";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put("test@example.com", LoginResponse.builder().email("test@example.com").build());
+
+        when(userService.findNotModifiedLogin(tokenHeader, entry.getETag())).thenReturn(entry);
+
+        ResponseEntity<byte[]> response = jwtController.login(tokenHeader, entry.getETag());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(entry.getETag(), response.getHeaders().getETag());
+        verify(userService, never()).login(anyString());
+    }
+
+    @Test
+    void login_shouldLogIn_whenETagIsStale() {
+        String tokenHeader = "Bearer validToken";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put("test@example.com", LoginResponse.builder().email("test@example.com").build());
+
+        when(userService.findNotModifiedLogin(tokenHeader, "\"stale\"")).thenReturn(null);
+        when(userService.login(tokenHeader)).thenReturn(entry);
+
+        ResponseEntity<byte[]> response = jwtController.login(tokenHeader, "\"stale\"");
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertTrue(response.getBody() instanceof User);
-        assertEquals(id, ((User) response.getBody()).getId());
-        verify(userService, times(1)).getUserByToken(tokenHeader);
+        assertEquals(entry.getETag(), response.getHeaders().getETag());
+    }
+
+    @Test
+    void signUpBulk_shouldReadArrayOrNdjsonAndAnswerOneLinePerRecord() throws Exception {
+        stubCreateUsers();
+        String array = "[{\"email\":\"a@example.com\"},{\"email\":\"b@example.com\"}]";
+        String ndjson = "{\"email\":\"a@example.com\"}\n{\"email\":\"b@example.com\"}\n";
+
+        for (String body : List.of(array, ndjson)) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            jwtController.signUpBulk(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), response);
+
+            assertEquals(200, response.getStatus());
+            assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType());
+            assertEquals("{\"index\":0,\"code\":400,\"detail\":\"a@example.com\"}\n"
+                    + "{\"index\":1,\"code\":400,\"detail\":\"b@example.com\"}\n", response.getContentAsString());
+        }
     }
 
+    @Test
+    void signUpBulk_shouldStopAtMalformedRecordAfterCompletingPreviousOnes() throws Exception {
+        stubCreateUsers();
+        String body = "{\"email\":\"a@example.com\"}\n{\"email\": oops}\n{\"email\":\"c@example.com\"}\n";
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        jwtController.signUpBulk(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), response);
+
+        assertEquals("{\"index\":0,\"code\":400,\"detail\":\"a@example.com\"}\n"
+                + "{\"index\":1,\"code\":400,\"detail\":\"Malformed record\"}\n", response.getContentAsString());
+    }
+
+    // answers every record with its email as the detail, one chunk per record
+    private void stubCreateUsers() {
+        doAnswer(invocation -> {
+            Iterator<UserRequest> requests = invocation.getArgument(0);
+            Consumer<List<BulkSignUpResult>> results = invocation.getArgument(1);
+            long index = 0;
+            while (requests.hasNext()) {
+                results.accept(List.of(BulkSignUpResult.failed(index++, 400, requests.next().getEmail())));
+            }
+            return null;
+        }).when(userService).createUsers(any(), any());
+    }
 }
@@ -0,0 +1,215 @@
+package org.jwttest.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jwttest.model.Phone;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryUserStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryUserStore start(int shards) throws IOException {
+        // no background sync or snapshots: a test that does not call shutdown simulates a crash
+        InMemoryUserStore store = new InMemoryUserStore(directory, shards, 100, Duration.ZERO, Duration.ZERO);
+        store.start();
+        return store;
+    }
+
+    private static User user(String email) {
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .name("Test User")
+                .email(email)
+                .password("encoded-password")
+                .created(new Date())
+                .isActive(true)
+                .build();
+        user.setPhones(new ArrayList<>(List.of(
+                Phone.builder().number(1234567L).citycode(1).countrycode("57").user(user).build())));
+        return user;
+    }
+
+    private static RefreshToken token(String hash, User user, UUID familyId, Date expiresAt) {
+        return RefreshToken.builder().tokenHash(hash).user(user).familyId(familyId).expiresAt(expiresAt).build();
+    }
+
+    private static Date inOneHour() {
+        return new Date(System.currentTimeMillis() + 3_600_000);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void insert_shouldStoreUserWithPhones() throws IOException {
+        InMemoryUserStore store = start(4);
+        User user = user("test@example.com");
+
+        store.insert(user);
+
+        User found = store.findByEmail("test@example.com").orElseThrow();
+        assertEquals(user.getId(), found.getId());
+        assertEquals("encoded-password", found.getPassword());
+        assertEquals(1, found.getPhones().size());
+        assertNotNull(found.getPhones().get(0).getId(), "Phones should get ids as from the sequence");
+        assertEquals(1234567L, found.getPhones().get(0).getNumber());
+        assertTrue(store.existsByEmail("test@example.com"));
+        assertEquals(List.of("test@example.com"),
+                store.findExistingEmails(List.of("test@example.com", "other@example.com")));
+        assertTrue(store.findStatusByEmail("test@example.com").orElseThrow().isActive());
+        store.shutdown();
+    }
+
+    @Test
+    void insert_shouldRejectTakenEmailLikeTheUniqueIndex() throws IOException {
+        InMemoryUserStore store = start(4);
+        store.insert(user("test@example.com"));
+
+        DuplicateKeyException e = assertThrows(DuplicateKeyException.class,
+                () -> store.insert(user("test@example.com")));
+
+        assertTrue(e.getMessage().contains(User.EMAIL_UNIQUE_INDEX));
+        store.shutdown();
+    }
+
+    @Test
+    void insertAll_shouldInsertNothingWhenOneEmailIsTaken() throws IOException {
+        InMemoryUserStore store = start(4);
+        store.insert(user("taken@example.com"));
+        User first = user("first@example.com");
+        User taken = user("taken@example.com");
+
+        assertThrows(DuplicateKeyException.class, () -> store.insertAll(List.of(first, taken),
+                List.of(token("hash-1", first, UUID.randomUUID(), inOneHour()))));
+
+        assertFalse(store.existsByEmail("first@example.com"));
+        assertTrue(store.findWithUser("hash-1").isEmpty());
+        store.shutdown();
+    }
+
+    @Test
+    void save_shouldRejectTokenOfUnknownUser() throws IOException {
+        InMemoryUserStore store = start(4);
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> store.save(token("hash", user("nobody@example.com"), UUID.randomUUID(), inOneHour())));
+        store.shutdown();
+    }
+
+    @Test
+    void refreshTokens_shouldBeUsedOnceAndDeletedByFamily() throws IOException {
+        InMemoryUserStore store = start(4);
+        User user = user("test@example.com");
+        UUID familyId = UUID.randomUUID();
+        store.insertAll(List.of(user), List.of(token("hash-1", user, familyId, inOneHour())));
+        store.save(token("hash-2", user, familyId, inOneHour()));
+        store.save(token("expired", user, UUID.randomUUID(), new Date(System.currentTimeMillis() - 1)));
+
+        assertEquals("test@example.com", store.findWithUser("hash-1").orElseThrow().getUser().getEmail());
+        assertEquals(1, store.markUsed("hash-1"));
+        assertEquals(0, store.markUsed("hash-1"), "A token should be used only once");
+        assertEquals(1, store.deleteExpired(new Date()));
+        assertEquals(2, store.deleteFamily(familyId));
+        assertTrue(store.findWithUser("hash-2").isEmpty());
+        store.shutdown();
+    }
+
+    @Test
+    void start_shouldReplayTheLogAfterACrash() throws IOException {
+        InMemoryUserStore store = start(4);
+        User user = user("test@example.com");
+        store.insert(user);
+        user.setToken("login-token");
+        user.setLastLogin(new Date(1_000_000L));
+        store.updateLogin(user);
+        store.save(token("hash", user, UUID.randomUUID(), inOneHour()));
+        store.markUsed("hash");
+
+        InMemoryUserStore restarted = start(4);
+
+        User found = restarted.findByEmail("test@example.com").orElseThrow();
+        assertEquals("login-token", found.getToken());
+        assertEquals(new Date(1_000_000L), found.getLastLogin());
+        assertEquals(user.getPhones().get(0).getId(), found.getPhones().get(0).getId());
+        assertTrue(restarted.findWithUser("hash").orElseThrow().isUsed());
+        restarted.shutdown();
+    }
+
+    @Test
+    void start_shouldLoadTheSnapshotAndTheLaterLogs() throws IOException {
+        InMemoryUserStore store = start(1);
+        User first = user("first@example.com");
+        store.insert(first);
+        store.snapshot();
+        store.insert(user("second@example.com"));
+        first.setToken("login-token");
+        store.updateLogin(first);
+
+        assertEquals(List.of("shard-00.2.log", "shard-00.2.snapshot"), files(),
+                "The snapshot should replace the older log");
+        InMemoryUserStore restarted = start(1);
+
+        assertTrue(restarted.existsByEmail("second@example.com"));
+        assertEquals("login-token", restarted.findByEmail("first@example.com").orElseThrow().getToken());
+        restarted.shutdown();
+    }
+
+    @Test
+    void start_shouldIgnoreARecordTornByACrash() throws IOException {
+        InMemoryUserStore store = start(1);
+        store.insert(user("first@example.com"));
+        store.insert(user("second@example.com"));
+        try (FileChannel log = FileChannel.open(directory.resolve("shard-00.1.log"), StandardOpenOption.WRITE)) {
+            log.truncate(log.size() - 3);
+        }
+
+        InMemoryUserStore restarted = start(1);
+
+        assertTrue(restarted.existsByEmail("first@example.com"));
+        assertFalse(restarted.existsByEmail("second@example.com"));
+        restarted.insert(user("third@example.com"));
+        restarted.shutdown();
+        assertTrue(start(1).existsByEmail("third@example.com"), "Later records should not be lost behind it");
+    }
+
+    @Test
+    void start_shouldMoveUsersWhenTheNumberOfShardsChanges() throws IOException {
+        InMemoryUserStore store = start(4);
+        for (int i = 0; i < 50; i++) {
+            store.insert(user("user-" + i + "@example.com"));
+        }
+        store.shutdown();
+
+        InMemoryUserStore restarted = start(2);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(restarted.existsByEmail("user-" + i + "@example.com"));
+        }
+        assertTrue(files().stream().allMatch(file -> file.startsWith("shard-00.") || file.startsWith("shard-01.")));
+        restarted.shutdown();
+        assertTrue(start(2).existsByEmail("user-49@example.com"));
+    }
+}
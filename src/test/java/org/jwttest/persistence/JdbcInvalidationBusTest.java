@@ -0,0 +1,108 @@
+package org.jwttest.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.Invalidation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcInvalidationBusTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("db/migration/V2__create_invalidations.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    // polled by the test only
+    private JdbcInvalidationBus node(List<Invalidation> received, Duration grace, Duration retention) {
+        JdbcInvalidationBus bus = new JdbcInvalidationBus(jdbcTemplate, Duration.ZERO, grace, retention);
+        bus.start(received::add);
+        return bus;
+    }
+
+    private int rows() {
+        return jdbcTemplate.queryForObject("select count(*) from invalidations", Integer.class);
+    }
+
+    @Test
+    void poll_shouldDeliverToOtherNodesOnlyOnce() {
+        List<Invalidation> receivedByFirst = new ArrayList<>();
+        List<Invalidation> receivedBySecond = new ArrayList<>();
+        JdbcInvalidationBus first = node(receivedByFirst, Duration.ofSeconds(10), Duration.ofMinutes(10));
+        JdbcInvalidationBus second = node(receivedBySecond, Duration.ofSeconds(10), Duration.ofMinutes(10));
+        Invalidation userChanged = Invalidation.userChanged(UUID.randomUUID(), "test@example.com");
+        Invalidation tokenRevoked = Invalidation.tokenRevoked("jti", new Date(1_700_000_000_000L));
+
+        first.publish(List.of(userChanged, tokenRevoked));
+
+        assertEquals(2, second.poll());
+        assertEquals(0, second.poll(), "Rows still within the grace period should not be delivered again");
+        assertEquals(0, first.poll(), "A node should not receive its own invalidations");
+        assertEquals(List.of(userChanged, tokenRevoked), receivedBySecond);
+        assertTrue(receivedByFirst.isEmpty());
+    }
+
+    @Test
+    void poll_shouldDeliverRowsInsertedOutsideTheApplication() {
+        List<Invalidation> received = new ArrayList<>();
+        JdbcInvalidationBus bus = node(received, Duration.ofSeconds(10), Duration.ofMinutes(10));
+        UUID userId = UUID.randomUUID();
+
+        jdbcTemplate.update("insert into invalidations (node_id, kind, user_id, email) values (?, ?, ?, ?)",
+                "operator", "USER_CHANGED", userId, "test@example.com");
+
+        assertEquals(1, bus.poll());
+        assertEquals(Invalidation.userChanged(userId, "test@example.com"), received.get(0));
+    }
+
+    @Test
+    void poll_shouldDeliverARowCommittedAfterItsTransactionStarted() {
+        List<Invalidation> received = new ArrayList<>();
+        JdbcInvalidationBus bus = node(received, Duration.ofSeconds(10), Duration.ofMinutes(10));
+        bus.poll();
+
+        // as inserted by a transaction that started five seconds before it committed
+        jdbcTemplate.update("insert into invalidations (created_at, node_id, kind, jti, expires_at)"
+                        + " values (?, ?, ?, ?, ?)", new Timestamp(System.currentTimeMillis() - 5_000), "other",
+                "TOKEN_REVOKED", "jti", new Timestamp(1_700_000_000_000L));
+
+        assertEquals(1, bus.poll());
+        assertEquals(Invalidation.tokenRevoked("jti", new Date(1_700_000_000_000L)), received.get(0));
+    }
+
+    @Test
+    void poll_shouldDeleteRowsOlderThanTheRetention() throws InterruptedException {
+        JdbcInvalidationBus bus = node(new ArrayList<>(), Duration.ofMillis(10), Duration.ofMillis(20));
+        bus.publish(Invalidation.tokenRevoked("jti", new Date()));
+        Thread.sleep(50);
+
+        bus.poll();
+
+        assertEquals(0, rows());
+    }
+}
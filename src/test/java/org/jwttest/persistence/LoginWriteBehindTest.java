@@ -0,0 +1,163 @@
+package org.jwttest.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.Invalidation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginWriteBehindTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table users (id uuid primary key, token varchar(255), last_login timestamp)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    private LoginWriteBehind writeBehind(boolean enabled, int batchSize, int maxPending) {
+        return new LoginWriteBehind(jdbcTemplate, new DataSourceTransactionManager(database),
+                enabled, batchSize, maxPending, 60_000);
+    }
+
+    private UUID insertUser() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into users (id, token) values (?, ?)", id, "old-token");
+        return id;
+    }
+
+    private String tokenOf(UUID id) {
+        return jdbcTemplate.queryForObject("select token from users where id = ?", String.class, id);
+    }
+
+    @Test
+    void flush_shouldWriteOnlyLatestLoginPerUser() {
+        LoginWriteBehind writeBehind = writeBehind(true, 100, 1_000);
+        UUID id = insertUser();
+
+        writeBehind.enqueue(id, null, "token-1", new Date());
+        writeBehind.enqueue(id, null, "token-2", new Date());
+        writeBehind.enqueue(id, null, "token-3", new Date());
+
+        assertEquals("old-token", tokenOf(id), "Nothing should be written before the flush");
+        writeBehind.flush();
+
+        assertEquals("token-3", tokenOf(id));
+        assertEquals(1, writeBehind.stats().getFlushedRows());
+        assertEquals(2, writeBehind.stats().getCoalesced());
+        assertEquals(0, writeBehind.stats().getQueueDepth());
+    }
+
+    @Test
+    void flush_shouldSplitPendingLoginsInBatches() {
+        LoginWriteBehind writeBehind = writeBehind(true, 10, 1_000);
+        for (int i = 0; i < 25; i++) {
+            writeBehind.enqueue(insertUser(), null, "token", new Date());
+        }
+
+        writeBehind.flush();
+
+        assertEquals(25, writeBehind.stats().getFlushedRows());
+        assertEquals(3, writeBehind.stats().getFlushes());
+    }
+
+    @Test
+    void enqueue_shouldFlushInlineWhenQueueIsFull() {
+        LoginWriteBehind writeBehind = writeBehind(true, 1_000, 5);
+        UUID last = null;
+        for (int i = 0; i < 5; i++) {
+            last = insertUser();
+            writeBehind.enqueue(last, null, "token", new Date());
+        }
+
+        assertEquals("token", tokenOf(last));
+        assertEquals(0, writeBehind.stats().getQueueDepth());
+    }
+
+    @Test
+    void enqueue_shouldWriteOnlyOneBatchInline() {
+        LoginWriteBehind writeBehind = writeBehind(true, 2, 5);
+        for (int i = 0; i < 5; i++) {
+            writeBehind.enqueue(insertUser(), null, "token", new Date());
+        }
+
+        assertEquals(1, writeBehind.stats().getFlushes());
+        assertEquals(2, writeBehind.stats().getFlushedRows());
+        assertEquals(3, writeBehind.stats().getQueueDepth(), "the rest is left to the flusher thread");
+    }
+
+    @Test
+    void enqueue_shouldWriteImmediatelyWhenDisabled() {
+        LoginWriteBehind writeBehind = writeBehind(false, 100, 1_000);
+        UUID id = insertUser();
+
+        writeBehind.enqueue(id, null, "new-token", new Date());
+
+        assertEquals("new-token", tokenOf(id));
+    }
+
+    @Test
+    void flush_shouldTellOtherNodesTheEmailsAndSurviveAFailureToDoSo() {
+        List<Invalidation> published = new ArrayList<>();
+        InvalidationBus failingBus = new InvalidationBus() {
+            @Override
+            public void publish(List<Invalidation> invalidations) {
+                published.addAll(invalidations);
+                throw new IllegalStateException("invalidations table unavailable");
+            }
+
+            @Override
+            public void start(Consumer<Invalidation> listener) {
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        LoginWriteBehind writeBehind = new LoginWriteBehind(jdbcTemplate, new DataSourceTransactionManager(database),
+                new UserCacheInvalidator(failingBus), true, 100, 1_000, 60_000);
+        UUID id = insertUser();
+        writeBehind.enqueue(id, "juan@example.com", "new-token", new Date());
+
+        writeBehind.flush();
+
+        assertEquals("new-token", tokenOf(id));
+        assertEquals(0, writeBehind.stats().getQueueDepth(), "the committed batch must not be retried");
+        assertEquals(List.of(Invalidation.userChanged(id, "juan@example.com")), published);
+    }
+
+    @Test
+    void shutdown_shouldFlushPendingLogins() {
+        LoginWriteBehind writeBehind = writeBehind(true, 100, 1_000);
+        writeBehind.start();
+        UUID id = insertUser();
+        writeBehind.enqueue(id, null, "new-token", new Date());
+
+        writeBehind.shutdown();
+
+        assertEquals("new-token", tokenOf(id));
+    }
+}
@@ -0,0 +1,107 @@
+package org.jwttest.persistence;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryDataSourceTest {
+
+    private EmbeddedDatabase database;
+    private ListAppender<ILoggingEvent> appender;
+    private Logger logger;
+
+    // every clock read advances 60 ms, so each statement takes 60 ms
+    private final AtomicLong nanos = new AtomicLong();
+    private long stepNanos = TimeUnit.MILLISECONDS.toNanos(60);
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        new JdbcTemplate(database).execute("create table users (id uuid primary key, token varchar(255))");
+
+        logger = (Logger) LoggerFactory.getLogger(SlowQueryDataSource.class);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+        database.shutdown();
+    }
+
+    private SlowQueryDataSource dataSource(Duration threshold, int samplesPerSecond) {
+        return new SlowQueryDataSource(database, threshold, samplesPerSecond, () -> nanos.addAndGet(stepNanos));
+    }
+
+    @Test
+    void execute_shouldLogSlowStatementWithoutParameters() {
+        // Arrange
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource(Duration.ofMillis(50), 10));
+        UUID id = UUID.randomUUID();
+
+        // Act
+        jdbcTemplate.update("insert into users (id, token) values (?, ?)", id, "secret-token");
+        String token = jdbcTemplate.queryForObject("select token from users where id = ?", String.class, id);
+
+        // Assert
+        assertEquals("secret-token", token);
+        assertEquals(2, appender.list.size());
+        String message = appender.list.get(1).getFormattedMessage();
+        assertEquals("Slow statement (60 ms): select token from users where id = ?", message);
+        appender.list.forEach(event -> assertFalse(event.getFormattedMessage().contains("secret-token")));
+    }
+
+    @Test
+    void execute_shouldNotLogStatementsBelowThreshold() {
+        // Arrange
+        SlowQueryDataSource dataSource = dataSource(Duration.ofMillis(100), 10);
+
+        // Act
+        new JdbcTemplate(dataSource).queryForObject("select count(*) from users", Integer.class);
+
+        // Assert
+        assertTrue(appender.list.isEmpty());
+        assertEquals(0, dataSource.stats().getSlowStatements());
+    }
+
+    @Test
+    void execute_shouldLogSampleAndReportTheRest() {
+        // Arrange
+        SlowQueryDataSource dataSource = dataSource(Duration.ofMillis(50), 2);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Act: five slow statements within the first second, one in a later second
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.queryForObject("select count(*) from users", Integer.class);
+        }
+        nanos.set(TimeUnit.SECONDS.toNanos(5));
+        jdbcTemplate.queryForObject("select count(*) from users", Integer.class);
+
+        // Assert
+        assertEquals(6, dataSource.stats().getSlowStatements());
+        assertEquals(3, dataSource.stats().getLoggedStatements());
+        assertEquals(3, appender.list.size());
+        assertEquals("Slow statement (60 ms, 3 more not logged): select count(*) from users",
+                appender.list.get(2).getFormattedMessage());
+    }
+}
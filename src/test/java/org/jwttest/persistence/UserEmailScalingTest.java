@@ -0,0 +1,137 @@
+package org.jwttest.persistence;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.UserRequest;
+import org.jwttest.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The scaling property behind sign-up, checked in the build: the duplicate probe Hibernate actually issues is
+ * answered from the unique email index, reading the same number of rows with 1k and with 50k stored users.
+ * Latency itself is measured by SignUpScalingBenchmark, up to 1M users.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:email-scaling;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "org.jwttest.persistence.UserEmailScalingTest$LastSelect",
+        "password.hashing.bcrypt.strength=4",
+        "logging.level.org.hibernate.SQL=OFF",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"
+})
+class UserEmailScalingTest {
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void existsByEmail_shouldReadAsManyRowsWithFiftyTimesTheUsers() {
+        seedUpTo(1_000);
+        String probe = probeSql();
+        long small = scanCount(probe);
+
+        seedUpTo(50_000);
+        long large = scanCount(probe);
+
+        assertTrue(explain(probe).toUpperCase(Locale.ROOT).contains("UX_USERS_EMAIL"),
+                () -> "The probe should use the unique email index: " + explain(probe));
+        assertTrue(small > 0, () -> "The plan should report the rows read: " + explain(probe));
+        assertEquals(small, large, "The probe should not read more rows as users are added");
+    }
+
+    @Test
+    void createUser_shouldRejectDuplicateAmongManyUsers() {
+        seedUpTo(50_000);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> userService.createUser(request("SEED-42@example.com")));
+
+        assertEquals("User already exists", e.getMessage());
+        assertNotNull(userService.createUser(request("new-" + UUID.randomUUID() + "@example.com")).getId());
+    }
+
+    private String probeSql() {
+        LastSelect.sql = null;
+        userRepository.existsByEmail("seed-1@example.com");
+        assertNotNull(LastSelect.sql, "The probe should have been captured");
+        return LastSelect.sql;
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("explain analyze " + sql, String.class, probeArguments(sql));
+    }
+
+    private long scanCount(String sql) {
+        Matcher matcher = SCAN_COUNT.matcher(explain(sql));
+        long scanned = 0;
+        while (matcher.find()) {
+            scanned += Long.parseLong(matcher.group(1));
+        }
+        return scanned;
+    }
+
+    // the email, then the row limit Spring Data binds for an exists query
+    private static Object[] probeArguments(String sql) {
+        long parameters = sql.chars().filter(c -> c == '?').count();
+        return parameters == 1 ? new Object[]{"seed-1@example.com"} : new Object[]{"seed-1@example.com", 1};
+    }
+
+    // the context and its database are shared by the tests
+    private void seedUpTo(int users) {
+        int seeded = jdbcTemplate.queryForObject("select count(*) from users where email like 'seed-%'",
+                Integer.class);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = seeded; i < users; i++) {
+            batch.add(new Object[]{UUID.randomUUID(), "Seed User", "seed-" + i + "@example.com", "{noop}x", now, true});
+        }
+        jdbcTemplate.batchUpdate("insert into users (id, name, email, password, created_at, is_active) "
+                + "values (?, ?, ?, ?, ?, ?)", batch);
+    }
+
+    private static UserRequest request(String email) {
+        return UserRequest.builder()
+                .name("Juan Perez")
+                .email(email)
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+    }
+
+    /**
+     * Remembers the last query Hibernate prepared.
+     */
+    public static class LastSelect implements StatementInspector {
+
+        static volatile String sql;
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.trim().toLowerCase(Locale.ROOT).startsWith("select")) {
+                LastSelect.sql = sql;
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.jwttest.persistence;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.Phone;
+import org.jwttest.model.User;
+import org.jwttest.model.UserRequest;
+import org.jwttest.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:second-level-cache;DB_CLOSE_ON_EXIT=FALSE",
+        "password.hashing.bcrypt.strength=4",
+        "logging.level.org.hibernate.SQL=OFF",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=OFF"
+})
+class UserNaturalIdRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private LoginWriteBehind loginWriteBehind;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findByEmail_shouldAnswerRepeatLookupsWithoutSql() {
+        String email = signUp();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        statistics.clear();
+
+        User loaded = userRepository.findByEmail(email).orElseThrow();
+        assertEquals(1, statistics.getPrepareStatementCount(), "a cold lookup is a single fetch join");
+
+        statistics.clear();
+        User cached = userRepository.findByEmail(email).orElseThrow();
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(loaded.getId(), cached.getId());
+        assertEquals(2, cached.getPhones().size());
+        assertEquals(Long.valueOf(1000), cached.getPhones().get(0).getNumber());
+    }
+
+    @Test
+    void findByEmail_shouldNotCacheMisses() {
+        String email = "missing-" + UUID.randomUUID() + "@example.com";
+        assertTrue(userRepository.findByEmail(email).isEmpty());
+
+        String created = signUp(email);
+
+        assertEquals(created, userRepository.findByEmail(email).orElseThrow().getEmail());
+    }
+
+    @Test
+    void loginWriteBehind_shouldReplaceCachedUserOnFlush() {
+        String email = signUp();
+        User cached = userRepository.findByEmail(email).orElseThrow();
+        Date lastLogin = new Date(cached.getLastLogin().getTime() + 60_000);
+
+        loginWriteBehind.enqueue(cached.getId(), cached.getEmail(), "refreshed-token", lastLogin);
+        loginWriteBehind.flush();
+
+        User reloaded = userRepository.findByEmail(email).orElseThrow();
+        assertEquals("refreshed-token", reloaded.getToken());
+        assertEquals(lastLogin.getTime(), reloaded.getLastLogin().getTime());
+        statistics.clear();
+        userRepository.findByEmail(email);
+        assertEquals(0, statistics.getPrepareStatementCount(), "the reloaded user is cached again");
+    }
+
+    @Test
+    void save_shouldStillReportDuplicateEmailByIndexName() {
+        String email = signUp();
+        User duplicate = User.builder()
+                .id(UUID.randomUUID())
+                .email(email)
+                .password("hash")
+                .created(new Date())
+                .isActive(true)
+                .phones(List.of())
+                .build();
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(duplicate));
+
+        assertTrue(String.valueOf(exception.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT)
+                .contains(User.EMAIL_UNIQUE_INDEX));
+    }
+
+    @Test
+    void secondLevelCacheMetrics_shouldCountRegionHits() {
+        String email = signUp();
+        userRepository.findByEmail(email);
+        double hits = meterRegistry.get("cache.gets").tag("cache", "hibernate." + User.CACHE_REGION)
+                .tag("result", "hit").functionCounter().count();
+
+        userRepository.findByEmail(email);
+
+        assertEquals(hits + 1, meterRegistry.get("cache.gets").tag("cache", "hibernate." + User.CACHE_REGION)
+                .tag("result", "hit").functionCounter().count());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "hibernate." + Phone.CACHE_REGION)
+                .tag("result", "hit").functionCounter().count() > 0);
+    }
+
+    private String signUp() {
+        return signUp(UUID.randomUUID() + "@example.com");
+    }
+
+    private String signUp(String email) {
+        UserRequest request = new UserRequest();
+        request.setName("Cache Test");
+        request.setEmail(email);
+        request.setPassword("a2asfGfdfdf4");
+        UserRequest.Phone first = new UserRequest.Phone();
+        first.setNumber(1000);
+        first.setCitycode(1);
+        first.setContrycode("57");
+        UserRequest.Phone second = new UserRequest.Phone();
+        second.setNumber(1001);
+        second.setCitycode(1);
+        second.setContrycode("57");
+        request.setPhones(List.of(first, second));
+        userService.createUser(request);
+        return email;
+    }
+}
@@ -0,0 +1,199 @@
+package org.jwttest.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private FailingChannel channel;
+
+    private WriteAheadLog log() throws IOException {
+        return new WriteAheadLog(directory, "shard-00", 1, InMemoryUserStore.LOG_SUFFIX, false, file -> {
+            channel = new FailingChannel(FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            return channel;
+        });
+    }
+
+    private List<String> replay(long generation) throws IOException {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.replay(WriteAheadLog.file(directory, "shard-00", generation, InMemoryUserStore.LOG_SUFFIX),
+                in -> records.add(in.readUTF()));
+        return records;
+    }
+
+    @Test
+    void append_shouldRemoveARecordThatFailedHalfway() throws IOException {
+        WriteAheadLog log = log();
+        log.append(out -> out.writeUTF("first"));
+        channel.failWrites = true;
+        assertThrows(IOException.class, () -> log.append(out -> out.writeUTF("second")));
+        channel.failWrites = false;
+        log.append(out -> out.writeUTF("third"));
+        log.close();
+
+        assertEquals(List.of("first", "third"), replay(1));
+    }
+
+    @Test
+    void append_shouldRefuseToContinueAfterARecordThatCouldNotBeRemoved() throws IOException {
+        WriteAheadLog log = log();
+        log.append(out -> out.writeUTF("first"));
+        channel.failWrites = true;
+        channel.failTruncate = true;
+        assertThrows(IOException.class, () -> log.append(out -> out.writeUTF("second")));
+        channel.failWrites = false;
+
+        assertThrows(IOException.class, () -> log.append(out -> out.writeUTF("third")));
+        log.roll();
+        log.append(out -> out.writeUTF("fourth"));
+        log.close();
+
+        assertEquals(List.of("first"), replay(1), "The torn record is the last one of its file");
+        assertEquals(List.of("fourth"), replay(2));
+    }
+
+    @Test
+    void replay_shouldFailOnACorruptRecordBeforeTheEnd() throws IOException {
+        WriteAheadLog log = log();
+        log.append(out -> out.writeUTF("first"));
+        log.append(out -> out.writeUTF("second"));
+        log.append(out -> out.writeUTF("third"));
+        log.close();
+        try (FileChannel file = FileChannel.open(
+                WriteAheadLog.file(directory, "shard-00", 1, InMemoryUserStore.LOG_SUFFIX), StandardOpenOption.WRITE)) {
+            // the first byte of the second record's text
+            file.write(ByteBuffer.wrap(new byte[]{'X'}), 2 * Integer.BYTES + 7 + Integer.BYTES + 2);
+        }
+
+        assertThrows(IOException.class, () -> replay(1));
+    }
+
+    /**
+     * Writes half of what it is given before failing, like a disk that filled up.
+     */
+    private static final class FailingChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        boolean failWrites;
+        boolean failTruncate;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!failWrites) {
+                return delegate.write(src);
+            }
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+            src.position(half.limit());
+            delegate.write(half);
+            throw new IOException("No space left on device");
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Input/output error");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.jwttest.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.Invalidation;
+import org.jwttest.model.UserStatus;
+import org.jwttest.persistence.InvalidationBus;
+import org.jwttest.persistence.UserCacheInvalidator;
+import org.jwttest.util.RevocationList;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ClusterInvalidationTest {
+
+    @Mock
+    private InvalidationBus invalidationBus;
+
+    @Mock
+    private LoginResponseCache loginResponseCache;
+
+    @Mock
+    private UserCacheInvalidator userCacheInvalidator;
+
+    private UserStatusCache userStatusCache;
+    private RevocationList revocationList;
+    private ClusterInvalidation clusterInvalidation;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userStatusCache = new UserStatusCache(true, 100);
+        revocationList = new RevocationList();
+        clusterInvalidation = new ClusterInvalidation(invalidationBus, userStatusCache, loginResponseCache,
+                userCacheInvalidator, revocationList);
+    }
+
+    @Test
+    void apply_shouldDropTheChangedUserFromEveryCache() {
+        UUID userId = UUID.randomUUID();
+        userStatusCache.put(new UserStatus(userId, "test@example.com", true, new Date()));
+
+        clusterInvalidation.apply(Invalidation.userChanged(userId, "test@example.com"));
+
+        assertTrue(userStatusCache.get("test@example.com").isEmpty());
+        verify(loginResponseCache).invalidate("test@example.com");
+        verify(userCacheInvalidator).evict(userId);
+        assertEquals(1, clusterInvalidation.getReceived());
+    }
+
+    @Test
+    void apply_shouldRevokeTheToken() {
+        clusterInvalidation.apply(Invalidation.tokenRevoked("jti", new Date(System.currentTimeMillis() + 60_000)));
+
+        assertTrue(revocationList.isRevoked("jti"));
+    }
+
+    @Test
+    void tokenRevoked_shouldNotFailWhenThePublicationDoes() {
+        doThrow(new IllegalStateException("database down")).when(invalidationBus).publish(any(Invalidation.class));
+
+        assertDoesNotThrow(() -> clusterInvalidation.tokenRevoked("jti", new Date()));
+    }
+}
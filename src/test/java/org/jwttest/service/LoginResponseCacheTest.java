@@ -0,0 +1,72 @@
+package org.jwttest.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jwttest.model.LoginResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginResponseCacheTest {
+
+    private static final String EMAIL = "test@example.com";
+
+    private final LoginResponseCache cache = new LoginResponseCache(new ObjectMapper(), 2);
+
+    private LoginResponseCache.Entry login(String email, String token) {
+        return cache.put(email, LoginResponse.builder().email(email).token(token).isActive(true).build());
+    }
+
+    @Test
+    void put_shouldSerializeWithoutPassword() {
+        LoginResponseCache.Entry entry = login(EMAIL, "token-1");
+
+        String json = new String(entry.getBody(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"token\":\"token-1\""));
+        assertFalse(json.contains("password"));
+        assertTrue(entry.getETag().startsWith("\"") && entry.getETag().endsWith("\""));
+    }
+
+    @Test
+    void find_shouldReturnTheLatestResponseOfTheSameTokenOnly() {
+        login(EMAIL, "token-1");
+        LoginResponseCache.Entry second = login(EMAIL, "token-2");
+
+        assertNull(cache.find(EMAIL, "token-1"), "a newer response should replace the old one");
+        assertSame(second, cache.find(EMAIL, "token-2"));
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    void matches_shouldRequireTheConcreteETag() {
+        LoginResponseCache.Entry entry = login(EMAIL, "token-1");
+
+        assertTrue(entry.matches(entry.getETag()));
+        assertTrue(entry.matches("\"other\", W/" + entry.getETag()));
+        assertFalse(entry.matches("*"));
+        assertFalse(entry.matches("\"other\""));
+        assertFalse(entry.matches(null));
+    }
+
+    @Test
+    void invalidate_shouldForceFullResponse() {
+        login(EMAIL, "token-1");
+
+        cache.invalidate(EMAIL);
+
+        assertNull(cache.find(EMAIL, "token-1"));
+    }
+
+    @Test
+    void put_shouldEvictBeyondMaxUsers() {
+        for (int i = 0; i < 100; i++) {
+            login("user-" + i + "@example.com", "token-" + i);
+        }
+        LoginResponseCache.Entry entry = login("c@example.com", "token-c");
+
+        assertSame(entry, cache.find("c@example.com", "token-c"), "new users are still cached");
+        assertEquals(2, cache.size());
+    }
+}
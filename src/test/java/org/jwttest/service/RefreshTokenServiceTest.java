@@ -0,0 +1,73 @@
+package org.jwttest.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.exception.NotFoundException;
+import org.jwttest.exception.UnauthorizedException;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.User;
+import org.jwttest.persistence.RefreshTokenStore;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenStore refreshTokenStore;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        refreshTokenService = new RefreshTokenService(refreshTokenStore, Duration.ofDays(14), Duration.ofHours(1));
+    }
+
+    @Test
+    void rotate_shouldReplaceTokenWithOneOfItsFamily() {
+        RefreshToken current = stored(true);
+        when(refreshTokenStore.markUsed(current.getTokenHash())).thenReturn(1);
+
+        RefreshToken next = refreshTokenService.rotate(current.getValue());
+
+        assertEquals(current.getFamilyId(), next.getFamilyId());
+        assertSame(current.getUser(), next.getUser());
+        verify(refreshTokenStore).save(next);
+    }
+
+    @Test
+    void rotate_shouldLeaveTokenOfInactiveUserUnspent() {
+        RefreshToken current = stored(false);
+
+        assertThrows(NotFoundException.class, () -> refreshTokenService.rotate(current.getValue()));
+
+        verify(refreshTokenStore, never()).markUsed(anyString());
+        verify(refreshTokenStore, never()).save(any());
+    }
+
+    @Test
+    void rotate_shouldDeleteFamilyWhenTokenIsPresentedAgain() {
+        RefreshToken current = stored(true);
+        when(refreshTokenStore.markUsed(current.getTokenHash())).thenReturn(0);
+
+        assertThrows(UnauthorizedException.class, () -> refreshTokenService.rotate(current.getValue()));
+
+        verify(refreshTokenStore).deleteFamily(current.getFamilyId());
+        verify(refreshTokenStore, never()).save(any());
+    }
+
+    private RefreshToken stored(boolean active) {
+        User user = User.builder().id(UUID.randomUUID()).email("test@example.com").isActive(active).build();
+        RefreshToken token = refreshTokenService.create(user);
+        when(refreshTokenStore.findWithUser(token.getTokenHash())).thenReturn(Optional.of(token));
+        return token;
+    }
+}
@@ -0,0 +1,121 @@
+package org.jwttest.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.RevokedToken;
+import org.jwttest.persistence.RevokedTokenRepository;
+import org.jwttest.util.JwtUtil;
+import org.jwttest.util.RevocationList;
+import org.jwttest.util.SigningKeyRing;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private ClusterInvalidation clusterInvalidation;
+
+    private final SigningKeyRing keyRing = new SigningKeyRing();
+    private RevocationList revocationList;
+    private JwtUtil jwtUtil;
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        revocationList = new RevocationList();
+        jwtUtil = JwtUtil.builder()
+                .keyRing(keyRing)
+                .revocations(revocationList)
+                .cache(100, Duration.ofMinutes(1))
+                .expiration(Duration.ofHours(1))
+                .build();
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, revocationList, jwtUtil,
+                clusterInvalidation, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void revokeToken_shouldRejectTokenAndStoreIdUntilExpiry() {
+        String token = jwtUtil.generateToken("test@example.com");
+        String jti = jwtUtil.getSignedClaims(token).getId();
+
+        tokenRevocationService.revokeToken(token);
+
+        assertFalse(jwtUtil.isTokenValid(token));
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        assertEquals(jti, saved.getValue().getId());
+        assertEquals(jwtUtil.getSignedClaims(token).getExpiration(), saved.getValue().getExpiresAt());
+        verify(clusterInvalidation).tokenRevoked(jti, saved.getValue().getExpiresAt());
+    }
+
+    @Test
+    void revokeToken_shouldIgnoreExpiredToken() {
+        long now = System.currentTimeMillis() / 1000;
+        String expired = keyRing.sign("test@example.com", "expired", now - 120, now - 60);
+
+        tokenRevocationService.revokeToken(expired);
+
+        assertEquals(0, revocationList.size());
+        verify(revokedTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void revokeToken_shouldRejectForeignToken() {
+        String foreign = JwtUtil.builder()
+                .keyRing(new SigningKeyRing(SigningKeyRing.HS256, "another-test-secret-".repeat(3), "", "",
+                        Duration.ofDays(1), Duration.ofDays(7), Duration.ofHours(1)))
+                .build()
+                .generateToken("test@example.com");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> tokenRevocationService.revokeToken(foreign));
+
+        assertEquals("Invalid token", exception.getMessage());
+        verify(revokedTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void revokeId_shouldKeepIdForTheLongestTokenLifetime() {
+        String token = jwtUtil.generateToken("test@example.com");
+        String jti = jwtUtil.getSignedClaims(token).getId();
+        long before = System.currentTimeMillis();
+
+        tokenRevocationService.revokeId(jti);
+
+        assertFalse(jwtUtil.isTokenValid(token));
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        assertTrue(saved.getValue().getExpiresAt().getTime() >= before + Duration.ofHours(1).toMillis());
+    }
+
+    @Test
+    void revokeId_shouldRejectBlankId() {
+        assertThrows(IllegalArgumentException.class, () -> tokenRevocationService.revokeId(" "));
+    }
+
+    @Test
+    void start_shouldReloadLiveRevocations() {
+        String token = jwtUtil.generateToken("test@example.com");
+        String jti = jwtUtil.getSignedClaims(token).getId();
+        when(revokedTokenRepository.findByExpiresAtAfter(any(Date.class)))
+                .thenReturn(List.of(new RevokedToken(jti, new Date(System.currentTimeMillis() + 60_000))));
+
+        tokenRevocationService.start();
+        tokenRevocationService.shutdown();
+
+        assertFalse(jwtUtil.isTokenValid(token));
+    }
+}
@@ -0,0 +1,41 @@
+package org.jwttest.service;
+
+import org.jwttest.model.UserStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStatusCacheTest {
+
+    private final UserStatusCache cache = new UserStatusCache(true, 2);
+
+    @Test
+    void put_shouldEvictBeyondMaxUsers() {
+        for (int i = 0; i < 100; i++) {
+            cache.put(status("user-" + i + "@example.com"));
+        }
+        cache.put(status("c@example.com"));
+
+        assertTrue(cache.get("c@example.com").isPresent(), "new users are still cached");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void recordLogin_shouldOnlyUpdateCachedUsers() {
+        Date lastLogin = new Date();
+        cache.put(status("a@example.com"));
+
+        cache.recordLogin("a@example.com", lastLogin);
+        cache.recordLogin("b@example.com", lastLogin);
+
+        assertEquals(lastLogin, cache.get("a@example.com").orElseThrow().getLastLogin());
+        assertFalse(cache.get("b@example.com").isPresent());
+    }
+
+    private static UserStatus status(String email) {
+        return new UserStatus(UUID.randomUUID(), email, true, null);
+    }
+}
@@ -1,23 +1,50 @@
 package org.jwttest.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jwttest.exception.NotFoundException;
 import org.jwttest.exception.UnauthorizedException;
+import org.jwttest.model.BulkSignUpResult;
+import org.jwttest.model.LoginResponse;
+import org.jwttest.model.Phone;
+import org.jwttest.model.RefreshToken;
+import org.jwttest.model.TokenResponse;
 import org.jwttest.model.User;
 import org.jwttest.model.UserRequest;
 import org.jwttest.model.UserResponse;
+import org.jwttest.model.UserStatus;
+import org.jwttest.persistence.JpaUserStore;
+import org.jwttest.persistence.LoginWriteBehind;
+import org.jwttest.persistence.UserBatchWriter;
 import org.jwttest.persistence.UserRepository;
+import org.jwttest.service.ClusterInvalidation;
+import org.jwttest.service.LoginResponseCache;
+import org.jwttest.service.RefreshTokenService;
+import org.jwttest.service.UserStatusCache;
+import org.jwttest.util.Instrumentation;
 import org.jwttest.util.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -33,12 +60,49 @@ class UserServiceImplTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
-    @InjectMocks
+    @Mock
+    private UserStatusCache userStatusCache;
+
+    @Mock
+    private LoginWriteBehind loginWriteBehind;
+
+    @Mock
+    private LoginResponseCache loginResponseCache;
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private ClusterInvalidation clusterInvalidation;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private Instrumentation instrumentation = Instrumentation.noop();
+
+    @Captor
+    private ArgumentCaptor<List<User>> insertedUsers;
+
+    @Captor
+    private ArgumentCaptor<List<RefreshToken>> insertedRefreshTokens;
+
     private UserServiceImpl userService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        userService = new UserServiceImpl(new JpaUserStore(userRepository, userBatchWriter, loginWriteBehind),
+                transactionManager, jwtUtil, passwordEncoder, userStatusCache, loginResponseCache,
+                refreshTokenService, clusterInvalidation, instrumentation);
+        when(refreshTokenService.issue(any(User.class))).thenReturn("refresh-token");
+        when(refreshTokenService.create(any(User.class))).thenAnswer(invocation -> RefreshToken.builder()
+                .user(invocation.getArgument(0))
+                .value("refresh-token")
+                .build());
     }
 
     @Test
@@ -57,7 +121,7 @@ class UserServiceImplTest {
 
         when(jwtUtil.generateToken(userRequest.getEmail())).thenReturn("test-token");
         when(passwordEncoder.encode(userRequest.getPassword())).thenReturn("encoded-password");
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         UserResponse response = userService.createUser(userRequest);
@@ -65,7 +129,37 @@ class UserServiceImplTest {
         // Assert
         assertNotNull(response);
         assertEquals("test-token", response.getToken());
-        verify(userRepository, times(1)).save(any(User.class));
+        assertEquals("refresh-token", response.getRefreshToken());
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(refreshTokenService, times(1)).issue(argThat(user -> "test@example.com".equals(user.getEmail())));
+        verify(loginResponseCache, times(1)).invalidate("test@example.com");
+    }
+
+    @Test
+    void testCreateUser_HashesBeforeTheTransaction() {
+        // Arrange
+        UserRequest userRequest = UserRequest.builder()
+                .email("test@example.com")
+                .name("Test User")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        when(jwtUtil.generateToken(userRequest.getEmail())).thenReturn("test-token");
+        when(passwordEncoder.encode(userRequest.getPassword())).thenReturn("encoded-password");
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        userService.createUser(userRequest);
+
+        // Assert
+        InOrder inOrder = inOrder(userRepository, passwordEncoder, transactionManager, refreshTokenService);
+        inOrder.verify(userRepository).existsByEmail("test@example.com");
+        inOrder.verify(passwordEncoder).encode("a2asfGfdfdf4");
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(userRepository).saveAndFlush(any(User.class));
+        inOrder.verify(refreshTokenService).issue(any(User.class));
+        inOrder.verify(transactionManager).commit(any());
     }
 
     @Test
@@ -80,10 +174,71 @@ class UserServiceImplTest {
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> userService.createUser(userRequest));
-        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).saveAndFlush(any(User.class));
     }
 
 
+    @Test
+    void testCreateUser_DuplicateEmail() {
+        // Arrange
+        UserRequest userRequest = UserRequest.builder()
+                .email("Test@Example.com")
+                .name("Test User")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(true);
+
+        // Act & Assert
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> userService.createUser(userRequest));
+        assertEquals("User already exists", ex.getMessage());
+        verify(passwordEncoder, never()).encode(anyString());
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void testCreateUser_ConcurrentDuplicateEmail() {
+        // Arrange
+        UserRequest userRequest = UserRequest.builder()
+                .email("test@example.com")
+                .name("Test User")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(false);
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate",
+                new RuntimeException("Unique index or primary key violation: \"PUBLIC.UX_USERS_EMAIL_INDEX_4\"")));
+
+        // Act & Assert
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> userService.createUser(userRequest));
+        assertEquals("User already exists", ex.getMessage());
+        verify(refreshTokenService, never()).issue(any(User.class));
+    }
+
+    @Test
+    void testCreateUser_NormalizesEmail() {
+        // Arrange
+        UserRequest userRequest = UserRequest.builder()
+                .email("Test@Example.COM")
+                .name("Test User")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        userService.createUser(userRequest);
+
+        // Assert
+        verify(userRepository, times(1)).saveAndFlush(argThat(user -> "test@example.com".equals(user.getEmail())));
+        verify(jwtUtil, times(1)).generateToken("test@example.com");
+    }
+
     @Test
     void testGetUserByToken_Success() {
         // Arrange
@@ -100,19 +255,66 @@ class UserServiceImplTest {
         when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
         when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtUtil.generateToken(email)).thenReturn("new-token");
-        when(userRepository.save(any(User.class))).thenReturn(user);
 
         // Act
         User result = userService.getUserByToken(token);
 
         // Assert
-        assertNotNull(result);
-        assertEquals("new-token", result.getToken());
+        assertSame(user, result);
         verify(userRepository, times(1)).findByEmail(email);
+        verify(userRepository, never()).save(any(User.class));
+        verify(jwtUtil, never()).generateToken(anyString());
+        verifyNoInteractions(loginWriteBehind);
     }
 
 
+    @Test
+    void testGetUserByToken_CompactTokenResolvesUserId() {
+        // Arrange
+        String email = "test@example.com";
+        UUID id = UUID.randomUUID();
+        User user = User.builder().email(email).id(id).isActive(true).build();
+        String subject = Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(subject);
+        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+        // Act
+        User result = userService.getUserByToken("Bearer valid-token");
+
+        // Assert
+        assertSame(user, result);
+        verify(userRepository, times(1)).findById(id);
+    }
+
+    @Test
+    void testCreateUser_CompactTokenCarriesUserId() {
+        // Arrange
+        UserRequest userRequest = UserRequest.builder()
+                .email("test@example.com")
+                .name("Test User")
+                .password("a2asfGfdfdf4")
+                .phones(Collections.emptyList())
+                .build();
+
+        when(jwtUtil.isCompact()).thenReturn(true);
+        when(jwtUtil.generateToken(anyString())).thenReturn("compact-token");
+        when(passwordEncoder.encode(userRequest.getPassword())).thenReturn("encoded-password");
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        UserResponse response = userService.createUser(userRequest);
+
+        // Assert
+        verify(jwtUtil).generateToken(response.getId().toString());
+        assertEquals("compact-token", response.getToken());
+    }
+
     @Test
     void testGetUserByToken_InvalidToken() {
         // Arrange
@@ -154,17 +356,15 @@ class UserServiceImplTest {
 
         when(jwtUtil.extractSubject("test-token")).thenReturn(email);
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(jwtUtil.generateToken(email)).thenReturn("new-token");
-        when(userRepository.save(any(User.class))).thenReturn(user);
 
         // Act
         User result = userService.getUser(token);
 
         // Assert
-        assertNotNull(result);
-        assertEquals("new-token", result.getToken());
+        assertSame(user, result);
+        assertEquals("old-token", result.getToken());
         verify(userRepository, times(1)).findByEmail(email);
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -205,6 +405,29 @@ class UserServiceImplTest {
         assertNotNull(result);
         assertEquals("new-token", result.getToken());
         verify(userRepository, times(1)).save(user);
+        verify(clusterInvalidation, times(1)).userChanged(user.getId(), "test@example.com");
+    }
+
+    @Test
+    void testUpdateToken_WriteBehind() {
+        // Arrange
+        User user = User.builder()
+                .email("test@example.com")
+                .id(UUID.randomUUID())
+                .token("old-token")
+                .build();
+
+        when(loginWriteBehind.isEnabled()).thenReturn(true);
+        when(jwtUtil.generateToken(user.getEmail())).thenReturn("new-token");
+
+        // Act
+        User result = userService.updateToken(user);
+
+        // Assert
+        assertEquals("new-token", result.getToken());
+        verify(loginWriteBehind, times(1))
+                .enqueue(user.getId(), user.getEmail(), "new-token", result.getLastLogin());
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -241,4 +464,366 @@ class UserServiceImplTest {
         assertFalse(result.isPresent());
         verify(userRepository, times(1)).findByEmail(email);
     }
+
+    @Test
+    void testGetUserByToken_StatelessHitSkipsRepository() {
+        // Arrange
+        String email = "test@example.com";
+        UUID id = UUID.randomUUID();
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(userStatusCache.isEnabled()).thenReturn(true);
+        when(userStatusCache.get(email)).thenReturn(Optional.of(new UserStatus(id, email, true, new Date())));
+
+        // Act
+        User result = userService.getUserByToken("Bearer valid-token");
+
+        // Assert
+        assertEquals(id, result.getId());
+        assertEquals("valid-token", result.getToken());
+        verify(jwtUtil, never()).generateToken(anyString());
+        verifyNoInteractions(userRepository, loginWriteBehind);
+    }
+
+    @Test
+    void testGetUserByToken_StatelessInactiveUser() {
+        // Arrange
+        String email = "test@example.com";
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(userStatusCache.isEnabled()).thenReturn(true);
+        when(userStatusCache.get(email))
+                .thenReturn(Optional.of(new UserStatus(UUID.randomUUID(), email, false, new Date())));
+
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> userService.getUserByToken("Bearer valid-token"));
+        verifyNoInteractions(userRepository, loginWriteBehind);
+    }
+
+    @Test
+    void testGetUserByToken_StatelessMissLoadsStatusOnly() {
+        // Arrange
+        String email = "test@example.com";
+        UserStatus status = new UserStatus(UUID.randomUUID(), email, true, new Date());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(userStatusCache.isEnabled()).thenReturn(true);
+        when(userStatusCache.get(email)).thenReturn(Optional.empty());
+        when(userRepository.findStatusByEmail(email)).thenReturn(Optional.of(status));
+
+        // Act
+        User result = userService.getUserByToken("Bearer valid-token");
+
+        // Assert
+        assertEquals(status.getId(), result.getId());
+        verify(userStatusCache, times(1)).put(status);
+        verify(userRepository, never()).findByEmail(anyString());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testGetUserByToken_StatelessUnknownUser() {
+        // Arrange
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn("nonexistent@example.com");
+        when(userStatusCache.isEnabled()).thenReturn(true);
+        when(userStatusCache.get("nonexistent@example.com")).thenReturn(Optional.empty());
+        when(userRepository.findStatusByEmail("nonexistent@example.com")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> userService.getUserByToken("Bearer valid-token"));
+        verify(userStatusCache, never()).put(any(UserStatus.class));
+    }
+
+    @Test
+    void testLogin_CachesResponseWithoutPassword() {
+        // Arrange
+        String email = "test@example.com";
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .email(email)
+                .name("Test User")
+                .password("{bcrypt}hash")
+                .isActive(true)
+                .build();
+        user.setPhones(List.of(Phone.builder().id(7L).number(1234567L).citycode(1).countrycode("57").user(user).build()));
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put(email, LoginResponse.builder().email(email).build());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(loginResponseCache.put(eq(email), any(LoginResponse.class))).thenReturn(entry);
+
+        // Act
+        LoginResponseCache.Entry result = userService.login("Bearer valid-token");
+
+        // Assert
+        ArgumentCaptor<LoginResponse> response = ArgumentCaptor.forClass(LoginResponse.class);
+        verify(loginResponseCache).put(eq(email), response.capture());
+        assertSame(entry, result);
+        assertEquals("valid-token", response.getValue().getToken());
+        assertEquals(1, response.getValue().getPhones().size());
+        assertEquals("57", response.getValue().getPhones().get(0).getCountrycode());
+    }
+
+    @Test
+    void testFindNotModifiedLogin_OnlyChecksStatus() {
+        // Arrange
+        String email = "test@example.com";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put(email, LoginResponse.builder().email(email).token("valid-token").build());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn("Test@Example.com");
+        when(loginResponseCache.find(email, "valid-token")).thenReturn(entry);
+        when(userRepository.findStatusByEmail(email))
+                .thenReturn(Optional.of(new UserStatus(UUID.randomUUID(), email, true, new Date())));
+
+        // Act
+        LoginResponseCache.Entry result = userService.findNotModifiedLogin("Bearer valid-token", entry.getETag());
+
+        // Assert
+        assertSame(entry, result);
+        verify(jwtUtil, never()).generateToken(anyString());
+        verify(userRepository).findStatusByEmail(email);
+        verifyNoMoreInteractions(userRepository);
+        verifyNoInteractions(loginWriteBehind);
+    }
+
+    @Test
+    void testFindNotModifiedLogin_RequiresTheConcreteETag() {
+        // Arrange
+        String email = "test@example.com";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put(email, LoginResponse.builder().email(email).token("valid-token").build());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(loginResponseCache.find(email, "valid-token")).thenReturn(entry);
+        when(userRepository.findStatusByEmail(email))
+                .thenReturn(Optional.of(new UserStatus(UUID.randomUUID(), email, true, new Date())));
+
+        // Act & Assert
+        assertNull(userService.findNotModifiedLogin("Bearer valid-token", "*"));
+        assertNull(userService.findNotModifiedLogin("Bearer valid-token", "\"stale\""));
+    }
+
+    @Test
+    void testLogin_WritesTheCachedResponseOfTheSameToken() {
+        // Arrange
+        String email = "test@example.com";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put(email, LoginResponse.builder().email(email).token("valid-token").build());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(loginResponseCache.find(email, "valid-token")).thenReturn(entry);
+        when(userRepository.findStatusByEmail(email))
+                .thenReturn(Optional.of(new UserStatus(UUID.randomUUID(), email, true, new Date())));
+
+        // Act
+        LoginResponseCache.Entry result = userService.login("Bearer valid-token");
+
+        // Assert
+        assertSame(entry, result);
+        verify(loginResponseCache, never()).put(anyString(), any(LoginResponse.class));
+        verify(userRepository).findStatusByEmail(email);
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void testFindNotModifiedLogin_InactiveUser() {
+        // Arrange
+        String email = "test@example.com";
+        LoginResponseCache.Entry entry = new LoginResponseCache(new ObjectMapper(), 10)
+                .put(email, LoginResponse.builder().email(email).token("valid-token").build());
+
+        when(jwtUtil.isTokenValid("valid-token")).thenReturn(true);
+        when(jwtUtil.extractSubject("valid-token")).thenReturn(email);
+        when(loginResponseCache.find(email, "valid-token")).thenReturn(entry);
+        when(userStatusCache.isEnabled()).thenReturn(true);
+        when(userStatusCache.get(email))
+                .thenReturn(Optional.of(new UserStatus(UUID.randomUUID(), email, false, new Date())));
+
+        // Act & Assert
+        assertThrows(NotFoundException.class,
+                () -> userService.findNotModifiedLogin("Bearer valid-token", entry.getETag()));
+        verify(loginResponseCache).invalidate(email);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testFindNotModifiedLogin_InvalidToken() {
+        // Arrange
+        when(jwtUtil.isTokenValid("invalid-token")).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class,
+                () -> userService.findNotModifiedLogin("Bearer invalid-token", "\"etag\""));
+        verifyNoInteractions(loginResponseCache);
+    }
+
+    @Test
+    void testCreateUsers_AppliesCreateUserChecksPerRecord() {
+        // Arrange
+        List<UserRequest> requests = List.of(
+                bulkRequest("new@example.com", "a2asfGfdfdf4"),
+                bulkRequest("not-an-email", "a2asfGfdfdf4"),
+                bulkRequest("taken@example.com", "a2asfGfdfdf4"),
+                bulkRequest("weak@example.com", "password"),
+                bulkRequest("NEW@example.com", "a2asfGfdfdf4"));
+        List<List<BulkSignUpResult>> chunks = new ArrayList<>();
+
+        when(userBatchWriter.getChunkSize()).thenReturn(500);
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of("taken@example.com"));
+        when(passwordEncoder.encode("a2asfGfdfdf4")).thenReturn("encoded-password");
+        when(jwtUtil.generateToken("new@example.com")).thenReturn("new-token");
+
+        // Act
+        userService.createUsers(requests.iterator(), chunks::add);
+
+        // Assert
+        assertEquals(1, chunks.size());
+        List<BulkSignUpResult> results = chunks.get(0);
+        assertEquals(List.of(201, 400, 400, 400, 400),
+                results.stream().map(BulkSignUpResult::getCode).collect(Collectors.toList()));
+        assertEquals("new-token", results.get(0).getUser().getToken());
+        assertEquals("refresh-token", results.get(0).getUser().getRefreshToken());
+        assertEquals("Wrong email format", results.get(1).getDetail());
+        assertEquals("User already exists", results.get(2).getDetail());
+        assertEquals("Wrong password format", results.get(3).getDetail());
+        assertEquals("User already exists", results.get(4).getDetail());
+        assertEquals(4, results.get(4).getIndex());
+
+        verify(userBatchWriter).insertAll(insertedUsers.capture(), insertedRefreshTokens.capture());
+        assertEquals(1, insertedUsers.getValue().size());
+        assertSame(insertedUsers.getValue().get(0), insertedRefreshTokens.getValue().get(0).getUser());
+        assertEquals("encoded-password", insertedUsers.getValue().get(0).getPassword());
+        verify(passwordEncoder, times(1)).encode(anyString());
+        verify(userRepository, never()).existsByEmail(anyString());
+        verify(loginResponseCache).invalidate("new@example.com");
+    }
+
+    @Test
+    void testCreateUsers_HandsResultsOverChunkByChunk() {
+        // Arrange
+        List<UserRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(bulkRequest("user" + i + "@example.com", "a2asfGfdfdf4"));
+        }
+        List<List<BulkSignUpResult>> chunks = new ArrayList<>();
+
+        when(userBatchWriter.getChunkSize()).thenReturn(2);
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        when(passwordEncoder.encode("a2asfGfdfdf4")).thenReturn("encoded-password");
+
+        // Act
+        Iterator<UserRequest> iterator = requests.iterator();
+        userService.createUsers(iterator, chunks::add);
+
+        // Assert
+        assertEquals(List.of(2, 2, 1), chunks.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(4, chunks.get(2).get(0).getIndex());
+        verify(userBatchWriter, times(3)).insertAll(anyList(), anyList());
+        verify(userRepository, times(3)).findExistingEmails(anyCollection());
+    }
+
+    @Test
+    void testCreateUsers_ConcurrentDuplicateFailsOnlyItsRecord() {
+        // Arrange
+        List<UserRequest> requests = List.of(
+                bulkRequest("first@example.com", "a2asfGfdfdf4"),
+                bulkRequest("raced@example.com", "a2asfGfdfdf4"));
+        List<List<BulkSignUpResult>> chunks = new ArrayList<>();
+        DataIntegrityViolationException duplicate = new DataIntegrityViolationException("duplicate",
+                new RuntimeException("Unique index or primary key violation: \"PUBLIC.UX_USERS_EMAIL_INDEX_4\""));
+
+        when(userBatchWriter.getChunkSize()).thenReturn(500);
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        when(passwordEncoder.encode("a2asfGfdfdf4")).thenReturn("encoded-password");
+        doAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            if (users.stream().anyMatch(user -> user.getEmail().equals("raced@example.com"))) {
+                throw duplicate;
+            }
+            return null;
+        }).when(userBatchWriter).insertAll(anyList(), anyList());
+
+        // Act
+        userService.createUsers(requests.iterator(), chunks::add);
+
+        // Assert
+        List<BulkSignUpResult> results = chunks.get(0);
+        assertEquals(201, results.get(0).getCode());
+        assertEquals(400, results.get(1).getCode());
+        assertEquals("User already exists", results.get(1).getDetail());
+        // the chunk, then each record on its own
+        verify(userBatchWriter, times(3)).insertAll(anyList(), anyList());
+    }
+
+    @Test
+    void testRefresh_IssuesAccessTokenAndRecordsLogin() {
+        // Arrange
+        User user = User.builder()
+                .email("test@example.com")
+                .id(UUID.randomUUID())
+                .isActive(true)
+                .build();
+        RefreshToken rotated = RefreshToken.builder().user(user).value("next-refresh-token").build();
+
+        when(refreshTokenService.rotate("refresh-token")).thenReturn(rotated);
+        when(jwtUtil.generateToken("test@example.com")).thenReturn("new-token");
+        when(jwtUtil.getExpiration()).thenReturn(Duration.ofMinutes(15));
+        when(loginWriteBehind.isEnabled()).thenReturn(true);
+
+        // Act
+        TokenResponse response = userService.refresh("refresh-token");
+
+        // Assert
+        assertEquals("new-token", response.getToken());
+        assertEquals("next-refresh-token", response.getRefreshToken());
+        assertEquals(900, response.getExpiresIn());
+        verify(loginWriteBehind, times(1))
+                .enqueue(eq(user.getId()), eq(user.getEmail()), eq("new-token"), any(Date.class));
+        verify(loginResponseCache, times(1)).invalidate("test@example.com");
+    }
+
+    @Test
+    void testRefresh_InactiveUser() {
+        // Arrange
+        when(refreshTokenService.rotate("refresh-token"))
+                .thenThrow(new NotFoundException("User not found or inactive"));
+
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> userService.refresh("refresh-token"));
+        verify(jwtUtil, never()).generateToken(anyString());
+        verifyNoInteractions(loginWriteBehind);
+    }
+
+    @Test
+    void testRefresh_InvalidRefreshToken() {
+        // Arrange
+        when(refreshTokenService.rotate("unknown")).thenThrow(new UnauthorizedException("Invalid refresh token"));
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> userService.refresh("unknown"));
+        verifyNoInteractions(loginWriteBehind);
+    }
+
+    private static UserRequest bulkRequest(String email, String password) {
+        return UserRequest.builder()
+                .email(email)
+                .name("Bulk User")
+                .password(password)
+                .phones(Collections.singletonList(UserRequest.Phone.builder()
+                        .number(123456789L)
+                        .citycode(1)
+                        .contrycode("44")
+                        .build()))
+                .build();
+    }
 }
@@ -0,0 +1,97 @@
+package org.jwttest.util;
+
+import org.jwttest.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        encoder.shutdown();
+    }
+
+    @Test
+    void encode_shouldDelegateOnWorkerThread() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode("secret")).thenAnswer(invocation -> Thread.currentThread().getName());
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1_000);
+
+        assertTrue(encoder.encode("secret").startsWith("password-hasher-"));
+    }
+
+    @Test
+    void encode_shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(blockingEncoder(started), 1, 1, 10_000);
+
+        callers.submit(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> encoder.encode("queued"));
+        while (encoder.getQueueSize() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> encoder.encode("rejected"));
+        assertEquals(1, encoder.getRejectedCount());
+    }
+
+    @Test
+    void encode_shouldGiveUpAfterTimeout() throws Exception {
+        encoder = new BoundedPasswordEncoder(blockingEncoder(new CountDownLatch(1)), 1, 1, 50);
+
+        assertThrows(ServiceUnavailableException.class, () -> encoder.encode("slow"));
+    }
+
+    @Test
+    void encodeAll_shouldWaitForSlotsInsteadOfRejecting() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(anyString())).thenAnswer(invocation -> "hash-" + invocation.getArgument(0));
+        encoder = new BoundedPasswordEncoder(delegate, 2, 1, 5_000);
+        List<String> passwords = IntStream.range(0, 100).mapToObj(String::valueOf).collect(Collectors.toList());
+
+        List<String> hashes = encoder.encodeAll(passwords);
+
+        assertEquals(passwords.stream().map(password -> "hash-" + password).collect(Collectors.toList()), hashes);
+        assertEquals(0, encoder.getRejectedCount());
+    }
+
+    @Test
+    void encodeAll_shouldLeaveUnhashedWhatThePoolCannotTakeInTime() {
+        encoder = new BoundedPasswordEncoder(blockingEncoder(new CountDownLatch(1)), 1, 1, 50);
+
+        List<String> hashes = encoder.encodeAll(List.of("slow", "no-slot", "no-slot-either"));
+
+        assertEquals(Arrays.asList(null, null, null), hashes);
+        assertEquals(3, encoder.getRejectedCount());
+    }
+
+    private PasswordEncoder blockingEncoder(CountDownLatch started) {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        return delegate;
+    }
+}
@@ -0,0 +1,75 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.jwttest.exception.NotFoundException;
+import org.jwttest.exception.ServiceUnavailableException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentationTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Instrumentation instrumentation = new Instrumentation(registry);
+
+    @Test
+    void record_shouldTimeByOutcome() {
+        Instrumentation.Operation operation = instrumentation.operation("user.repository", "method", "findByEmail");
+
+        assertEquals("ok", operation.record(() -> "ok"));
+        assertEquals("ok", operation.record(() -> "ok"));
+        assertThrows(NotFoundException.class, () -> operation.record(() -> {
+            throw new NotFoundException("missing");
+        }));
+
+        Timer success = registry.get("user.repository").tag("method", "findByEmail").tag("outcome", "success").timer();
+        Timer notFound = registry.get("user.repository").tag("outcome", "not_found").timer();
+        assertEquals(2, success.count());
+        assertEquals(1, notFound.count());
+    }
+
+    @Test
+    void outcomeOf_shouldClassifyFailures() {
+        assertEquals(Instrumentation.INVALID_TOKEN, Instrumentation.outcomeOf(new MalformedJwtException("bad")));
+        assertEquals(Instrumentation.VALIDATION_ERROR, Instrumentation.outcomeOf(new IllegalArgumentException()));
+        assertEquals(Instrumentation.REJECTED, Instrumentation.outcomeOf(new ServiceUnavailableException("busy", null)));
+        assertEquals(Instrumentation.ERROR, Instrumentation.outcomeOf(new IllegalStateException()));
+    }
+
+    @Test
+    void noop_shouldOnlyRunTheCall() {
+        assertEquals(42, Instrumentation.noop().operation("jwt.sign").record(() -> 42));
+    }
+
+    @Test
+    void record_shouldEmitJfrEvent() throws Exception {
+        Path file = Files.createTempFile("operations", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.jwttest.Operation").withoutThreshold();
+            recording.start();
+            instrumentation.operation("jwt.sign", "algorithm", "RS256").record(() -> "token");
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals("org.jwttest.Operation"))
+                    .collect(Collectors.toList());
+
+            assertEquals(1, events.size());
+            assertEquals("jwt.sign.RS256", events.get(0).getString("operation"));
+            assertEquals("success", events.get(0).getString("outcome"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package org.jwttest.util;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
 import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,7 +28,7 @@ class JwtUtilTest {
 
     @BeforeEach
     void setUp() {
-        jwtUtil = new JwtUtil();
+        jwtUtil = JwtUtil.builder().build();
     }
 
     @Test
@@ -33,6 +41,46 @@ class JwtUtilTest {
         assertTrue(token.length() > 0, "Token should not be empty");
     }
 
+    @Test
+    void generateToken_shouldBeVerifiableWithPublishedJwks() throws Exception {
+        SigningKeyRing keyRing = new SigningKeyRing(SigningKeyRing.RS256, "", "", "", Duration.ofDays(1),
+                Duration.ofDays(7), Duration.ofHours(1));
+        jwtUtil = JwtUtil.builder().keyRing(keyRing).cache(100, Duration.ofMinutes(1)).build();
+        String subject = "test@example.com";
+
+        String token = jwtUtil.generateToken(subject);
+        JwkSet jwks = Jwks.setParser().build().parse(new ObjectMapper().writeValueAsString(keyRing.jwks()));
+        Claims claims = Jwts.parser()
+                .keyLocator(header -> jwks.getKeys().stream()
+                        .filter(jwk -> jwk.getId().equals(((JwsHeader) header).getKeyId()))
+                        .findFirst()
+                        .orElseThrow()
+                        .toKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+
+        assertEquals(subject, claims.getSubject());
+        assertEquals(2, jwks.getKeys().size(), "Current and next key should be published");
+    }
+
+    @Test
+    void generateToken_shouldBeVerifiableByStandardParserWithHs256() {
+        jwtUtil = JwtUtil.builder()
+                .keyRing(new SigningKeyRing(SigningKeyRing.HS256, "", "", "", Duration.ofDays(1), Duration.ofDays(1),
+                        Duration.ofHours(1), System::currentTimeMillis))
+                .cache(100, Duration.ofMinutes(1))
+                .build();
+        String subject = "qu\"ote\\d@example.com";
+
+        String token = jwtUtil.generateToken(subject);
+        Claims claims = Jwts.parser().verifyWith(SIGNING_KEY).build().parseSignedClaims(token).getPayload();
+
+        assertEquals(subject, claims.getSubject());
+        assertNotNull(claims.getIssuedAt());
+        assertTrue(Math.abs(claims.getIssuedAt().getTime() - new Date().getTime()) < 5_000);
+    }
+
     @Test
     void extractSubject_shouldReturnSubjectFromValidToken() {
         String subject = "test@example.com";
@@ -81,4 +129,160 @@ class JwtUtilTest {
             jwtUtil.extractSubject(invalidToken);
         }, "Extracting claims from an invalid token should throw an exception");
     }
+
+    @Test
+    void isTokenValid_shouldVerifyTokenOnlyOnceAcrossCalls() {
+        String token = jwtUtil.generateToken("test@example.com");
+
+        assertTrue(jwtUtil.isTokenValid(token));
+        assertEquals("test@example.com", jwtUtil.extractSubject(token));
+
+        assertEquals(1, jwtUtil.getCacheStats().getMisses(), "Token should be verified once");
+        assertEquals(1, jwtUtil.getCacheStats().getHits(), "Second lookup should reuse the verified claims");
+    }
+
+    @Test
+    void isTokenValid_shouldNotCacheInvalidTokens() {
+        String invalidToken = "InvalidTokenExample";
+
+        assertFalse(jwtUtil.isTokenValid(invalidToken));
+        assertFalse(jwtUtil.isTokenValid(invalidToken));
+
+        assertEquals(0, jwtUtil.getCacheStats().getHits());
+        assertEquals(0, jwtUtil.getCacheStats().getSize());
+    }
+
+    @Test
+    void generateToken_shouldCarryIdAndExpiration() {
+        String token = jwtUtil.generateToken("test@example.com");
+
+        Claims claims = jwtUtil.getSignedClaims(token);
+
+        assertNotNull(claims.getId());
+        assertNotEquals(claims.getId(), jwtUtil.getSignedClaims(jwtUtil.generateToken("test@example.com")).getId());
+        assertEquals(Duration.ofMinutes(15).toMillis(), claims.getExpiration().getTime() - claims.getIssuedAt().getTime());
+    }
+
+    @Test
+    void isTokenValid_shouldReturnFalseForRevokedTokenEvenWhenCached() {
+        RevocationList revocations = new RevocationList();
+        jwtUtil = JwtUtil.builder()
+                .revocations(revocations)
+                .cache(100, Duration.ofMinutes(1))
+                .expiration(Duration.ofHours(1))
+                .build();
+        String token = jwtUtil.generateToken("test@example.com");
+        String other = jwtUtil.generateToken("test@example.com");
+        assertTrue(jwtUtil.isTokenValid(token));
+
+        Claims claims = jwtUtil.getSignedClaims(token);
+        revocations.revoke(claims.getId(), claims.getExpiration().getTime());
+
+        assertFalse(jwtUtil.isTokenValid(token));
+        assertThrows(JwtException.class, () -> jwtUtil.extractSubject(token));
+        assertTrue(jwtUtil.isTokenValid(other));
+    }
+
+    @Test
+    void isTokenValid_shouldReturnFalseForExpiredToken() {
+        SigningKeyRing keyRing = new SigningKeyRing();
+        jwtUtil = JwtUtil.builder().keyRing(keyRing).cache(100, Duration.ofMinutes(1)).build();
+        long now = System.currentTimeMillis() / 1000;
+
+        String expired = keyRing.sign("test@example.com", "expired", now - 120, now - 60);
+
+        assertFalse(jwtUtil.isTokenValid(expired));
+    }
+
+    @Test
+    void isTokenValid_shouldReturnFalseForTokenWithoutExpiration() {
+        String legacy = Jwts.builder().subject("test@example.com").issuedAt(new Date()).signWith(SIGNING_KEY).compact();
+        jwtUtil = JwtUtil.builder()
+                .keyRing(new SigningKeyRing(SigningKeyRing.HS256, "", "", "", Duration.ofDays(1), Duration.ofDays(1),
+                        Duration.ofHours(1), System::currentTimeMillis))
+                .cache(100, Duration.ofMinutes(1))
+                .build();
+
+        assertFalse(jwtUtil.isTokenValid(legacy));
+    }
+
+    @Test
+    void constructor_shouldRejectExpirationBeyondKeyRetention() {
+        assertThrows(IllegalArgumentException.class, () -> JwtUtil.builder()
+                .keyRing(new SigningKeyRing(SigningKeyRing.RS256, "", "", "", Duration.ofDays(1), Duration.ofDays(7),
+                        Duration.ofHours(1)))
+                .expiration(Duration.ofDays(8))
+                .build());
+    }
+
+    @Test
+    void compactToken_shouldBeVerifiableByStandardParserWithEveryAlgorithm() {
+        for (String algorithm : new String[]{SigningKeyRing.HS256, SigningKeyRing.RS256, SigningKeyRing.ES256,
+                SigningKeyRing.EDDSA}) {
+            SigningKeyRing keyRing = new SigningKeyRing(algorithm, "", "", "", Duration.ofDays(1), Duration.ofDays(7),
+                    Duration.ofHours(1), System::currentTimeMillis);
+            jwtUtil = JwtUtil.builder().keyRing(keyRing).format(JwtUtil.COMPACT).build();
+            UUID userId = UUID.randomUUID();
+
+            String token = jwtUtil.generateToken(userId.toString());
+            Claims parsed = Jwts.parser().keyLocator(keyRing).build().parseSignedClaims(token).getPayload();
+            Claims verified = jwtUtil.getSignedClaims(token);
+
+            assertEquals(userId, JwtUtil.userIdOf(parsed.getSubject()), algorithm);
+            assertEquals(parsed.getSubject(), verified.getSubject(), algorithm);
+            assertEquals(parsed.getId(), verified.getId(), algorithm);
+            assertEquals(parsed.getExpiration(), verified.getExpiration(), algorithm);
+            assertNull(parsed.getIssuedAt(), algorithm);
+        }
+    }
+
+    @Test
+    void compactToken_shouldBeShorterThanStandardToken() {
+        SigningKeyRing keyRing = new SigningKeyRing();
+        String standard = JwtUtil.builder().keyRing(keyRing).build()
+                .generateToken("juan.perez@example.com");
+
+        String compact = JwtUtil.builder().keyRing(keyRing).format(JwtUtil.COMPACT).build()
+                .generateToken(UUID.randomUUID().toString());
+
+        assertTrue(compact.length() < standard.length(), compact.length() + " vs " + standard.length());
+    }
+
+    @Test
+    void compactToken_shouldBeAcceptedWhicheverProfileIsIssued() {
+        SigningKeyRing keyRing = new SigningKeyRing();
+        String compact = JwtUtil.builder().keyRing(keyRing).format(JwtUtil.COMPACT).build()
+                .generateToken(UUID.randomUUID().toString());
+
+        assertTrue(JwtUtil.builder().keyRing(keyRing).build().isTokenValid(compact));
+    }
+
+    @Test
+    void compactToken_shouldBeRejectedWhenTamperedOrExpired() {
+        SigningKeyRing keyRing = new SigningKeyRing();
+        jwtUtil = JwtUtil.builder().keyRing(keyRing).format(JwtUtil.COMPACT).cache(0, Duration.ZERO).build();
+        UUID userId = UUID.randomUUID();
+        String token = jwtUtil.generateToken(userId.toString());
+        String[] parts = token.split("\\.");
+        String otherPayload = CompactClaims.encode(UUID.randomUUID(), UUID.randomUUID(),
+                System.currentTimeMillis() / 1000 + 60);
+        String expired = keyRing.signPayload(CompactClaims.encode(userId, UUID.randomUUID(),
+                System.currentTimeMillis() / 1000 - 60));
+
+        assertTrue(jwtUtil.isTokenValid(token));
+        assertFalse(jwtUtil.isTokenValid(parts[0] + "." + otherPayload + "." + parts[2]));
+        assertFalse(jwtUtil.isTokenValid(parts[0] + "." + parts[1] + "." + parts[2].substring(1)));
+        assertFalse(jwtUtil.isTokenValid(expired));
+    }
+
+    @Test
+    void compactClaims_shouldLeaveOtherLayoutsToTheParser() {
+        String reordered = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"jti\":\"Q5h3Yk9fTz2cW0uIbR6oVg\",\"sub\":\"vN2x7Qp0S4aY1rL3mX8JeA\",\"exp\":1700000900}"
+                        .getBytes(StandardCharsets.US_ASCII));
+
+        assertNull(CompactClaims.decode(reordered));
+        assertEquals("vN2x7Qp0S4aY1rL3mX8JeA", CompactClaims.decode(CompactClaims.encode(
+                CompactClaims.decodeId("vN2x7Qp0S4aY1rL3mX8JeA"), UUID.randomUUID(), 1700000900)).getSubject());
+    }
 }
@@ -0,0 +1,127 @@
+package org.jwttest.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenReject() {
+        RateLimiter limiter = new RateLimiter("test", 3, Duration.ofSeconds(3), 100, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        long wait = limiter.tryAcquire("10.0.0.1");
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), wait);
+        assertEquals(0, limiter.tryAcquire("10.0.0.2"));
+        RateLimiter.Stats stats = limiter.stats();
+        assertEquals(4, stats.getAllowed());
+        assertEquals(1, stats.getRejected());
+        assertEquals(2, stats.getKeys());
+    }
+
+    @Test
+    void tryAcquire_shouldRefillOverTheWindow() {
+        RateLimiter limiter = new RateLimiter("test", 2, Duration.ofSeconds(2), 100, clock::get);
+        limiter.tryAcquire("client");
+        limiter.tryAcquire("client");
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+    }
+
+    @Test
+    void tryAcquire_shouldKeepThrottlingWhenFloodedWithNewKeys() {
+        RateLimiter limiter = new RateLimiter("test", 1, Duration.ofMinutes(1), 100, clock::get);
+        limiter.tryAcquire("client");
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("flood-" + i);
+            assertTrue(limiter.tryAcquire("client") > 0, "the limited key must keep its bucket");
+        }
+
+        assertTrue(limiter.size() <= 100);
+        assertTrue(limiter.stats().getOverflowed() >= 10_000 - 99);
+    }
+
+    @Test
+    void tryAcquire_shouldAdmitANewKeyWhenEveryBucketIsTaken() {
+        RateLimiter limiter = new RateLimiter("test", 1, Duration.ofMinutes(1), 100, clock::get);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("flood-" + i);
+        }
+
+        assertEquals(0, limiter.tryAcquire("new-client"), "a full limiter must not lock out new clients");
+        assertTrue(limiter.tryAcquire("new-client") > 0, "and must still limit them");
+    }
+
+    @Test
+    void tryAcquire_shouldGrantExactlyTheBurstUnderContention() throws Exception {
+        RateLimiter limiter = new RateLimiter("test", 100, Duration.ofHours(1), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("client") == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, granted.get());
+        assertEquals(300, limiter.stats().getRejected());
+    }
+
+    @Test
+    void evictIdle_shouldDropRefilledBucketsOnly() {
+        RateLimiter limiter = new RateLimiter("test", 2, Duration.ofSeconds(2), 100, clock::get);
+        limiter.tryAcquire("idle");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        limiter.tryAcquire("busy");
+        limiter.tryAcquire("busy");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.size());
+        assertEquals(0, limiter.tryAcquire("busy"));
+        assertTrue(limiter.tryAcquire("busy") > 0);
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("test", 0, Duration.ofMinutes(1), 100));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("test", 1, Duration.ZERO, 100));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter("test", 1, Duration.ofMinutes(1), 0));
+    }
+}
@@ -0,0 +1,36 @@
+package org.jwttest.util;
+
+import org.junit.jupiter.api.Test;
+import org.jwttest.model.LoginResponse;
+import org.jwttest.model.UserRequest;
+import org.jwttest.model.UserResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedactionTest {
+
+    @Test
+    void token_shouldLogStableFingerprintInsteadOfToken() {
+        String token = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiJqdWFuQGV4YW1wbGUuY29tIn0.signature";
+
+        String fingerprint = Redaction.token(token);
+
+        assertTrue(fingerprint.matches("sha256:[0-9a-f]{12}"), fingerprint);
+        assertEquals(fingerprint, Redaction.token(token));
+        assertNotEquals(fingerprint, Redaction.token(token + "x"));
+        assertEquals(Redaction.REDACTED, Redaction.token(null));
+        assertEquals(Redaction.REDACTED, Redaction.token(""));
+    }
+
+    @Test
+    void toString_shouldLeaveOutPasswordsAndTokens() {
+        UserRequest request = UserRequest.builder().email("juan@example.com").password("a2asfGfdfdf4").build();
+        UserResponse response = UserResponse.builder().token("the-token").build();
+        LoginResponse login = LoginResponse.builder().email("juan@example.com").token("the-token").build();
+
+        assertFalse(request.toString().contains("a2asfGfdfdf4"), request.toString());
+        assertTrue(request.toString().contains("juan@example.com"));
+        assertFalse(response.toString().contains("the-token"), response.toString());
+        assertFalse(login.toString().contains("the-token"), login.toString());
+    }
+}
@@ -0,0 +1,95 @@
+package org.jwttest.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevocationListTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Test
+    void isRevoked_shouldFindRevokedIdsOnly() {
+        RevocationList list = new RevocationList(100, 0.01, clock::get);
+        String revoked = UUID.randomUUID().toString();
+
+        list.revoke(revoked, clock.get() + 1_000);
+
+        assertTrue(list.isRevoked(revoked));
+        assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+        assertFalse(list.isRevoked(null));
+    }
+
+    @Test
+    void isRevoked_shouldAnswerMostMissesFromTheFilter() {
+        RevocationList list = new RevocationList(1_000, 0.01, clock::get);
+        for (int i = 0; i < 1_000; i++) {
+            list.revoke(UUID.randomUUID().toString(), clock.get() + 1_000);
+        }
+
+        int misses = 100_000;
+        for (int i = 0; i < misses; i++) {
+            assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+        }
+
+        RevocationList.Stats stats = list.stats();
+        assertEquals(misses, stats.getChecks());
+        assertEquals(stats.getFilterPositives(), stats.getFalsePositives());
+        assertTrue(stats.getFalsePositives() < misses * 0.02, "False positive rate should stay near 1%");
+    }
+
+    @Test
+    void revoke_shouldIgnoreExpiredTokens() {
+        RevocationList list = new RevocationList(100, 0.01, clock::get);
+
+        boolean revoked = list.revoke("expired", clock.get());
+
+        assertFalse(revoked);
+        assertFalse(list.isRevoked("expired"));
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    void revoke_shouldGrowFilterBeyondExpectedEntries() {
+        RevocationList list = new RevocationList(10, 0.01, clock::get);
+        long initialBits = list.stats().getFilterBits();
+
+        for (int i = 0; i < 100; i++) {
+            list.revoke("jti-" + i, clock.get() + 1_000);
+        }
+
+        assertTrue(list.stats().getFilterBits() > initialBits);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(list.isRevoked("jti-" + i));
+        }
+    }
+
+    @Test
+    void purgeExpired_shouldForgetIdsOfExpiredTokens() {
+        RevocationList list = new RevocationList(100, 0.01, clock::get);
+        list.revoke("short", clock.get() + 1_000);
+        list.revoke("long", clock.get() + 5_000);
+
+        clock.addAndGet(1_000);
+        int removed = list.purgeExpired();
+
+        assertEquals(1, removed);
+        assertFalse(list.isRevoked("short"));
+        assertTrue(list.isRevoked("long"));
+    }
+
+    @Test
+    void revoke_shouldKeepTheLaterExpiry() {
+        RevocationList list = new RevocationList(100, 0.01, clock::get);
+        list.revoke("jti", clock.get() + 5_000);
+        list.revoke("jti", clock.get() + 1_000);
+
+        clock.addAndGet(1_000);
+        list.purgeExpired();
+
+        assertTrue(list.isRevoked("jti"));
+    }
+}
@@ -0,0 +1,119 @@
+package org.jwttest.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationUtilityTest {
+
+    // the expressions the scanners replace; they are the specification
+    private static final Pattern EMAIL_REGEX = Pattern.compile("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$");
+    private static final Pattern PASSWORD_REGEX = Pattern.compile(
+            "^(?=(?:[^A-Z]*[A-Z]){1}[^A-Z]*$)(?=(?:[^\\d]*\\d){2}[^\\d]*$)(?!.*\\d{2})[a-zA-Z\\d]{8,12}$");
+
+    private static final int SAMPLES = 200_000;
+
+    // skewed towards the characters the rules care about, plus a few that must always be rejected
+    private static final String EMAIL_ALPHABET = "aZz09_.-@@..Abé +\n٣";
+    private static final String PASSWORD_ALPHABET = "aabzAAZ0919__ .Á٣\n";
+
+    @Test
+    void isValidEmail_shouldMatchRegexOnRandomInput() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            String email = randomString(random, EMAIL_ALPHABET, random.nextInt(16));
+
+            assertEquals(EMAIL_REGEX.matcher(email).matches(), ValidationUtility.isValidEmail(email),
+                    () -> "Disagreement on email '" + email + "'");
+        }
+    }
+
+    @Test
+    void isValidEmail_shouldMatchRegexOnMutatedValidEmails() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            String email = mutate(random, "juan.perez-1_x@mail.example.com", EMAIL_ALPHABET);
+
+            assertEquals(EMAIL_REGEX.matcher(email).matches(), ValidationUtility.isValidEmail(email),
+                    () -> "Disagreement on email '" + email + "'");
+        }
+    }
+
+    @Test
+    void isValidPassword_shouldMatchRegexOnRandomInput() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            String password = randomString(random, PASSWORD_ALPHABET, 6 + random.nextInt(9));
+
+            assertEquals(PASSWORD_REGEX.matcher(password).matches(), ValidationUtility.isValidPassword(password),
+                    () -> "Disagreement on password '" + password + "'");
+        }
+    }
+
+    @Test
+    void isValidPassword_shouldMatchRegexOnMutatedValidPasswords() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            String password = mutate(random, "a2asfGfdfdf4", PASSWORD_ALPHABET);
+
+            assertEquals(PASSWORD_REGEX.matcher(password).matches(), ValidationUtility.isValidPassword(password),
+                    () -> "Disagreement on password '" + password + "'");
+        }
+    }
+
+    @Test
+    void isValidEmail_shouldAcceptUpToColumnLength() {
+        String domain = "@example.com";
+        String longest = "a".repeat(ValidationUtility.MAX_EMAIL_LENGTH - domain.length()) + domain;
+
+        assertTrue(ValidationUtility.isValidEmail(longest));
+        assertFalse(ValidationUtility.isValidEmail("a" + longest));
+    }
+
+    @Test
+    void validators_shouldRejectNull() {
+        assertFalse(ValidationUtility.isValidEmail(null));
+        assertFalse(ValidationUtility.isValidPassword(null));
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    // one to three random inserts, deletes or replacements
+    private static String mutate(Random random, String valid, String alphabet) {
+        StringBuilder sb = new StringBuilder(valid);
+        int mutations = 1 + random.nextInt(3);
+        for (int i = 0; i < mutations; i++) {
+            int position = random.nextInt(sb.length() + 1);
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.insert(position, c);
+                    break;
+                case 1:
+                    if (position < sb.length()) {
+                        sb.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (position < sb.length()) {
+                        sb.setCharAt(position, c);
+                    }
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+}
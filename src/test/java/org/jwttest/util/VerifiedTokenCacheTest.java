@@ -0,0 +1,70 @@
+package org.jwttest.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private Claims verify(String token) {
+        verifications.incrementAndGet();
+        return Jwts.claims().subject(token).build();
+    }
+
+    @Test
+    void get_shouldReuseClaimsForRepeatedToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(1));
+
+        Claims first = cache.get("token", this::verify);
+        Claims second = cache.get("token", this::verify);
+
+        assertSame(first, second);
+        assertEquals(1, verifications.get());
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    void get_shouldReverifyAfterTtl() {
+        AtomicLong clock = new AtomicLong();
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofSeconds(10), clock::get);
+
+        cache.get("token", this::verify);
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.get("token", this::verify);
+
+        assertEquals(2, verifications.get());
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    void get_shouldStayWithinMaxSize() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(32, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.get("token-" + i, this::verify);
+        }
+
+        assertTrue(cache.size() <= 32, "Cache should be bounded");
+        assertEquals(1_000 - cache.size(), cache.stats().getEvictions());
+    }
+
+    @Test
+    void get_shouldNotCacheWhenVerificationFails() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("bad", token -> {
+            throw new IllegalStateException("bad signature");
+        }));
+
+        assertEquals(0, cache.size());
+    }
+}